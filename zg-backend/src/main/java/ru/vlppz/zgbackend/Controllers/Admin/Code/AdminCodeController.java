@@ -5,6 +5,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.vlppz.zgbackend.DB.Code.Code;
 import ru.vlppz.zgbackend.DB.Code.CodeRepository;
+import ru.vlppz.zgbackend.Services.Code.CodeRedemptionService;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -15,6 +16,9 @@ public class AdminCodeController {
     @Autowired
     private CodeRepository codeRepository;
 
+    @Autowired
+    private CodeRedemptionService codeRedemptionService;
+
     @PostMapping("/create")
     public ResponseEntity<CodeCreateResponse> createCode(@RequestBody CodeCreateRequest request) {
         CodeCreateResponse response = new CodeCreateResponse();
@@ -62,6 +66,7 @@ public class AdminCodeController {
             }
             
             codeRepository.deleteById(request.id);
+            codeRedemptionService.forget(request.id);
             
             response.status = "ok";
             response.message = "Код успешно удален";
@@ -0,0 +1,36 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Leaderboard;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+
+@RestController
+@RequestMapping("/api/admin/leaderboard")
+public class AdminLeaderboardController {
+    @Autowired
+    private NetWorthService netWorthService;
+
+    @PostMapping("/networth/reconcile")
+    public ResponseEntity<NetWorthReconcileResponse> reconcileNetWorth() {
+        NetWorthReconcileResponse response = new NetWorthReconcileResponse();
+
+        try {
+            NetWorthService.ReconcileReport report = netWorthService.reconcile();
+
+            response.status = "ok";
+            response.chunks = report.chunks();
+            response.usersChecked = report.usersChecked();
+            response.driftedUsers = report.driftedUsers();
+            response.absoluteDrift = report.absoluteDrift();
+            response.samples = report.samples();
+
+            return ResponseEntity.ok().body(response);
+
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Leaderboard;
+
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+
+import java.util.List;
+
+public class NetWorthReconcileResponse {
+    public String status;
+    public String error;
+    public Integer chunks;
+    public Integer usersChecked;
+    public Integer driftedUsers;
+    public Long absoluteDrift;
+    public List<NetWorthService.Drift> samples;
+}
@@ -0,0 +1,67 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Ledger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.DB.Ledger.BalanceCheckpointRepository;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntryRepository;
+import ru.vlppz.zgbackend.Services.Ledger.LedgerCheckpointService;
+
+@RestController
+@RequestMapping("/api/admin/ledger")
+public class AdminLedgerController {
+    private static final int MAX_PAGE_SIZE = 200;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceCheckpointRepository balanceCheckpointRepository;
+
+    @Autowired
+    private LedgerCheckpointService ledgerCheckpointService;
+
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<LedgerHistoryResponse> getHistory(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "50") int limit) {
+        LedgerHistoryResponse response = new LedgerHistoryResponse();
+
+        try {
+            response.status = "ok";
+            response.checkpoint = balanceCheckpointRepository.findById(userId).orElse(null);
+            response.entries = ledgerEntryRepository.findByUserIdAndIdLessThanOrderByIdDesc(
+                    userId, beforeId != null ? beforeId : Long.MAX_VALUE, Limit.of(Math.max(1, Math.min(limit, MAX_PAGE_SIZE))));
+            return ResponseEntity.ok().body(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @PostMapping("/verify")
+    public ResponseEntity<LedgerVerifyResponse> verify() {
+        LedgerVerifyResponse response = new LedgerVerifyResponse();
+
+        try {
+            LedgerCheckpointService.VerifyReport report = ledgerCheckpointService.verify();
+
+            response.status = "ok";
+            response.chunks = report.chunks();
+            response.usersChecked = report.usersChecked();
+            response.mismatchedUsers = report.mismatchedUsers();
+            response.absoluteDifference = report.absoluteDifference();
+            response.samples = report.samples();
+
+            return ResponseEntity.ok().body(response);
+
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
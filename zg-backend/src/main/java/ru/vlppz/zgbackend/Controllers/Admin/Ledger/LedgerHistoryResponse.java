@@ -0,0 +1,14 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Ledger;
+
+import ru.vlppz.zgbackend.DB.Ledger.BalanceCheckpoint;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+
+import java.util.List;
+
+public class LedgerHistoryResponse {
+    public String status;
+    public String error;
+    public BalanceCheckpoint checkpoint;
+    // Newest first; pass the last id back as beforeId for the next page
+    public List<LedgerEntry> entries;
+}
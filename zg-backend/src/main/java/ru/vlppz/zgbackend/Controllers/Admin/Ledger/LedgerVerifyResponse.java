@@ -0,0 +1,15 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Ledger;
+
+import ru.vlppz.zgbackend.Services.Ledger.LedgerCheckpointService;
+
+import java.util.List;
+
+public class LedgerVerifyResponse {
+    public String status;
+    public String error;
+    public Integer chunks;
+    public Integer usersChecked;
+    public Integer mismatchedUsers;
+    public Long absoluteDifference;
+    public List<LedgerCheckpointService.Mismatch> samples;
+}
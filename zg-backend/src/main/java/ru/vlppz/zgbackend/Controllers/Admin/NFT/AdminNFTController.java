@@ -1,24 +1,28 @@
 package ru.vlppz.zgbackend.Controllers.Admin.NFT;
 
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
 import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
-import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Drop.DropQueueService;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Image.ImageStorage;
+import ru.vlppz.zgbackend.Services.Mint.BulkMintService;
+import ru.vlppz.zgbackend.Services.Mint.MintJob;
+import ru.vlppz.zgbackend.Services.Shop.CatalogCache;
+import ru.vlppz.zgbackend.Services.Shop.NFTRemovalService;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.UUID;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/admin/nft")
@@ -28,10 +32,25 @@ public class AdminNFTController {
     private NFTRepository nftRepository;
     
     @Autowired
-    private AuctionRepository auctionRepository;
-    
+    private NFTEditionRepository nftEditionRepository;
+
+    @Autowired
+    private NFTRemovalService nftRemovalService;
+
+    @Autowired
+    private BulkMintService bulkMintService;
+
+    @Autowired
+    private DropQueueService dropQueueService;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
     @Autowired
-    private UserRepository userRepository;
+    private EconomyEngine economyEngine;
 
     @PostMapping(value = "/create", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<NFTCreateResponse> createNFT(
@@ -41,44 +60,36 @@ public class AdminNFTController {
             @RequestParam("gradientColor1") String gradientColor1,
             @RequestParam("gradientColor2") String gradientColor2,
             @RequestParam("amount") Long amount,
+            @RequestParam(value = "limitedDrop", defaultValue = "false") Boolean limitedDrop,
             @RequestParam("image") MultipartFile image) {
         NFTCreateResponse response = new NFTCreateResponse();
 
         try {
+            if (amount == null || amount <= 0) {
+                throw new IllegalArgumentException("Количество должно быть больше нуля");
+            }
             if (image == null || image.isEmpty()) {
                 throw new IllegalArgumentException("Требуется файл изображения");
             }
 
-            String originalFilename = image.getOriginalFilename();
-            String extension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                extension = originalFilename.substring(originalFilename.lastIndexOf('.'));
-            }
-            String filename = UUID.randomUUID() + extension;
+            String imageUrl = imageStorage.store(image);
 
-            Path uploadsDir = Paths.get("uploads");
-            if (!Files.exists(uploadsDir)) {
-                Files.createDirectories(uploadsDir);
-            }
-            Path targetPath = uploadsDir.resolve(filename);
-            Files.write(targetPath, image.getBytes());
-
-            String imageUrl = "/api/uploads/" + filename;
-
-            List<NFT> created = new ArrayList<>();
-            for (int i = 0; i < amount; i++) {
-                NFT nft = new NFT();
-                nft.setName(name);
-                nft.setDescription(description);
-                nft.setPrice(price);
-                nft.setGradientColor1(gradientColor1);
-                nft.setGradientColor2(gradientColor2);
-                nft.setImageURL(imageUrl);
-                created.add(nftRepository.save(nft));
-            }
+            // One edition row regardless of amount; copies become NFT rows as they are bought
+            NFTEdition edition = new NFTEdition();
+            edition.setName(name);
+            edition.setDescription(description);
+            edition.setPrice(price);
+            edition.setGradientColor1(gradientColor1);
+            edition.setGradientColor2(gradientColor2);
+            edition.setImageURL(imageUrl);
+            edition.setSupply(amount);
+            edition.setRemaining(amount);
+            edition.setCreatedAt(LocalDateTime.now());
+            edition.setLimitedDrop(limitedDrop);
 
             response.status = "ok";
-            response.nfts = created;
+            response.edition = nftEditionRepository.save(edition);
+            catalogCache.invalidate();
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             response.status = "error";
@@ -101,32 +112,11 @@ public class AdminNFTController {
 
             NFT nft = nftOptional.get();
             
-            // If NFT is owned, unpin it from the owner first
-            if (nft.getOwner() != null) {
-                var owner = nft.getOwner();
-                if (owner.getPinnedNFT() != null && owner.getPinnedNFT().equals(nft)) {
-                    owner.setPinnedNFT(null);
-                    userRepository.save(owner);
-                }
-            }
-            
-            // Delete all auction records for this NFT first (including active and inactive ones)
-            var allAuctions = auctionRepository.findByNft(nft);
-            auctionRepository.deleteAll(allAuctions);
-            
-            // Delete the image file if it exists
-            if (nft.getImageURL() != null && nft.getImageURL().startsWith("/api/uploads/")) {
-                String filename = nft.getImageURL().replace("/api/uploads/", "");
-                Path imagePath = Paths.get("uploads", filename);
-                try {
-                    Files.deleteIfExists(imagePath);
-                } catch (IOException e) {
-                    System.err.println("Не удалось удалить файл изображения: " + e.getMessage());
-                }
-            }
+            // Bids, auction records, the owner's pin and net worth go with it
+            nftRemovalService.delete(List.of(nft.getId()));
 
-            // Now safely delete the NFT
-            nftRepository.delete(nft);
+            // Images are shared by content hash, so the file goes only with its last reference
+            imageStorage.deleteIfUnreferenced(nft.getImageURL());
             
             response.status = "ok";
             response.message = "NFT успешно удален";
@@ -137,4 +127,115 @@ public class AdminNFTController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
+
+    @DeleteMapping("/delete-by-name")
+    public ResponseEntity<NFTBatchResponse> deleteByName(@RequestBody NFTBatchRequest request) {
+        NFTBatchResponse response = new NFTBatchResponse();
+
+        try {
+            if (request.name == null || request.name.isBlank()) {
+                response.status = "error";
+                response.error = "Название NFT не указано";
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            NFTRemovalService.BatchResult result = nftRemovalService.deleteByName(request.name);
+            response.status = "ok";
+            response.message = "Удалено NFT: " + result.nftsDeleted();
+            response.editionsRetired = result.editionsRetired();
+            response.nftsDeleted = result.nftsDeleted();
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @PostMapping("/retire-by-name")
+    public ResponseEntity<NFTBatchResponse> retireByName(@RequestBody NFTBatchRequest request) {
+        NFTBatchResponse response = new NFTBatchResponse();
+
+        try {
+            if (request.name == null || request.name.isBlank()) {
+                response.status = "error";
+                response.error = "Название NFT не указано";
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            NFTRemovalService.BatchResult result = nftRemovalService.retireByName(request.name);
+            response.status = "ok";
+            response.message = "NFT сняты с продажи, удалено непроданных: " + result.nftsDeleted();
+            response.editionsRetired = result.editionsRetired();
+            response.nftsDeleted = result.nftsDeleted();
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @DeleteMapping("/edition/delete")
+    public ResponseEntity<NFTDeleteResponse> deleteEdition(@RequestBody NFTDeleteRequest request) {
+        NFTDeleteResponse response = new NFTDeleteResponse();
+
+        try {
+            if (nftEditionRepository.retire(request.id) == 0) {
+                response.status = "error";
+                response.error = "Выпуск NFT не найден";
+                return ResponseEntity.badRequest().body(response);
+            }
+            dropQueueService.forget(request.id);
+            economyEngine.forgetEdition(request.id);
+            catalogCache.invalidate();
+
+            response.status = "ok";
+            response.message = "Выпуск NFT снят с продажи";
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @PostMapping("/edition/mint")
+    public ResponseEntity<NFTMintJobResponse> mintEdition(@Valid @RequestBody NFTMintRequest request) {
+        NFTMintJobResponse response = new NFTMintJobResponse();
+
+        try {
+            MintJob job = bulkMintService.mintToUsers(request.editionId, request.userIds);
+            response.job = job;
+            if (job.getStatus() == MintJob.Status.FAILED) {
+                response.status = "error";
+                response.error = job.getError();
+                return ResponseEntity.internalServerError().body(response);
+            }
+
+            response.status = "ok";
+            HttpStatus httpStatus = job.getStatus() == MintJob.Status.RUNNING ? HttpStatus.ACCEPTED : HttpStatus.OK;
+            return ResponseEntity.status(httpStatus).body(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @GetMapping("/mint/{jobId}")
+    public ResponseEntity<NFTMintJobResponse> mintJob(@PathVariable String jobId) {
+        NFTMintJobResponse response = new NFTMintJobResponse();
+
+        Optional<MintJob> job = bulkMintService.job(jobId);
+        if (job.isEmpty()) {
+            response.status = "error";
+            response.error = "Задача не найдена";
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
+        response.status = "ok";
+        response.job = job.get();
+        return ResponseEntity.ok(response);
+    }
 }
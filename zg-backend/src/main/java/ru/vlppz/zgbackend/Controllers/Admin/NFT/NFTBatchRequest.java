@@ -0,0 +1,8 @@
+package ru.vlppz.zgbackend.Controllers.Admin.NFT;
+
+import jakarta.validation.constraints.NotBlank;
+
+public class NFTBatchRequest {
+    @NotBlank
+    public String name;
+}
@@ -0,0 +1,9 @@
+package ru.vlppz.zgbackend.Controllers.Admin.NFT;
+
+public class NFTBatchResponse {
+    public String status;
+    public String message;
+    public String error;
+    public Integer editionsRetired;
+    public Long nftsDeleted;
+}
@@ -1,11 +1,9 @@
 package ru.vlppz.zgbackend.Controllers.Admin.NFT;
 
-import ru.vlppz.zgbackend.DB.NFT.NFT;
-
-import java.util.List;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
 
 public class NFTCreateResponse {
     public String status;
     public String error;
-    public List<NFT> nfts;
+    public NFTEdition edition;
 }
@@ -0,0 +1,9 @@
+package ru.vlppz.zgbackend.Controllers.Admin.NFT;
+
+import ru.vlppz.zgbackend.Services.Mint.MintJob;
+
+public class NFTMintJobResponse {
+    public String status;
+    public String error;
+    public MintJob job;
+}
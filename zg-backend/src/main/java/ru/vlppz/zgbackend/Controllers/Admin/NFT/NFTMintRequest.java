@@ -0,0 +1,12 @@
+package ru.vlppz.zgbackend.Controllers.Admin.NFT;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class NFTMintRequest {
+    @NotNull
+    public Long editionId;
+    // Recipients; empty or missing means every user
+    public List<Long> userIds;
+}
@@ -0,0 +1,30 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Season;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.Services.Season.SeasonService;
+
+@RestController
+@RequestMapping("/api/admin/season")
+public class AdminSeasonController {
+    @Autowired
+    private SeasonService seasonService;
+
+    @PostMapping("/rollover")
+    public ResponseEntity<SeasonRolloverResponse> rollover(@RequestBody SeasonRolloverRequest request) {
+        SeasonRolloverResponse response = new SeasonRolloverResponse();
+
+        try {
+            response.season = seasonService.rollover(request.nextSeasonName);
+            response.status = "ok";
+            response.message = "Сезон завершен, начат новый сезон";
+            return ResponseEntity.ok().body(response);
+
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Season;
+
+public class SeasonRolloverRequest {
+    public String nextSeasonName;
+}
@@ -0,0 +1,10 @@
+package ru.vlppz.zgbackend.Controllers.Admin.Season;
+
+import ru.vlppz.zgbackend.DB.Season.Season;
+
+public class SeasonRolloverResponse {
+    public String status;
+    public String error;
+    public String message;
+    public Season season;
+}
@@ -2,9 +2,12 @@ package ru.vlppz.zgbackend.Controllers.Admin.User;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
 import ru.vlppz.zgbackend.DB.User.User;
 import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
 
 import java.util.Optional;
 
@@ -14,7 +17,11 @@ public class AdminUserController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CoinLedger coinLedger;
+
     @PostMapping("/balance")
+    @Transactional
     public ResponseEntity<UserBalanceResponse> updateUserBalance(@RequestBody UserBalanceRequest request) {
         UserBalanceResponse response = new UserBalanceResponse();
         
@@ -28,6 +35,8 @@ public class AdminUserController {
             }
             
             User user = userOptional.get();
+            // Recorded as the difference, so the ledger still folds to the new balance
+            coinLedger.record(user.getId(), request.newBalance - user.getBalance(), LedgerEntry.Reason.ADMIN_ADJUST, null);
             user.setBalance(request.newBalance);
             userRepository.save(user);
             
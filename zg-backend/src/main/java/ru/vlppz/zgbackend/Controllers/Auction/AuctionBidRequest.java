@@ -0,0 +1,6 @@
+package ru.vlppz.zgbackend.Controllers.Auction;
+
+public class AuctionBidRequest {
+    public Long auctionId;
+    public Long amount;
+}
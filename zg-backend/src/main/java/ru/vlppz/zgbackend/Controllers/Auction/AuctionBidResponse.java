@@ -0,0 +1,12 @@
+package ru.vlppz.zgbackend.Controllers.Auction;
+
+import java.time.LocalDateTime;
+
+public class AuctionBidResponse {
+    public String status;
+    public String error;
+    public String message;
+    public Long price;
+    public LocalDateTime endsAt;
+    public Long minimumBid;
+}
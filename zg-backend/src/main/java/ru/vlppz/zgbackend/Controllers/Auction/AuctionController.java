@@ -5,13 +5,25 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import ru.vlppz.zgbackend.DB.Auction.Auction;
+import ru.vlppz.zgbackend.DB.Auction.AuctionQuery;
 import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.Auction.AuctionSort;
+import ru.vlppz.zgbackend.DB.Auction.AuctionSummary;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
 import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
 import ru.vlppz.zgbackend.DB.User.User;
 import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Auction.AuctionBidService;
+import ru.vlppz.zgbackend.Services.Auction.AuctionSettlementService;
+import ru.vlppz.zgbackend.Services.Balance.BalanceService;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+import ru.vlppz.zgbackend.Services.OptimisticRetryExecutor;
+import ru.vlppz.zgbackend.Services.Order.BuyOrderService;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -19,6 +31,12 @@ import java.util.Optional;
 public class AuctionController {
     @Autowired
     private AuctionRepository auctionRepository;
+
+    @Autowired
+    private OptimisticRetryExecutor optimisticRetry;
+
+    @Autowired
+    private BalanceService balanceService;
     
     @Autowired
     private NFTRepository nftRepository;
@@ -26,56 +44,33 @@ public class AuctionController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AuctionSettlementService auctionSettlementService;
+
+    @Autowired
+    private AuctionBidService auctionBidService;
+
+    @Autowired
+    private BuyOrderService buyOrderService;
+
+    @Autowired
+    private MarketEventBus marketEventBus;
+
+    @Autowired
+    private EconomyEngine economyEngine;
+
+    private static final int MAX_DURATION_MINUTES = 7 * 24 * 60;
+
     @PostMapping("/create")
     public ResponseEntity<AuctionActionResponse> createAuction(@RequestBody AuctionCreateRequest request, Authentication authentication) {
         AuctionActionResponse response = new AuctionActionResponse();
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
-            
-            if (userOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (nftOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "NFT не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            User user = userOptional.get();
-            NFT nft = nftOptional.get();
-            
-            if (!nft.getOwner().equals(user)) {
-                response.status = "error";
-                response.error = "Вы не владеете этим NFT";
-                return ResponseEntity.badRequest().body(response);
+            if (economyEngine.enabled()) {
+                return createAuctionInEngine(request, userId);
             }
-            
-            if (request.price <= 0) {
-                response.status = "error";
-                response.error = "Цена должна быть больше 0";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            Auction auction = new Auction();
-            auction.setNft(nft);
-            auction.setSeller(user);
-            auction.setPrice(request.price);
-            auction.setCreatedAt(LocalDateTime.now());
-            auction.setActive(true);
-            
-            auctionRepository.save(auction);
-            
-            response.status = "ok";
-            response.message = "Аукцион создан";
-            
-            return ResponseEntity.ok().body(response);
-            
+            return balanceService.execute("auction.create", userId, status -> createAuctionAttempt(request, userId));
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
@@ -83,6 +78,127 @@ public class AuctionController {
         }
     }
 
+    // Only fixed-price listings go through the engine; they are not matched against buy orders there
+    private ResponseEntity<AuctionActionResponse> createAuctionInEngine(AuctionCreateRequest request, Long userId) {
+        AuctionActionResponse response = new AuctionActionResponse();
+
+        if (request.durationMinutes != null) {
+            response.status = "error";
+            response.error = "Аукционы со ставками сейчас недоступны";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        if (request.price <= 0) {
+            response.status = "error";
+            response.error = "Цена должна быть больше 0";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        EconomyEngine.Result result = economyEngine.list(userId, request.nftId, request.price);
+        String error = switch (result.outcome()) {
+            case OK -> null;
+            case USER_NOT_FOUND -> "Пользователь не найден";
+            case NFT_NOT_FOUND -> "NFT не найден";
+            case NOT_OWNER -> "Вы не владеете этим NFT";
+            case LISTED -> "NFT уже выставлен на аукцион";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        };
+        if (error != null) {
+            response.status = "error";
+            response.error = error;
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        response.status = "ok";
+        response.message = "Аукцион создан";
+        return ResponseEntity.ok().body(response);
+    }
+
+    // One optimistic attempt; re-run from scratch by OptimisticRetryExecutor on a version conflict
+    private ResponseEntity<AuctionActionResponse> createAuctionAttempt(AuctionCreateRequest request, Long userId) {
+        AuctionActionResponse response = new AuctionActionResponse();
+
+        Optional<User> userOptional = userRepository.findById(userId);
+        Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
+        
+        if (userOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (nftOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "NFT не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        User user = userOptional.get();
+        NFT nft = nftOptional.get();
+        
+        if (!nft.getOwner().equals(user)) {
+            response.status = "error";
+            response.error = "Вы не владеете этим NFT";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (request.price <= 0) {
+            response.status = "error";
+            response.error = "Цена должна быть больше 0";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (request.durationMinutes != null
+                && (request.durationMinutes < 1 || request.durationMinutes > MAX_DURATION_MINUTES)) {
+            response.status = "error";
+            response.error = "Длительность аукциона должна быть от 1 минуты до 7 дней";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        if (request.minIncrement != null && request.minIncrement <= 0) {
+            response.status = "error";
+            response.error = "Шаг ставки должен быть больше 0";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        // A concurrent listing of the same NFT loses the version check on commit and is retried into this error
+        if (nft.getListed()) {
+            response.status = "error";
+            response.error = "NFT уже выставлен на аукцион";
+            return ResponseEntity.badRequest().body(response);
+        }
+        nft.setListed(true);
+        nftRepository.save(nft);
+        
+        Auction auction = new Auction();
+        auction.setNft(nft);
+        auction.setSeller(user);
+        auction.setPrice(request.price);
+        auction.setCreatedAt(LocalDateTime.now());
+        auction.setActive(true);
+        if (request.durationMinutes != null) {
+            auction.setEndsAt(auction.getCreatedAt().plusMinutes(request.durationMinutes));
+            auction.setMinIncrement(request.minIncrement != null ? request.minIncrement : Math.max(1, request.price / 20));
+        }
+        
+        auctionRepository.save(auction);
+        
+        // A standing buy order at or above the asking price takes the NFT right away
+        Optional<Long> filledPrice = buyOrderService.matchListing(auction);
+        if (filledPrice.isPresent()) {
+            response.status = "ok";
+            response.message = "NFT продан по заявке на покупку за " + filledPrice.get() + " монет";
+            response.newBalance = user.getBalance();
+            return ResponseEntity.ok().body(response);
+        }
+        
+        marketEventBus.listingCreated(auction);
+        response.status = "ok";
+        response.message = "Аукцион создан";
+        
+        return ResponseEntity.ok().body(response);
+    }
+
     @GetMapping("/all")
     public ResponseEntity<AuctionListResponse> getActiveAuctions() {
         AuctionListResponse response = new AuctionListResponse();
@@ -90,72 +206,175 @@ public class AuctionController {
         return ResponseEntity.ok().body(response);
     }
 
+    @GetMapping("/market")
+    public ResponseEntity<AuctionMarketResponse> getMarket(
+            @RequestParam(defaultValue = "NEWEST") AuctionSort sort,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) Long minPrice,
+            @RequestParam(required = false) Long maxPrice,
+            @RequestParam(required = false) Long afterPrice,
+            @RequestParam(required = false) LocalDateTime afterCreatedAt,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "50") int limit) {
+        AuctionMarketResponse response = new AuctionMarketResponse();
+
+        try {
+            int pageSize = Math.max(1, Math.min(limit, 100));
+            List<AuctionSummary> page = auctionRepository.search(new AuctionQuery(
+                    sort, name, minPrice, maxPrice, afterPrice, afterCreatedAt, afterId, pageSize));
+
+            response.status = "ok";
+            response.auctions = page;
+            if (page.size() == pageSize) {
+                AuctionSummary last = page.get(pageSize - 1);
+                response.nextAfterId = last.id();
+                if (sort == AuctionSort.NEWEST) {
+                    response.nextAfterCreatedAt = last.createdAt();
+                } else {
+                    response.nextAfterPrice = last.price();
+                }
+            }
+            return ResponseEntity.ok().body(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     @PostMapping("/buy")
     public ResponseEntity<AuctionActionResponse> buyFromAuction(@RequestBody AuctionBuyRequest request, Authentication authentication) {
         AuctionActionResponse response = new AuctionActionResponse();
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> buyerOptional = userRepository.findById(userId);
-            Optional<Auction> auctionOptional = auctionRepository.findById(request.auctionId);
-            
-            if (buyerOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
+            if (economyEngine.enabled()) {
+                return buyFromAuctionInEngine(request, userId);
             }
-            
-            if (auctionOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Аукцион не найден";
-                return ResponseEntity.badRequest().body(response);
+            // Buyer and seller are both paid in one transaction; the seller of an auction never changes
+            Long sellerId = auctionRepository.findSellerIdById(request.auctionId).orElse(null);
+            return balanceService.execute("auction.buy", Arrays.asList(userId, sellerId), status -> buyFromAuctionAttempt(request, userId));
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    private ResponseEntity<AuctionActionResponse> buyFromAuctionInEngine(AuctionBuyRequest request, Long userId) {
+        AuctionActionResponse response = new AuctionActionResponse();
+
+        EconomyEngine.Result result = economyEngine.buyListing(userId, request.auctionId);
+        switch (result.outcome()) {
+            case OK -> {
+                response.status = "ok";
+                response.message = "NFT куплен с аукциона";
+                response.newBalance = result.newBalance();
+                return ResponseEntity.ok().body(response);
             }
-            
-            User buyer = buyerOptional.get();
-            Auction auction = auctionOptional.get();
-            
-            if (!auction.getActive()) {
-                response.status = "error";
-                response.error = "Аукцион неактивен";
-                return ResponseEntity.badRequest().body(response);
+            case USER_NOT_FOUND -> response.error = "Пользователь не найден";
+            case AUCTION_NOT_FOUND -> response.error = "Аукцион не найден";
+            case NOT_ACTIVE -> response.error = "Аукцион неактивен";
+            case TIMED -> response.error = "На этот аукцион можно только делать ставки";
+            case OWN_AUCTION -> response.error = "Нельзя купить свой собственный NFT";
+            case INSUFFICIENT_FUNDS -> response.error = "Недостаточно средств";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        }
+        response.status = "error";
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private ResponseEntity<AuctionActionResponse> buyFromAuctionAttempt(AuctionBuyRequest request, Long userId) {
+        AuctionActionResponse response = new AuctionActionResponse();
+
+        Optional<User> buyerOptional = userRepository.findById(userId);
+        Optional<Auction> auctionOptional = auctionRepository.findById(request.auctionId);
+        
+        if (buyerOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (auctionOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Аукцион не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        User buyer = buyerOptional.get();
+        Auction auction = auctionOptional.get();
+        
+        if (!auction.getActive()) {
+            response.status = "error";
+            response.error = "Аукцион неактивен";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (auction.isTimed()) {
+            response.status = "error";
+            response.error = "На этот аукцион можно только делать ставки";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        AuctionSettlementService.Result result = auctionSettlementService.settle(auction, buyer, auction.getPrice());
+        switch (result.outcome()) {
+            case OK -> {
+                response.status = "ok";
+                response.message = "NFT куплен с аукциона";
+                response.newBalance = result.newBalance();
+                return ResponseEntity.ok().body(response);
             }
-            
-            if (auction.getSeller().equals(buyer)) {
+            case OWN_AUCTION -> response.error = "Нельзя купить свой собственный NFT";
+            case INSUFFICIENT_FUNDS -> response.error = "Недостаточно средств";
+            case ALREADY_CLOSED -> response.error = "Аукцион неактивен";
+        }
+        response.status = "error";
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    @PostMapping("/bid")
+    public ResponseEntity<AuctionBidResponse> placeBid(@RequestBody AuctionBidRequest request, Authentication authentication) {
+        AuctionBidResponse response = new AuctionBidResponse();
+
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+
+            // Bids hold funds outside the engine's view of the balance
+            if (economyEngine.enabled()) {
                 response.status = "error";
-                response.error = "Нельзя купить свой собственный NFT";
+                response.error = "Аукционы со ставками сейчас недоступны";
                 return ResponseEntity.badRequest().body(response);
             }
-            
-            if (buyer.getBalance() < auction.getPrice()) {
+
+            if (request.auctionId == null || request.amount == null || request.amount <= 0) {
                 response.status = "error";
-                response.error = "Недостаточно средств";
+                response.error = "Ставка должна быть больше 0";
                 return ResponseEntity.badRequest().body(response);
             }
-            
-            // Transfer money and NFT
-            buyer.setBalance(buyer.getBalance() - auction.getPrice());
-            User seller = auction.getSeller();
-            seller.setBalance(seller.getBalance() + auction.getPrice());
-            
-            NFT nft = auction.getNft();
-            if (seller.getPinnedNFT() != null && seller.getPinnedNFT().equals(nft)) {
-                seller.setPinnedNFT(null);
+
+            AuctionBidService.Result result = auctionBidService.placeBid(userId, request.auctionId, request.amount);
+            response.price = result.price();
+            response.endsAt = result.endsAt();
+            response.minimumBid = result.minimumBid();
+            switch (result.outcome()) {
+                case OK -> {
+                    response.status = "ok";
+                    response.message = "Ставка принята";
+                    return ResponseEntity.ok().body(response);
+                }
+                case USER_NOT_FOUND -> response.error = "Пользователь не найден";
+                case AUCTION_NOT_FOUND -> response.error = "Аукцион не найден";
+                case NOT_TIMED -> response.error = "На этом аукционе нет ставок, NFT можно купить сразу";
+                case ENDED -> response.error = "Аукцион завершен";
+                case OWN_AUCTION -> response.error = "Нельзя делать ставки на свой аукцион";
+                case ALREADY_LEADING -> response.error = "Ваша ставка уже лидирует";
+                case BID_TOO_LOW -> response.error = "Минимальная ставка: " + result.minimumBid();
+                case INSUFFICIENT_FUNDS -> response.error = "Недостаточно средств";
             }
-            nft.setOwner(buyer);
-            
-            auction.setActive(false);
-            
-            userRepository.save(buyer);
-            userRepository.save(seller);
-            nftRepository.save(nft);
-            auctionRepository.save(auction);
-            
-            response.status = "ok";
-            response.message = "NFT куплен с аукциона";
-            response.newBalance = buyer.getBalance();
-            
-            return ResponseEntity.ok().body(response);
-            
+            response.status = "error";
+            return ResponseEntity.badRequest().body(response);
+
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
@@ -169,45 +388,13 @@ public class AuctionController {
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            Optional<Auction> auctionOptional = auctionRepository.findById(request.auctionId);
-            
-            if (userOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (auctionOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Аукцион не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            User user = userOptional.get();
-            Auction auction = auctionOptional.get();
-            
-            if (!auction.getSeller().equals(user)) {
-                response.status = "error";
-                response.error = "Вы не можете отменить чужой аукцион";
-                return ResponseEntity.badRequest().body(response);
+            if (economyEngine.enabled()) {
+                Optional<ResponseEntity<AuctionActionResponse>> cancelled = cancelAuctionInEngine(request, userId);
+                if (cancelled.isPresent()) {
+                    return cancelled.get();
+                }
             }
-            
-            if (!auction.getActive()) {
-                response.status = "error";
-                response.error = "Аукцион уже неактивен";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            // Cancel the auction
-            auction.setActive(false);
-            auctionRepository.save(auction);
-            
-            response.status = "ok";
-            response.message = "Аукцион отменен, NFT возвращен";
-            
-            return ResponseEntity.ok().body(response);
-            
+            return optimisticRetry.execute("auction.cancel", status -> cancelAuctionAttempt(request, userId));
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
@@ -215,6 +402,83 @@ public class AuctionController {
         }
     }
 
+    // Empty for a timed auction: those are still cancelled on Postgres, which may have bids for them
+    private Optional<ResponseEntity<AuctionActionResponse>> cancelAuctionInEngine(AuctionCancelRequest request, Long userId) {
+        AuctionActionResponse response = new AuctionActionResponse();
+
+        EconomyEngine.Result result = economyEngine.delist(userId, request.auctionId);
+        switch (result.outcome()) {
+            case OK -> {
+                response.status = "ok";
+                response.message = "Аукцион отменен, NFT возвращен";
+                return Optional.of(ResponseEntity.ok().body(response));
+            }
+            case TIMED -> {
+                return Optional.empty();
+            }
+            case USER_NOT_FOUND -> response.error = "Пользователь не найден";
+            case AUCTION_NOT_FOUND -> response.error = "Аукцион не найден";
+            case NOT_OWNER -> response.error = "Вы не можете отменить чужой аукцион";
+            case NOT_ACTIVE -> response.error = "Аукцион уже неактивен";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        }
+        response.status = "error";
+        return Optional.of(ResponseEntity.badRequest().body(response));
+    }
+
+    private ResponseEntity<AuctionActionResponse> cancelAuctionAttempt(AuctionCancelRequest request, Long userId) {
+        AuctionActionResponse response = new AuctionActionResponse();
+
+        Optional<User> userOptional = userRepository.findById(userId);
+        Optional<Auction> auctionOptional = auctionRepository.findById(request.auctionId);
+        
+        if (userOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (auctionOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Аукцион не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        User user = userOptional.get();
+        Auction auction = auctionOptional.get();
+        
+        if (!auction.getSeller().equals(user)) {
+            response.status = "error";
+            response.error = "Вы не можете отменить чужой аукцион";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (!auction.getActive()) {
+            response.status = "error";
+            response.error = "Аукцион уже неактивен";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (auction.isTimed() && !auctionBidService.closeForCancel(auction)) {
+            response.status = "error";
+            response.error = "Нельзя отменить аукцион, на который уже есть ставки";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        // Cancel the auction
+        auction.setActive(false);
+        auction.getNft().setListed(false);
+        auctionRepository.save(auction);
+        nftRepository.save(auction.getNft());
+        marketEventBus.listingCancelled(auction);
+        economyEngine.forgetNfts(List.of(auction.getNft().getId()));
+        
+        response.status = "ok";
+        response.message = "Аукцион отменен, NFT возвращен";
+        
+        return ResponseEntity.ok().body(response);
+    }
+
     @GetMapping("/my")
     public ResponseEntity<AuctionListResponse> getMyAuctions(Authentication authentication) {
         AuctionListResponse response = new AuctionListResponse();
@@ -3,4 +3,7 @@ package ru.vlppz.zgbackend.Controllers.Auction;
 public class AuctionCreateRequest {
     public Long nftId;
     public Long price;
-}
\ No newline at end of file
+    // Set for a timed auction with bidding; price is then the start price
+    public Integer durationMinutes;
+    public Long minIncrement;
+}
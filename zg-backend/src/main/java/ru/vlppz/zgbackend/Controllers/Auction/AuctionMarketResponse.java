@@ -0,0 +1,16 @@
+package ru.vlppz.zgbackend.Controllers.Auction;
+
+import ru.vlppz.zgbackend.DB.Auction.AuctionSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class AuctionMarketResponse {
+    public String status;
+    public String error;
+    public List<AuctionSummary> auctions;
+    // Cursor for the next page (pass back as afterPrice/afterCreatedAt + afterId); null on the last page
+    public Long nextAfterPrice;
+    public LocalDateTime nextAfterCreatedAt;
+    public Long nextAfterId;
+}
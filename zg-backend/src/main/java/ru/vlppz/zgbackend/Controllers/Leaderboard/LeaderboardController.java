@@ -1,17 +1,29 @@
 package ru.vlppz.zgbackend.Controllers.Leaderboard;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
-import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.NFT.NFTSummary;
 import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.DB.User.UserSummary;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardMode;
 
+import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/leaderboard")
 public class LeaderboardController {
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_NFT_PAGE_SIZE = 100;
+
+    @Autowired
+    private LeaderboardIndex leaderboardIndex;
+
     @Autowired
     private UserRepository userRepository;
     
@@ -19,18 +31,71 @@ public class LeaderboardController {
     private NFTRepository nftRepository;
 
     @GetMapping("/users")
-    public ResponseEntity<LeaderboardResponse> getLeaderboard() {
+    public ResponseEntity<LeaderboardResponse> getLeaderboard(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Long afterBalance,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "BALANCE") LeaderboardMode mode) {
         LeaderboardResponse response = new LeaderboardResponse();
-        response.users = userRepository.findAllByOrderByBalanceDesc().stream().toList();
+        response.limit = Math.min(Math.max(1, limit), MAX_PAGE_SIZE);
+
+        if (mode == LeaderboardMode.BALANCE && afterBalance != null && afterId != null) {
+            // Cursor continuation straight from Postgres, for clients that walk the whole table
+            response.users = userRepository.findSummariesAfter(afterBalance, afterId, Limit.of(response.limit));
+        } else {
+            response.offset = Math.max(0, offset);
+            response.users = leaderboardIndex.page(mode, response.offset, response.limit);
+            response.total = leaderboardIndex.size();
+        }
+
+        if (mode == LeaderboardMode.BALANCE && response.users.size() == response.limit) {
+            UserSummary last = response.users.get(response.users.size() - 1);
+            response.nextAfterBalance = last.balance();
+            response.nextAfterId = last.id();
+        }
         return ResponseEntity.ok().body(response);
     }
 
+    @GetMapping("/rank/me")
+    public ResponseEntity<LeaderboardRankResponse> getMyRank(
+            @RequestParam(defaultValue = "BALANCE") LeaderboardMode mode,
+            Authentication authentication) {
+        LeaderboardRankResponse response = new LeaderboardRankResponse();
+
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+            Optional<LeaderboardIndex.Ranked> ranked = leaderboardIndex.rankOf(mode, userId);
+
+            if (ranked.isEmpty()) {
+                response.status = "error";
+                response.error = "Пользователь не найден";
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            response.status = "ok";
+            response.rank = ranked.get().rank();
+            response.total = ranked.get().total();
+            response.user = ranked.get().user();
+
+            return ResponseEntity.ok().body(response);
+
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<UserDetailsResponse> getUserDetails(@PathVariable Long userId) {
+    public ResponseEntity<UserDetailsResponse> getUserDetails(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "0") Long afterNftId,
+            @RequestParam(defaultValue = "50") int limit) {
         UserDetailsResponse response = new UserDetailsResponse();
         
         try {
-            Optional<User> userOptional = userRepository.findById(userId);
+            Optional<UserSummary> userOptional = userRepository.findSummaryById(userId);
             
             if (userOptional.isEmpty()) {
                 response.status = "error";
@@ -38,10 +103,18 @@ public class LeaderboardController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            User user = userOptional.get();
+            int pageSize = Math.min(Math.max(1, limit), MAX_NFT_PAGE_SIZE);
+            List<NFTSummary> nfts = nftRepository.findSummariesByOwnerId(userId, afterNftId, Limit.of(pageSize));
+
             response.status = "ok";
-            response.user = user;
-            response.nfts = nftRepository.findByOwner(user).stream().toList();
+            response.user = userOptional.get();
+            response.nfts = nfts;
+            if (afterNftId == 0) {
+                response.nftCount = nfts.size() < pageSize ? nfts.size() : nftRepository.countByOwnerId(userId);
+            }
+            if (nfts.size() == pageSize) {
+                response.nextAfterNftId = nfts.get(nfts.size() - 1).id();
+            }
             
             return ResponseEntity.ok().body(response);
             
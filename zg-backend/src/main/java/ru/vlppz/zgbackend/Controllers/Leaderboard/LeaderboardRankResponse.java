@@ -0,0 +1,11 @@
+package ru.vlppz.zgbackend.Controllers.Leaderboard;
+
+import ru.vlppz.zgbackend.DB.User.UserSummary;
+
+public class LeaderboardRankResponse {
+    public String status;
+    public String error;
+    public Integer rank;
+    public Integer total;
+    public UserSummary user;
+}
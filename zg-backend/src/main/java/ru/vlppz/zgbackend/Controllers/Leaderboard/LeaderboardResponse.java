@@ -1,9 +1,14 @@
 package ru.vlppz.zgbackend.Controllers.Leaderboard;
 
-import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserSummary;
 
 import java.util.List;
 
 public class LeaderboardResponse {
-    public List<User> users;
-}
\ No newline at end of file
+    public List<UserSummary> users;
+    public Integer total;
+    public Integer offset;
+    public Integer limit;
+    public Long nextAfterBalance;
+    public Long nextAfterId;
+}
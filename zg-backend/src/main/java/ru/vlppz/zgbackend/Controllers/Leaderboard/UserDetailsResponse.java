@@ -1,13 +1,16 @@
 package ru.vlppz.zgbackend.Controllers.Leaderboard;
 
-import ru.vlppz.zgbackend.DB.NFT.NFT;
-import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.NFT.NFTSummary;
+import ru.vlppz.zgbackend.DB.User.UserSummary;
 
 import java.util.List;
 
 public class UserDetailsResponse {
     public String status;
     public String error;
-    public User user;
-    public List<NFT> nfts;
-}
\ No newline at end of file
+    public UserSummary user;
+    public List<NFTSummary> nfts;
+    // All NFTs of the user; only on the first page
+    public Long nftCount;
+    public Long nextAfterNftId;
+}
@@ -0,0 +1,20 @@
+package ru.vlppz.zgbackend.Controllers.Market;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+
+@RestController
+@RequestMapping("/api/market")
+public class MarketStreamController {
+    @Autowired
+    private MarketEventBus marketEventBus;
+
+    // Listing and shop deltas as server-sent events; see MarketEvent for the event names
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return marketEventBus.subscribe();
+    }
+}
@@ -0,0 +1,10 @@
+package ru.vlppz.zgbackend.Controllers.NFT;
+
+import ru.vlppz.zgbackend.Services.Drop.DropTicket;
+
+public class DropTicketResponse {
+    public String status;
+    public String error;
+    public DropTicket ticket;
+    public Long queuePosition;
+}
@@ -2,4 +2,5 @@ package ru.vlppz.zgbackend.Controllers.NFT;
 
 public class NFTBuyRequest {
     public Long nftId;
+    public Long editionId;
 }
\ No newline at end of file
@@ -5,4 +5,8 @@ public class NFTBuyResponse {
     public String error;
     public String message;
     public Long newBalance;
+    public Long nftId;
+    // Set when the purchase was queued for a limited drop; poll /api/nft/drop/ticket/{ticketId}
+    public String ticketId;
+    public Long queuePosition;
 }
\ No newline at end of file
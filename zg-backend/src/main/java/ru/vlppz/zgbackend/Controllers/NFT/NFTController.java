@@ -1,17 +1,34 @@
 package ru.vlppz.zgbackend.Controllers.NFT;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import ru.vlppz.zgbackend.DB.Auction.AuctionBidRepository;
 import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
 import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
 import ru.vlppz.zgbackend.DB.User.User;
 import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Balance.BalanceService;
+import ru.vlppz.zgbackend.Services.Drop.DropQueueService;
+import ru.vlppz.zgbackend.Services.Drop.DropTicket;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+import ru.vlppz.zgbackend.Services.OptimisticRetryExecutor;
+import ru.vlppz.zgbackend.Services.Shop.CatalogCache;
+import ru.vlppz.zgbackend.Services.Shop.ShopPurchaseService;
 
 
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -19,26 +36,61 @@ import java.util.Optional;
 public class NFTController {
     @Autowired
     private NFTRepository nftRepository;
+
+    @Autowired
+    private OptimisticRetryExecutor optimisticRetry;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private CoinLedger coinLedger;
     
+    @Autowired
+    private NFTEditionRepository nftEditionRepository;
+
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
     private AuctionRepository auctionRepository;
+
+    @Autowired
+    private AuctionBidRepository auctionBidRepository;
+
+    @Autowired
+    private NetWorthService netWorthService;
+
+    @Autowired
+    private ShopPurchaseService shopPurchaseService;
+
+    @Autowired
+    private DropQueueService dropQueueService;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    @Autowired
+    private EconomyEngine economyEngine;
     
 
 
+    // Served from CatalogCache; a matching If-None-Match gets a 304 without a body
     @GetMapping("/all")
-    public ResponseEntity<NFTListResponse> listAllNFTs() {
-        NFTListResponse response = new NFTListResponse();
-        response.nfts = nftRepository.findByOwnerIsNull().stream().toList();
-        return ResponseEntity.ok().body(response);
+    public ResponseEntity<byte[]> listAllNFTs() throws Exception {
+        CatalogCache.Catalog catalog = catalogCache.catalog();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(catalog.etag())
+                .body(catalog.json());
     }
 
     @GetMapping("/admin/all")
     public ResponseEntity<NFTListResponse> listAllNFTsForAdmin() {
         NFTListResponse response = new NFTListResponse();
         response.nfts = nftRepository.findAll().stream().toList();
+        response.editions = nftEditionRepository.findAll();
         return ResponseEntity.ok().body(response);
     }
 
@@ -48,45 +100,41 @@ public class NFTController {
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
-            
-            if (userOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (nftOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "NFT не найден";
-                return ResponseEntity.badRequest().body(response);
+
+            // The engine already serializes every purchase, drops included, so it needs no queue
+            if (economyEngine.enabled()) {
+                return buyNFTInEngine(request, userId);
             }
-            
-            User user = userOptional.get();
-            NFT nft = nftOptional.get();
-            
-            if (nft.getOwner() != null) {
-                response.status = "error";
-                response.error = "NFT уже куплен";
-                return ResponseEntity.badRequest().body(response);
+
+            if (request.editionId != null) {
+                Optional<DropQueueService.Entry> dropEntry = dropQueueService.enter(userId, request.editionId);
+                if (dropEntry.isPresent()) {
+                    return dropResponse(dropEntry.get(), response);
+                }
             }
-            
-            if (user.getBalance() < nft.getPrice()) {
+
+            ShopPurchaseService.Result result = request.editionId != null
+                    ? shopPurchaseService.purchaseEdition(userId, request.editionId)
+                    : shopPurchaseService.purchase(userId, request.nftId);
+
+            String error = switch (result.outcome()) {
+                case OK -> null;
+                case USER_NOT_FOUND -> "Пользователь не найден";
+                case NFT_NOT_FOUND -> "NFT не найден";
+                case ALREADY_OWNED -> "NFT уже куплен";
+                case SOLD_OUT -> "NFT распродан";
+                case INSUFFICIENT_FUNDS -> "Недостаточно средств";
+            };
+            if (error != null) {
                 response.status = "error";
-                response.error = "Недостаточно средств";
+                response.error = error;
                 return ResponseEntity.badRequest().body(response);
             }
             
-            user.setBalance(user.getBalance() - nft.getPrice());
-            nft.setOwner(user);
-            
-            userRepository.save(user);
-            nftRepository.save(nft);
-            
             response.status = "ok";
             response.message = "NFT успешно куплен";
-            response.newBalance = user.getBalance();
+            response.newBalance = result.newBalance();
+            response.nftId = result.nftId();
             
             return ResponseEntity.ok().body(response);
             
@@ -97,22 +145,96 @@ public class NFTController {
         }
     }
 
+    private ResponseEntity<NFTBuyResponse> buyNFTInEngine(NFTBuyRequest request, Long userId) {
+        NFTBuyResponse response = new NFTBuyResponse();
+
+        EconomyEngine.Result result = request.editionId != null
+                ? economyEngine.buyEdition(userId, request.editionId)
+                : economyEngine.buy(userId, request.nftId);
+
+        String error = switch (result.outcome()) {
+            case OK -> null;
+            case USER_NOT_FOUND -> "Пользователь не найден";
+            case NFT_NOT_FOUND -> "NFT не найден";
+            case ALREADY_OWNED -> "NFT уже куплен";
+            case SOLD_OUT -> "NFT распродан";
+            case INSUFFICIENT_FUNDS -> "Недостаточно средств";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        };
+        if (error != null) {
+            response.status = "error";
+            response.error = error;
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        response.status = "ok";
+        response.message = "NFT успешно куплен";
+        response.newBalance = result.newBalance();
+        response.nftId = result.nftId();
+
+        return ResponseEntity.ok().body(response);
+    }
+
+    private ResponseEntity<NFTBuyResponse> dropResponse(DropQueueService.Entry entry, NFTBuyResponse response) {
+        switch (entry.admission()) {
+            case QUEUED -> {
+                response.status = "queued";
+                response.message = "Вы в очереди на покупку";
+                response.ticketId = entry.ticket().getId();
+                response.queuePosition = dropQueueService.ahead(entry.ticket());
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
+            case QUEUE_FULL -> {
+                response.status = "error";
+                response.error = "Очередь переполнена, попробуйте позже";
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+            }
+            case ALREADY_QUEUED -> {
+                response.status = "error";
+                response.error = "Вы уже в очереди";
+                return ResponseEntity.badRequest().body(response);
+            }
+            default -> {
+                response.status = "error";
+                response.error = "NFT распродан";
+                return ResponseEntity.badRequest().body(response);
+            }
+        }
+    }
+
+    @GetMapping("/drop/ticket/{ticketId}")
+    public ResponseEntity<DropTicketResponse> getDropTicket(@PathVariable String ticketId, Authentication authentication) {
+        DropTicketResponse response = new DropTicketResponse();
+
+        Long userId = Long.parseLong(authentication.getName());
+        Optional<DropTicket> ticket = dropQueueService.ticket(ticketId);
+        if (ticket.isEmpty() || !ticket.get().getUserId().equals(userId)) {
+            response.status = "error";
+            response.error = "Заявка не найдена";
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+
+        response.status = "ok";
+        response.ticket = ticket.get();
+        response.queuePosition = dropQueueService.ahead(ticket.get());
+        return ResponseEntity.ok().body(response);
+    }
+
     @GetMapping("/my")
-    public ResponseEntity<NFTListResponse> getMyNFTs(Authentication authentication) {
+    public ResponseEntity<NFTListResponse> getMyNFTs(
+            @RequestParam(defaultValue = "0") Long afterId,
+            @RequestParam(defaultValue = "100") int limit,
+            Authentication authentication) {
         NFTListResponse response = new NFTListResponse();
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            
-            if (userOptional.isEmpty()) {
-                response.nfts = java.util.Collections.emptyList();
-                return ResponseEntity.ok().body(response);
+            int pageSize = Math.max(1, Math.min(limit, 200));
+            response.nfts = nftRepository.findUnlistedByOwnerId(userId, afterId, Limit.of(pageSize));
+            if (response.nfts.size() == pageSize) {
+                response.nextAfterId = response.nfts.get(pageSize - 1).getId();
             }
             
-            User user = userOptional.get();
-            response.nfts = nftRepository.findByOwnerAndNotInActiveAuction(user).stream().toList();
-            
             return ResponseEntity.ok().body(response);
             
         } catch (Exception e) {
@@ -127,38 +249,7 @@ public class NFTController {
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
-            
-            if (userOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (nftOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "NFT не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            User user = userOptional.get();
-            NFT nft = nftOptional.get();
-            
-            if (!nft.getOwner().equals(user)) {
-                response.status = "error";
-                response.error = "Вы не владеете этим NFT";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            user.setPinnedNFT(nft);
-            userRepository.save(user);
-            
-            response.status = "ok";
-            response.message = "NFT закреплен";
-            
-            return ResponseEntity.ok().body(response);
-            
+            return optimisticRetry.execute("nft.pin", status -> pinNFTAttempt(request, userId));
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
@@ -166,67 +257,53 @@ public class NFTController {
         }
     }
 
+    // One optimistic attempt; re-run from scratch by OptimisticRetryExecutor on a version conflict
+    private ResponseEntity<NFTActionResponse> pinNFTAttempt(NFTActionRequest request, Long userId) {
+        NFTActionResponse response = new NFTActionResponse();
+
+        Optional<User> userOptional = userRepository.findById(userId);
+        Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
+        
+        if (userOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (nftOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "NFT не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        User user = userOptional.get();
+        NFT nft = nftOptional.get();
+        
+        if (!nft.getOwner().equals(user)) {
+            response.status = "error";
+            response.error = "Вы не владеете этим NFT";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        user.setPinnedNFT(nft);
+        userRepository.save(user);
+        
+        response.status = "ok";
+        response.message = "NFT закреплен";
+        
+        return ResponseEntity.ok().body(response);
+    }
+
     @PostMapping("/sell")
     public ResponseEntity<NFTActionResponse> sellNFT(@RequestBody NFTActionRequest request, Authentication authentication) {
         NFTActionResponse response = new NFTActionResponse();
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
-            
-            if (userOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (nftOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "NFT не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            User user = userOptional.get();
-            NFT nft = nftOptional.get();
-            
-            if (!nft.getOwner().equals(user)) {
-                response.status = "error";
-                response.error = "Вы не владеете этим NFT";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            // Check if NFT has active auctions
-            var activeAuction = auctionRepository.findByNftAndActiveTrue(nft);
-            if (activeAuction.isPresent()) {
-                response.status = "error";
-                response.error = "Нельзя продать NFT с активным аукционом. Сначала отмените аукцион.";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            // Sell for 75% of original price
-            Long sellPrice = (long) (nft.getPrice() * 0.75);
-            user.setBalance(user.getBalance() + sellPrice);
-            
-            // Remove ownership and unpin if pinned
-            if (user.getPinnedNFT() != null && user.getPinnedNFT().equals(nft)) {
-                user.setPinnedNFT(null);
+            if (economyEngine.enabled()) {
+                return sellNFTInEngine(request, userId);
             }
-            
-            // Delete all auction records for this NFT first (including inactive ones)
-            var allAuctions = auctionRepository.findByNft(nft);
-            auctionRepository.deleteAll(allAuctions);
-            
-            // Delete the NFT completely instead of returning to shop
-            nftRepository.delete(nft);
-            userRepository.save(user);
-            
-            response.status = "ok";
-            response.message = "NFT продан за " + sellPrice + " монет";
-            response.newBalance = user.getBalance();
-            
-            return ResponseEntity.ok().body(response);
-            
+            return balanceService.execute("nft.sell", userId, status -> sellNFTAttempt(request, userId));
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
@@ -234,72 +311,101 @@ public class NFTController {
         }
     }
 
+    private ResponseEntity<NFTActionResponse> sellNFTInEngine(NFTActionRequest request, Long userId) {
+        NFTActionResponse response = new NFTActionResponse();
+
+        EconomyEngine.Result result = economyEngine.sell(userId, request.nftId);
+        String error = switch (result.outcome()) {
+            case OK -> null;
+            case USER_NOT_FOUND -> "Пользователь не найден";
+            case NFT_NOT_FOUND -> "NFT не найден";
+            case NOT_OWNER -> "Вы не владеете этим NFT";
+            case LISTED -> "Нельзя продать NFT с активным аукционом. Сначала отмените аукцион.";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        };
+        if (error != null) {
+            response.status = "error";
+            response.error = error;
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        response.status = "ok";
+        response.message = "NFT продан за " + result.amount() + " монет";
+        response.newBalance = result.newBalance();
+
+        return ResponseEntity.ok().body(response);
+    }
+
+    private ResponseEntity<NFTActionResponse> sellNFTAttempt(NFTActionRequest request, Long userId) {
+        NFTActionResponse response = new NFTActionResponse();
+
+        Optional<User> userOptional = userRepository.findById(userId);
+        Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
+        
+        if (userOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (nftOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "NFT не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        User user = userOptional.get();
+        NFT nft = nftOptional.get();
+        
+        if (!nft.getOwner().equals(user)) {
+            response.status = "error";
+            response.error = "Вы не владеете этим NFT";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        // Check if NFT has active auctions
+        if (nft.getListed()) {
+            response.status = "error";
+            response.error = "Нельзя продать NFT с активным аукционом. Сначала отмените аукцион.";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        // Sell for 75% of original price
+        Long sellPrice = (long) (nft.getPrice() * 0.75);
+        user.setBalance(user.getBalance() + sellPrice);
+        coinLedger.record(user.getId(), sellPrice, LedgerEntry.Reason.NFT_SELL, nft.getId());
+        
+        // Remove ownership and unpin if pinned
+        if (user.getPinnedNFT() != null && user.getPinnedNFT().equals(nft)) {
+            user.setPinnedNFT(null);
+        }
+        
+        // Delete all auction records for this NFT first (it is unlisted, so they are all closed)
+        auctionBidRepository.deleteByNftIds(List.of(nft.getId()));
+        auctionRepository.deleteByNftIds(List.of(nft.getId()));
+        
+        // Delete the NFT completely instead of returning to shop
+        nftRepository.delete(nft);
+        userRepository.save(user);
+        netWorthService.onReleased(user, nft);
+        
+        response.status = "ok";
+        response.message = "NFT продан за " + sellPrice + " монет";
+        response.newBalance = user.getBalance();
+        
+        return ResponseEntity.ok().body(response);
+    }
+
     @PostMapping("/transfer")
     public ResponseEntity<NFTActionResponse> transferNFT(@RequestBody NFTTransferRequest request, Authentication authentication) {
         NFTActionResponse response = new NFTActionResponse();
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> senderOptional = userRepository.findById(userId);
-            Optional<User> receiverOptional = userRepository.findByUsername(request.receiverUsername);
-            Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
-            
-            if (senderOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (receiverOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Получатель не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (nftOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "NFT не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            User sender = senderOptional.get();
-            User receiver = receiverOptional.get();
-            NFT nft = nftOptional.get();
-            
-            if (!nft.getOwner().equals(sender)) {
-                response.status = "error";
-                response.error = "Вы не владеете этим NFT";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (sender.getBalance() < 100) {
-                response.status = "error";
-                response.error = "Недостаточно средств для перевода (100 монет)";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (sender.equals(receiver)) {
-                response.status = "error";
-                response.error = "Нельзя передать NFT самому себе";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            // Transfer NFT and charge fee
-            sender.setBalance(sender.getBalance() - 100);
-            if (sender.getPinnedNFT() != null && sender.getPinnedNFT().equals(nft)) {
-                sender.setPinnedNFT(null);
+            if (economyEngine.enabled()) {
+                return transferNFTInEngine(request, userId);
             }
-            nft.setOwner(receiver);
-            
-            userRepository.save(sender);
-            nftRepository.save(nft);
-            
-            response.status = "ok";
-            response.message = "NFT передан пользователю " + receiver.getUsername();
-            response.newBalance = sender.getBalance();
-            
-            return ResponseEntity.ok().body(response);
-            
+            return balanceService.execute("nft.transfer", userId, status -> transferNFTAttempt(request, userId));
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
@@ -307,5 +413,114 @@ public class NFTController {
         }
     }
 
+    // Only the receiver's username is resolved here; ownership, the fee and the move are the engine's
+    private ResponseEntity<NFTActionResponse> transferNFTInEngine(NFTTransferRequest request, Long userId) {
+        NFTActionResponse response = new NFTActionResponse();
+
+        Optional<User> receiverOptional = userRepository.findByUsername(request.receiverUsername);
+        if (receiverOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Получатель не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        User receiver = receiverOptional.get();
+
+        EconomyEngine.Result result = economyEngine.transfer(userId, receiver.getId(), request.nftId, 100);
+        String error = switch (result.outcome()) {
+            case OK -> null;
+            case USER_NOT_FOUND -> "Пользователь не найден";
+            case RECEIVER_NOT_FOUND -> "Получатель не найден";
+            case NFT_NOT_FOUND -> "NFT не найден";
+            case NOT_OWNER -> "Вы не владеете этим NFT";
+            case INSUFFICIENT_FUNDS -> "Недостаточно средств для перевода (100 монет)";
+            case SELF_TRANSFER -> "Нельзя передать NFT самому себе";
+            case LISTED -> "Нельзя передать NFT с активным аукционом. Сначала отмените аукцион.";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        };
+        if (error != null) {
+            response.status = "error";
+            response.error = error;
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        response.status = "ok";
+        response.message = "NFT передан пользователю " + receiver.getUsername();
+        response.newBalance = result.newBalance();
+
+        return ResponseEntity.ok().body(response);
+    }
+
+    private ResponseEntity<NFTActionResponse> transferNFTAttempt(NFTTransferRequest request, Long userId) {
+        NFTActionResponse response = new NFTActionResponse();
+
+        Optional<User> senderOptional = userRepository.findById(userId);
+        Optional<User> receiverOptional = userRepository.findByUsername(request.receiverUsername);
+        Optional<NFT> nftOptional = nftRepository.findById(request.nftId);
+        
+        if (senderOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (receiverOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Получатель не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (nftOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "NFT не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        User sender = senderOptional.get();
+        User receiver = receiverOptional.get();
+        NFT nft = nftOptional.get();
+        
+        if (!nft.getOwner().equals(sender)) {
+            response.status = "error";
+            response.error = "Вы не владеете этим NFT";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (sender.getBalance() < 100) {
+            response.status = "error";
+            response.error = "Недостаточно средств для перевода (100 монет)";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (sender.equals(receiver)) {
+            response.status = "error";
+            response.error = "Нельзя передать NFT самому себе";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        if (nft.getListed()) {
+            response.status = "error";
+            response.error = "Нельзя передать NFT с активным аукционом. Сначала отмените аукцион.";
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        // Transfer NFT and charge fee
+        sender.setBalance(sender.getBalance() - 100);
+        coinLedger.record(sender.getId(), -100, LedgerEntry.Reason.TRANSFER_FEE, nft.getId());
+        if (sender.getPinnedNFT() != null && sender.getPinnedNFT().equals(nft)) {
+            sender.setPinnedNFT(null);
+        }
+        nft.setOwner(receiver);
+        
+        userRepository.save(sender);
+        nftRepository.save(nft);
+        netWorthService.onTransferred(sender, receiver, nft);
+        
+        response.status = "ok";
+        response.message = "NFT передан пользователю " + receiver.getUsername();
+        response.newBalance = sender.getBalance();
+        
+        return ResponseEntity.ok().body(response);
+    }
+
 
 }
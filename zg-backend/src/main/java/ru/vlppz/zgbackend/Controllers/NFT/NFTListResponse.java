@@ -3,6 +3,7 @@ package ru.vlppz.zgbackend.Controllers.NFT;
 import lombok.Getter;
 import lombok.Setter;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
 
 import java.util.List;
 
@@ -10,4 +11,7 @@ import java.util.List;
 @Setter
 public class NFTListResponse {
     public List<NFT> nfts;
+    public List<NFTEdition> editions;
+    // Cursor for the next inventory page, null on the last one
+    public Long nextAfterId;
 }
@@ -0,0 +1,5 @@
+package ru.vlppz.zgbackend.Controllers.Order;
+
+public class BuyOrderCancelRequest {
+    public Long orderId;
+}
@@ -0,0 +1,130 @@
+package ru.vlppz.zgbackend.Controllers.Order;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.DB.Order.BuyOrder;
+import ru.vlppz.zgbackend.DB.Order.BuyOrderRepository;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Balance.BalanceService;
+import ru.vlppz.zgbackend.Services.Order.BuyOrderService;
+
+@RestController
+@RequestMapping("/api/order")
+public class BuyOrderController {
+    @Autowired
+    private BuyOrderService buyOrderService;
+
+    @Autowired
+    private BuyOrderRepository buyOrderRepository;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private EconomyEngine economyEngine;
+
+    @PostMapping("/create")
+    public ResponseEntity<BuyOrderResponse> createOrder(@RequestBody BuyOrderCreateRequest request, Authentication authentication) {
+        BuyOrderResponse response = new BuyOrderResponse();
+
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+            // A new order would reserve coins outside the engine's view of the balance
+            if (economyEngine.enabled()) {
+                response.status = "error";
+                response.error = "Заявки на покупку сейчас недоступны";
+                return ResponseEntity.badRequest().body(response);
+            }
+            return balanceService.execute("order.create", userId, status -> createOrderAttempt(request, userId));
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    // One optimistic attempt; re-run from scratch by OptimisticRetryExecutor on a version conflict
+    private ResponseEntity<BuyOrderResponse> createOrderAttempt(BuyOrderCreateRequest request, Long userId) {
+        BuyOrderResponse response = new BuyOrderResponse();
+
+        if (request.nftName == null || request.nftName.isBlank()) {
+            response.status = "error";
+            response.error = "Укажите название NFT";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        if (request.maxPrice == null || request.maxPrice <= 0) {
+            response.status = "error";
+            response.error = "Цена должна быть больше 0";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        BuyOrderService.Result result = buyOrderService.placeOrder(userId, request.nftName.trim(), request.maxPrice);
+        switch (result.outcome()) {
+            case OK -> {
+                response.status = "ok";
+                response.order = result.order();
+                response.newBalance = result.newBalance();
+                response.message = result.order().getStatus() == BuyOrder.Status.FILLED
+                        ? "Заявка исполнена: NFT куплен за " + result.order().getFilledPrice() + " монет"
+                        : "Заявка создана, монеты зарезервированы";
+                return ResponseEntity.ok().body(response);
+            }
+            case USER_NOT_FOUND -> response.error = "Пользователь не найден";
+            case INSUFFICIENT_FUNDS -> response.error = "Недостаточно средств";
+            default -> response.error = "Не удалось создать заявку";
+        }
+        response.status = "error";
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    @PostMapping("/cancel")
+    public ResponseEntity<BuyOrderResponse> cancelOrder(@RequestBody BuyOrderCancelRequest request, Authentication authentication) {
+        BuyOrderResponse response = new BuyOrderResponse();
+
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+            return balanceService.execute("order.cancel", userId, status -> cancelOrderAttempt(request, userId));
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    private ResponseEntity<BuyOrderResponse> cancelOrderAttempt(BuyOrderCancelRequest request, Long userId) {
+        BuyOrderResponse response = new BuyOrderResponse();
+
+        BuyOrderService.Result result = buyOrderService.cancelOrder(userId, request.orderId);
+        switch (result.outcome()) {
+            case OK -> {
+                response.status = "ok";
+                response.message = "Заявка отменена, монеты возвращены";
+                response.newBalance = result.newBalance();
+                return ResponseEntity.ok().body(response);
+            }
+            case ORDER_NOT_FOUND -> response.error = "Заявка не найдена";
+            case ORDER_CLOSED -> response.error = "Заявка уже исполнена или отменена";
+            default -> response.error = "Не удалось отменить заявку";
+        }
+        response.status = "error";
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    @GetMapping("/my")
+    public ResponseEntity<BuyOrderListResponse> getMyOrders(Authentication authentication) {
+        BuyOrderListResponse response = new BuyOrderListResponse();
+
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+            response.orders = buyOrderRepository.findByBuyerId(userId);
+            return ResponseEntity.ok().body(response);
+
+        } catch (Exception e) {
+            response.orders = java.util.Collections.emptyList();
+            return ResponseEntity.ok().body(response);
+        }
+    }
+}
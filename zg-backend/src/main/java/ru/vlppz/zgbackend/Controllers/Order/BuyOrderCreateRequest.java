@@ -0,0 +1,6 @@
+package ru.vlppz.zgbackend.Controllers.Order;
+
+public class BuyOrderCreateRequest {
+    public String nftName;
+    public Long maxPrice;
+}
@@ -0,0 +1,9 @@
+package ru.vlppz.zgbackend.Controllers.Order;
+
+import ru.vlppz.zgbackend.DB.Order.BuyOrder;
+
+import java.util.List;
+
+public class BuyOrderListResponse {
+    public List<BuyOrder> orders;
+}
@@ -0,0 +1,11 @@
+package ru.vlppz.zgbackend.Controllers.Order;
+
+import ru.vlppz.zgbackend.DB.Order.BuyOrder;
+
+public class BuyOrderResponse {
+    public String status;
+    public String error;
+    public String message;
+    public Long newBalance;
+    public BuyOrder order;
+}
@@ -0,0 +1,117 @@
+package ru.vlppz.zgbackend.Controllers.Season;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.DB.Season.SeasonRepository;
+import ru.vlppz.zgbackend.Services.Season.SeasonService;
+import ru.vlppz.zgbackend.Services.Season.SeasonStandings;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/season")
+public class SeasonController {
+    private static final int MAX_PAGE_SIZE = 200;
+
+    @Autowired
+    private SeasonService seasonService;
+
+    @Autowired
+    private SeasonRepository seasonRepository;
+
+    @GetMapping("/list")
+    public ResponseEntity<SeasonListResponse> listSeasons() {
+        SeasonListResponse response = new SeasonListResponse();
+        response.current = seasonService.currentSeason().orElse(null);
+        response.seasons = seasonRepository.findAllByOrderByStartedAtDesc();
+        return ResponseEntity.ok().body(response);
+    }
+
+    // Past seasons never change, so every page is cacheable forever by browsers and proxies
+    @GetMapping("/{seasonId}/standings")
+    public ResponseEntity<SeasonStandingsResponse> getStandings(
+            @PathVariable Long seasonId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        SeasonStandingsResponse response = new SeasonStandingsResponse();
+
+        try {
+            Optional<SeasonService.ArchivedSeason> archivedOptional = seasonService.archivedSeason(seasonId);
+
+            if (archivedOptional.isEmpty()) {
+                response.status = "error";
+                response.error = "Сезон не найден или еще не завершен";
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            SeasonService.ArchivedSeason archived = archivedOptional.get();
+            SeasonStandings standings = archived.standings();
+            response.offset = Math.max(0, offset);
+            response.limit = Math.min(Math.max(1, limit), MAX_PAGE_SIZE);
+
+            response.status = "ok";
+            response.season = archived.season();
+            response.total = standings.size();
+            response.standings = new ArrayList<>();
+            int end = Math.min(standings.size(), response.offset + response.limit);
+            for (int i = response.offset; i < end; i++) {
+                response.standings.add(standingAt(standings, i));
+            }
+
+            String etag = "\"" + archived.checksum() + "-" + response.offset + "-" + response.limit + "\"";
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                    .eTag(etag)
+                    .body(response);
+
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    @GetMapping("/{seasonId}/rank/me")
+    public ResponseEntity<SeasonRankResponse> getMySeasonRank(@PathVariable Long seasonId, Authentication authentication) {
+        SeasonRankResponse response = new SeasonRankResponse();
+
+        try {
+            Long userId = Long.parseLong(authentication.getName());
+            Optional<SeasonService.ArchivedSeason> archivedOptional = seasonService.archivedSeason(seasonId);
+
+            if (archivedOptional.isEmpty()) {
+                response.status = "error";
+                response.error = "Сезон не найден или еще не завершен";
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            SeasonStandings standings = archivedOptional.get().standings();
+            int position = standings.positionOf(userId);
+
+            response.status = "ok";
+            response.seasonId = seasonId;
+            response.total = standings.size();
+            response.standing = position >= 0 ? standingAt(standings, position) : null;
+
+            return ResponseEntity.ok().body(response);
+
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    private static SeasonStanding standingAt(SeasonStandings standings, int position) {
+        SeasonStanding standing = new SeasonStanding();
+        standing.rank = standings.rankAt(position);
+        standing.userId = standings.userIdAt(position);
+        standing.balance = standings.balanceAt(position);
+        return standing;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.vlppz.zgbackend.Controllers.Season;
+
+import ru.vlppz.zgbackend.DB.Season.Season;
+
+import java.util.List;
+
+public class SeasonListResponse {
+    public String status = "ok";
+    public Season current;
+    public List<Season> seasons;
+}
@@ -0,0 +1,9 @@
+package ru.vlppz.zgbackend.Controllers.Season;
+
+public class SeasonRankResponse {
+    public String status;
+    public String error;
+    public Long seasonId;
+    public Integer total;
+    public SeasonStanding standing;
+}
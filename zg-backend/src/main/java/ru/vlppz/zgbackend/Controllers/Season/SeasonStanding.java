@@ -0,0 +1,7 @@
+package ru.vlppz.zgbackend.Controllers.Season;
+
+public class SeasonStanding {
+    public Integer rank;
+    public Long userId;
+    public Long balance;
+}
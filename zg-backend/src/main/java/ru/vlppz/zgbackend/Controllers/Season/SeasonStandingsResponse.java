@@ -0,0 +1,15 @@
+package ru.vlppz.zgbackend.Controllers.Season;
+
+import ru.vlppz.zgbackend.DB.Season.Season;
+
+import java.util.List;
+
+public class SeasonStandingsResponse {
+    public String status;
+    public String error;
+    public Season season;
+    public Integer total;
+    public Integer offset;
+    public Integer limit;
+    public List<SeasonStanding> standings;
+}
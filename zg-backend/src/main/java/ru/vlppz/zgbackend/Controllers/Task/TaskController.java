@@ -3,14 +3,20 @@ package ru.vlppz.zgbackend.Controllers.Task;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
 import ru.vlppz.zgbackend.DB.Task.Task;
 import ru.vlppz.zgbackend.DB.Task.TaskCompletion;
 import ru.vlppz.zgbackend.DB.Task.TaskCompletionRepository;
 import ru.vlppz.zgbackend.DB.Task.TaskRepository;
 import ru.vlppz.zgbackend.DB.User.User;
 import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Balance.BalanceService;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -29,6 +35,18 @@ public class TaskController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private CoinLedger coinLedger;
+
+    @Autowired
+    private LeaderboardIndex leaderboardIndex;
+
+    @Autowired
+    private EconomyEngine economyEngine;
+
     @GetMapping("/all")
     public ResponseEntity<TaskListResponse> getAllTasks(Authentication authentication) {
         TaskListResponse response = new TaskListResponse();
@@ -66,60 +84,93 @@ public class TaskController {
     }
 
     @PostMapping("/complete")
-    @Transactional
     public ResponseEntity<TaskCompleteResponse> completeTask(@RequestBody TaskCompleteRequest request, Authentication authentication) {
         TaskCompleteResponse response = new TaskCompleteResponse();
         
         try {
             Long userId = Long.parseLong(authentication.getName());
-            Optional<User> userOptional = userRepository.findById(userId);
-            Optional<Task> taskOptional = taskRepository.findById(request.taskId);
-            
-            if (userOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Пользователь не найден";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            if (taskOptional.isEmpty()) {
-                response.status = "error";
-                response.error = "Задание не найдено";
-                return ResponseEntity.badRequest().body(response);
+            if (economyEngine.enabled()) {
+                return completeTaskInEngine(request, userId);
             }
-            
-            User user = userOptional.get();
-            Task task = taskOptional.get();
-            
-            // Check if user already completed this task
-            if (taskCompletionRepository.existsByTaskAndUser(task, user)) {
-                response.status = "error";
-                response.error = "Задание уже выполнено";
-                return ResponseEntity.badRequest().body(response);
-            }
-            
-            // Complete task
-            user.setBalance(user.getBalance() + task.getReward());
-            
-            // Create completion record
-            TaskCompletion completion = new TaskCompletion();
-            completion.setTask(task);
-            completion.setUser(user);
-            completion.setCompletedAt(LocalDateTime.now());
-            
-            userRepository.save(user);
-            taskCompletionRepository.save(completion);
-            
-            response.status = "ok";
-            response.message = "Задание выполнено! Получено " + task.getReward() + " монет";
-            response.reward = task.getReward();
-            response.newBalance = user.getBalance();
-            
-            return ResponseEntity.ok().body(response);
-            
+            return balanceService.execute("task.complete", userId, status -> completeTaskAttempt(request, userId, status));
         } catch (Exception e) {
             response.status = "error";
             response.error = e.getMessage();
             return ResponseEntity.internalServerError().body(response);
         }
     }
+
+    // Tasks themselves are read from Postgres; the completion and the reward are decided by the engine
+    private ResponseEntity<TaskCompleteResponse> completeTaskInEngine(TaskCompleteRequest request, Long userId) {
+        TaskCompleteResponse response = new TaskCompleteResponse();
+
+        Optional<Task> taskOptional = taskRepository.findById(request.taskId);
+        if (taskOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Задание не найдено";
+            return ResponseEntity.badRequest().body(response);
+        }
+        Task task = taskOptional.get();
+
+        EconomyEngine.Result result = economyEngine.completeTask(userId, task.getId(), task.getReward());
+        switch (result.outcome()) {
+            case OK -> {
+                response.status = "ok";
+                response.message = "Задание выполнено! Получено " + task.getReward() + " монет";
+                response.reward = task.getReward();
+                response.newBalance = result.newBalance();
+                return ResponseEntity.ok().body(response);
+            }
+            case USER_NOT_FOUND -> response.error = "Пользователь не найден";
+            case ALREADY_DONE -> response.error = "Задание уже выполнено";
+            default -> throw new IllegalStateException("Unexpected engine outcome " + result.outcome());
+        }
+        response.status = "error";
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    // One attempt under the user's balance lock. The credit comes first: it locks the user's row, so a
+    // concurrent completion of the same task has committed by the time the completion check runs.
+    private ResponseEntity<TaskCompleteResponse> completeTaskAttempt(TaskCompleteRequest request, Long userId, TransactionStatus status) {
+        TaskCompleteResponse response = new TaskCompleteResponse();
+
+        Optional<Task> taskOptional = taskRepository.findById(request.taskId);
+        if (taskOptional.isEmpty()) {
+            response.status = "error";
+            response.error = "Задание не найдено";
+            return ResponseEntity.badRequest().body(response);
+        }
+        Task task = taskOptional.get();
+
+        Optional<Long> newBalance = userRepository.creditReturningBalance(userId, task.getReward());
+        if (newBalance.isEmpty()) {
+            response.status = "error";
+            response.error = "Пользователь не найден";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        User user = userRepository.getReferenceById(userId);
+        if (taskCompletionRepository.existsByTaskAndUser(task, user)) {
+            status.setRollbackOnly();
+            response.status = "error";
+            response.error = "Задание уже выполнено";
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        coinLedger.record(userId, task.getReward(), LedgerEntry.Reason.TASK_REWARD, task.getId());
+        AfterCommit.run(() -> leaderboardIndex.updateBalance(userId, newBalance.get()));
+
+        TaskCompletion completion = new TaskCompletion();
+        completion.setTask(task);
+        completion.setUser(user);
+        completion.setCompletedAt(LocalDateTime.now());
+        taskCompletionRepository.save(completion);
+
+        response.status = "ok";
+        response.message = "Задание выполнено! Получено " + task.getReward() + " монет";
+        response.reward = task.getReward();
+        response.newBalance = newBalance.get();
+
+        return ResponseEntity.ok().body(response);
+    }
 }
\ No newline at end of file
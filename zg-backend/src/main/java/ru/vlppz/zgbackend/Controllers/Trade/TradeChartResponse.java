@@ -0,0 +1,15 @@
+package ru.vlppz.zgbackend.Controllers.Trade;
+
+import ru.vlppz.zgbackend.DB.Trade.CandleResolution;
+import ru.vlppz.zgbackend.DB.Trade.PriceCandle;
+
+import java.util.List;
+
+public class TradeChartResponse {
+    public String status;
+    public String error;
+    public String nftName;
+    public CandleResolution resolution;
+    // Oldest first; buckets without trades are absent
+    public List<PriceCandle> candles;
+}
@@ -0,0 +1,69 @@
+package ru.vlppz.zgbackend.Controllers.Trade;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.vlppz.zgbackend.DB.Trade.CandleResolution;
+import ru.vlppz.zgbackend.DB.Trade.PriceCandleRepository;
+import ru.vlppz.zgbackend.DB.Trade.TradeRepository;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/trade")
+public class TradeController {
+    private static final int MAX_CANDLES = 1000;
+    private static final int MAX_TRADES = 100;
+
+    @Autowired
+    private PriceCandleRepository priceCandleRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    // Price chart of one NFT name; without `from` it covers the last `limit` buckets
+    @GetMapping("/chart")
+    public ResponseEntity<TradeChartResponse> getChart(
+            @RequestParam String name,
+            @RequestParam(defaultValue = "HOUR") CandleResolution resolution,
+            @RequestParam(required = false) LocalDateTime from,
+            @RequestParam(defaultValue = "200") int limit) {
+        TradeChartResponse response = new TradeChartResponse();
+
+        try {
+            int size = Math.max(1, Math.min(limit, MAX_CANDLES));
+            LocalDateTime start = from != null
+                    ? from
+                    : resolution.bucketOf(LocalDateTime.now()).minus(resolution.length().multipliedBy(size - 1));
+
+            response.status = "ok";
+            response.nftName = name;
+            response.resolution = resolution;
+            response.candles = priceCandleRepository.findSeries(name, resolution, start, Limit.of(size));
+            return ResponseEntity.ok().body(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    // Latest sales of one NFT name, newest first
+    @GetMapping("/recent")
+    public ResponseEntity<TradeListResponse> getRecentTrades(
+            @RequestParam String name,
+            @RequestParam(defaultValue = "50") int limit) {
+        TradeListResponse response = new TradeListResponse();
+
+        try {
+            response.status = "ok";
+            response.trades = tradeRepository.findByNftNameOrderByIdDesc(name, Limit.of(Math.max(1, Math.min(limit, MAX_TRADES))));
+            return ResponseEntity.ok().body(response);
+        } catch (Exception e) {
+            response.status = "error";
+            response.error = e.getMessage();
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
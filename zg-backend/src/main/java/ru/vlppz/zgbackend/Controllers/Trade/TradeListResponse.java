@@ -0,0 +1,11 @@
+package ru.vlppz.zgbackend.Controllers.Trade;
+
+import ru.vlppz.zgbackend.DB.Trade.Trade;
+
+import java.util.List;
+
+public class TradeListResponse {
+    public String status;
+    public String error;
+    public List<Trade> trades;
+}
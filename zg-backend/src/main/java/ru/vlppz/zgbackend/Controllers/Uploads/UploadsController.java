@@ -0,0 +1,236 @@
+package ru.vlppz.zgbackend.Controllers.Uploads;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.vlppz.zgbackend.Services.Image.HotImageCache;
+import ru.vlppz.zgbackend.Services.Image.ImageVariants;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Serves /api/uploads off the request threads. Bodies are written by the bounded UploadsExecutor
+// (or by Tomcat's sendfile poller for large files), so a burst of image traffic queues there
+// instead of occupying the threads that handle purchases.
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadsController {
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_.-]*");
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    // Tomcat's sendfile contract: with these request attributes set and no body written,
+    // the connector streams the file region itself, zero-copy
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    @Autowired
+    private HotImageCache hotImageCache;
+
+    @Autowired
+    private UploadsExecutor uploadsExecutor;
+
+    private final Path uploadsDir = Paths.get("uploads").toAbsolutePath().normalize();
+
+    @GetMapping("/{filename:.+}")
+    public ResponseEntity<StreamingResponseBody> serve(
+            @PathVariable String filename,
+            @RequestHeader HttpHeaders requestHeaders,
+            HttpServletRequest request) throws IOException {
+        uploadsExecutor.applyTo(request);
+        if (!SAFE_NAME.matcher(filename).matches() || filename.contains("..") || filename.endsWith(".tmp")) {
+            return ResponseEntity.notFound().build();
+        }
+        String name = filename;
+        CacheControl cacheControl = IMMUTABLE;
+        Path original = uploadsDir.resolve(name);
+        if (!Files.isRegularFile(original)) {
+            // A variant that is not rendered yet (or cannot be) is answered with its original, which
+            // must not be cached for good under the variant's URL
+            Optional<String> fallback = ImageVariants.originalNamesOf(filename).stream()
+                    .filter(candidate -> Files.isRegularFile(uploadsDir.resolve(candidate)))
+                    .findFirst();
+            if (fallback.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            name = fallback.get();
+            cacheControl = CacheControl.noCache();
+            original = uploadsDir.resolve(name);
+        }
+
+        // The name never gets new content, so it is a strong validator on its own
+        String etag = "\"" + name + "\"";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(cacheControl);
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        headers.setContentType(MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM));
+
+        if (matchesIfNoneMatch(requestHeaders.getIfNoneMatch(), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        String encoding = precompressedEncoding(requestHeaders, original);
+        if (encoding != null) {
+            Path encoded = Paths.get(original + (encoding.equals("br") ? ".br" : ".gz"));
+            headers.set(HttpHeaders.CONTENT_ENCODING, encoding);
+            return body(encoded.getFileName().toString(), encoded, 0, Files.size(encoded), Files.size(encoded),
+                    HttpStatus.OK, headers, request);
+        }
+
+        long size = Files.size(original);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        List<HttpRange> ranges = rangesToHonour(requestHeaders, request, etag);
+        if (ranges.size() == 1) {
+            long start;
+            long end;
+            try {
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            return body(name, original, start, end - start + 1, size, HttpStatus.PARTIAL_CONTENT, headers, request);
+        }
+        return body(name, original, 0, size, size, HttpStatus.OK, headers, request);
+    }
+
+    private ResponseEntity<StreamingResponseBody> body(String cacheKey, Path file, long start, long length, long fileSize,
+                                                       HttpStatus status, HttpHeaders headers, HttpServletRequest request) {
+        headers.setContentLength(length);
+
+        byte[] cached = hotImageCache.get(cacheKey);
+        if (cached != null) {
+            return ResponseEntity.status(status).headers(headers)
+                    .body(out -> out.write(cached, (int) start, (int) length));
+        }
+
+        if (length >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+
+        // Whole small files are read once into the LRU; everything else goes disk -> socket via transferTo
+        if (start == 0 && length == fileSize && hotImageCache.accepts(fileSize)) {
+            return ResponseEntity.status(status).headers(headers).body(out -> {
+                byte[] data = Files.readAllBytes(file);
+                hotImageCache.put(cacheKey, data);
+                out.write(data);
+            });
+        }
+        return ResponseEntity.status(status).headers(headers).body(out -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = start;
+                long remaining = length;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        });
+    }
+
+    // Multi-range requests are answered with the whole file, which RFC 9110 allows
+    private static List<HttpRange> rangesToHonour(HttpHeaders requestHeaders, HttpServletRequest request, String etag) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return List.of();
+        }
+        try {
+            List<HttpRange> ranges = requestHeaders.getRange();
+            return ranges.size() == 1 ? ranges : List.of();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean matchesIfNoneMatch(List<String> ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch) {
+            String tag = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Uses a .br or .gz file placed next to the original when the client accepts that encoding,
+    // the one it rates higher if both are there (brotli on a tie)
+    private static String precompressedEncoding(HttpHeaders requestHeaders, Path original) {
+        List<String> acceptEncoding = requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double brQuality = acceptQuality(acceptEncoding, "br");
+        double gzipQuality = acceptQuality(acceptEncoding, "gzip");
+        boolean br = brQuality > 0 && Files.isRegularFile(Paths.get(original + ".br"));
+        boolean gzip = gzipQuality > 0 && Files.isRegularFile(Paths.get(original + ".gz"));
+        if (br && (!gzip || brQuality >= gzipQuality)) {
+            return "br";
+        }
+        return gzip ? "gzip" : null;
+    }
+
+    // The q value Accept-Encoding gives the coding (RFC 9110 12.5.3): 0 when it is refused with q=0
+    // or not listed, in which case "*" speaks for it
+    private static double acceptQuality(List<String> acceptEncoding, String coding) {
+        double wildcard = 0;
+        for (String header : acceptEncoding) {
+            for (String element : header.split(",")) {
+                String[] parts = element.split(";");
+                String token = parts[0].trim();
+                double quality = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2).trim());
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (token.equalsIgnoreCase(coding)) {
+                    return quality;
+                }
+                if (token.equals("*")) {
+                    wildcard = quality;
+                }
+            }
+        }
+        return wildcard;
+    }
+}
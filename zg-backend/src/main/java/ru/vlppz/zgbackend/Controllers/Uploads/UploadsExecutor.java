@@ -0,0 +1,44 @@
+package ru.vlppz.zgbackend.Controllers.Uploads;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+// Writes the streaming bodies of UploadsController. Bounded on purpose: when images saturate it,
+// requests wait in its queue rather than on Tomcat's request threads. Only the uploads endpoints
+// use it; other async work (SSE streams among it) keeps MVC's default executor and timeout. Not an
+// Executor bean itself, so Boot's default applicationTaskExecutor stays in place.
+@Component
+public class UploadsExecutor implements DisposableBean {
+    private static final long TIMEOUT_MS = 60_000;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    public UploadsExecutor(@Value("${uploads.executor.threads:8}") int threads,
+                           @Value("${uploads.executor.queue:500}") int queueCapacity) {
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("uploads-");
+        executor.initialize();
+    }
+
+    // Called from the handler: MVC sets its defaults on the request just before invoking it, and the
+    // returned StreamingResponseBody is started with whatever the request holds afterwards
+    public void applyTo(HttpServletRequest request) {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setTaskExecutor(executor);
+        if (asyncManager.getAsyncWebRequest() != null) {
+            asyncManager.getAsyncWebRequest().setTimeout(TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
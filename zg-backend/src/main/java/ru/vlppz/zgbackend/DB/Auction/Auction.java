@@ -1,16 +1,23 @@
 package ru.vlppz.zgbackend.DB.Auction;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
 import ru.vlppz.zgbackend.DB.User.User;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "auctions")
+@Table(name = "auctions", indexes = {
+        @Index(name = "idx_auctions_active_price_id", columnList = "active, price, id"),
+        @Index(name = "idx_auctions_active_created_id", columnList = "active, created_at, id"),
+        @Index(name = "idx_auctions_active_ends_at", columnList = "active, ends_at")
+})
 @Getter
 @Setter
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -35,4 +42,34 @@ public class Auction {
 
     @Column(nullable = false)
     private Boolean active = true;
+
+    // Timed auctions only (fixed-price listings have no end): bidding closes at endsAt, which late bids
+    // push back, and price holds the start price until the first bid, then the leading bid
+    @Column
+    private LocalDateTime endsAt;
+
+    @Column
+    private Long minIncrement;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "highest_bidder_id")
+    @JsonIgnore
+    private User highestBidder;
+
+    // Bumped by entity writes and by the bid flusher's native update
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long version;
+
+    @JsonProperty("timed")
+    public boolean isTimed() {
+        return endsAt != null;
+    }
+
+    @JsonProperty("highestBidderId")
+    public Long getHighestBidderId() {
+        return highestBidder != null ? highestBidder.getId() : null;
+    }
 }
\ No newline at end of file
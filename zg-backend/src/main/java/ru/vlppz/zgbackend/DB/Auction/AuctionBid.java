@@ -0,0 +1,36 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import ru.vlppz.zgbackend.DB.User.User;
+
+import java.time.LocalDateTime;
+
+// Accepted bids of timed auctions. Rows are written in batches by AuctionBidService, and at
+// settlement they give the fallback order if the leading bidder can no longer pay.
+@Entity
+@Table(name = "auction_bids", indexes = {
+        @Index(name = "idx_auction_bids_auction_amount", columnList = "auction_id, amount")
+})
+@Getter
+@Setter
+public class AuctionBid {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "auction_id", nullable = false)
+    private Auction auction;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bidder_id", nullable = false)
+    private User bidder;
+
+    @Column(nullable = false)
+    private Long amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,21 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AuctionBidRepository extends JpaRepository<AuctionBid, Long> {
+    // Rows of [bidderId, best bid] for one auction, best first
+    @Query("SELECT b.bidder.id, MAX(b.amount) FROM AuctionBid b WHERE b.auction.id = :auctionId " +
+            "GROUP BY b.bidder.id ORDER BY MAX(b.amount) DESC")
+    List<Object[]> findBestBidPerBidder(@Param("auctionId") Long auctionId);
+
+    // Bid history goes together with the NFTs' auction records
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM AuctionBid b WHERE b.auction.id IN (SELECT a.id FROM Auction a WHERE a.nft.id IN :nftIds)")
+    int deleteByNftIds(@Param("nftIds") Collection<Long> nftIds);
+}
@@ -0,0 +1,9 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+import java.time.LocalDateTime;
+
+// Marketplace filter plus keyset cursor. The cursor is the (price, id) or (createdAt, id) of the
+// last row of the previous page, depending on the sort; null cursor fields mean the first page.
+public record AuctionQuery(AuctionSort sort, String name, Long minPrice, Long maxPrice,
+                           Long afterPrice, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+}
@@ -1,15 +1,43 @@
 package ru.vlppz.zgbackend.DB.Auction;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
 import ru.vlppz.zgbackend.DB.User.User;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface AuctionRepository extends JpaRepository<Auction, Long> {
+public interface AuctionRepository extends JpaRepository<Auction, Long>, AuctionSearchRepository {
     List<Auction> findByActiveTrue();
     List<Auction> findBySellerAndActiveTrue(User seller);
     Optional<Auction> findByNftAndActiveTrue(NFT nft);
-    List<Auction> findByNft(NFT nft);
-}
\ No newline at end of file
+
+    // Fixed-price listings a buy order can take, cheapest first
+    @Query("SELECT a FROM Auction a WHERE a.active = true AND a.endsAt IS NULL AND a.nft.name = :name " +
+            "AND a.price <= :maxPrice AND a.seller.id <> :buyerId ORDER BY a.price ASC, a.id ASC")
+    List<Auction> findMatchingListings(@Param("name") String name, @Param("maxPrice") Long maxPrice,
+                                       @Param("buyerId") Long buyerId, Limit limit);
+
+    // Rows of [auctionId, nftId] of the listings still open on the given NFTs
+    @Query("SELECT a.id, a.nft.id FROM Auction a WHERE a.active = true AND a.nft.id IN :nftIds")
+    List<Object[]> findActiveIdsByNftIds(@Param("nftIds") Collection<Long> nftIds);
+
+    // Every auction record of the NFTs, open or closed, in one statement; bids must be gone first
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Auction a WHERE a.nft.id IN :nftIds")
+    int deleteByNftIds(@Param("nftIds") Collection<Long> nftIds);
+
+    // Lets a buyer lock the seller's balance along with their own before the auction is loaded
+    @Query("SELECT a.seller.id FROM Auction a WHERE a.id = :id")
+    Optional<Long> findSellerIdById(@Param("id") Long id);
+
+    // Timed auctions whose end has passed, oldest first, over idx_auctions_active_ends_at
+    @Query("SELECT a.id FROM Auction a WHERE a.active = true AND a.endsAt <= :now ORDER BY a.endsAt ASC")
+    List<Long> findEndedIds(@Param("now") LocalDateTime now, Limit limit);
+}
@@ -0,0 +1,7 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+import java.util.List;
+
+public interface AuctionSearchRepository {
+    List<AuctionSummary> search(AuctionQuery query);
+}
@@ -0,0 +1,77 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Builds the marketplace JPQL from whichever filters are set. Every sort walks one of the
+// (active, price, id) / (active, created_at, id) indexes, and the cursor predicate lets the
+// database seek straight to the next page instead of skipping rows.
+class AuctionSearchRepositoryImpl implements AuctionSearchRepository {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AuctionSummary> search(AuctionQuery query) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new ru.vlppz.zgbackend.DB.Auction.AuctionSummary(a.id, a.price, a.createdAt, " +
+                "a.endsAt, a.minIncrement, hb.id, " +
+                "n.id, n.name, n.description, n.price, n.imageURL, n.gradientColor1, n.gradientColor2, " +
+                "s.id, s.username) " +
+                "FROM Auction a JOIN a.nft n JOIN a.seller s LEFT JOIN a.highestBidder hb WHERE a.active = true");
+        Map<String, Object> params = new HashMap<>();
+
+        if (query.name() != null && !query.name().isBlank()) {
+            jpql.append(" AND LOWER(n.name) LIKE :name ESCAPE '\\'");
+            params.put("name", "%" + escapeLike(query.name().trim().toLowerCase()) + "%");
+        }
+        if (query.minPrice() != null) {
+            jpql.append(" AND a.price >= :minPrice");
+            params.put("minPrice", query.minPrice());
+        }
+        if (query.maxPrice() != null) {
+            jpql.append(" AND a.price <= :maxPrice");
+            params.put("maxPrice", query.maxPrice());
+        }
+
+        switch (query.sort()) {
+            case PRICE_ASC -> {
+                if (query.afterPrice() != null && query.afterId() != null) {
+                    jpql.append(" AND (a.price > :afterPrice OR (a.price = :afterPrice AND a.id > :afterId))");
+                    params.put("afterPrice", query.afterPrice());
+                    params.put("afterId", query.afterId());
+                }
+                jpql.append(" ORDER BY a.price ASC, a.id ASC");
+            }
+            case PRICE_DESC -> {
+                if (query.afterPrice() != null && query.afterId() != null) {
+                    jpql.append(" AND (a.price < :afterPrice OR (a.price = :afterPrice AND a.id < :afterId))");
+                    params.put("afterPrice", query.afterPrice());
+                    params.put("afterId", query.afterId());
+                }
+                jpql.append(" ORDER BY a.price DESC, a.id DESC");
+            }
+            case NEWEST -> {
+                if (query.afterCreatedAt() != null && query.afterId() != null) {
+                    jpql.append(" AND (a.createdAt < :afterCreatedAt OR (a.createdAt = :afterCreatedAt AND a.id < :afterId))");
+                    params.put("afterCreatedAt", query.afterCreatedAt());
+                    params.put("afterId", query.afterId());
+                }
+                jpql.append(" ORDER BY a.createdAt DESC, a.id DESC");
+            }
+        }
+
+        TypedQuery<AuctionSummary> typed = entityManager.createQuery(jpql.toString(), AuctionSummary.class);
+        params.forEach(typed::setParameter);
+        typed.setMaxResults(query.limit());
+        return typed.getResultList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,7 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+public enum AuctionSort {
+    PRICE_ASC,
+    PRICE_DESC,
+    NEWEST
+}
@@ -0,0 +1,24 @@
+package ru.vlppz.zgbackend.DB.Auction;
+
+import ru.vlppz.zgbackend.DB.NFT.NFTSummary;
+
+import java.time.LocalDateTime;
+
+// Marketplace row: the listing plus just enough of the NFT and seller to render a card.
+// Same shape as a serialized Auction for the fields the client reads, minus the entity graph.
+public record AuctionSummary(Long id, Long price, LocalDateTime createdAt,
+                             LocalDateTime endsAt, Long minIncrement, Long highestBidderId,
+                             NFTSummary nft, Seller seller) {
+    public record Seller(Long id, String username) {}
+
+    // JPQL constructor expression target
+    public AuctionSummary(Long id, Long price, LocalDateTime createdAt,
+                          LocalDateTime endsAt, Long minIncrement, Long highestBidderId,
+                          Long nftId, String nftName, String nftDescription, Long nftPrice, String nftImageURL,
+                          String nftGradientColor1, String nftGradientColor2,
+                          Long sellerId, String sellerUsername) {
+        this(id, price, createdAt, endsAt, minIncrement, highestBidderId,
+                new NFTSummary(nftId, nftName, nftDescription, nftPrice, nftImageURL, nftGradientColor1, nftGradientColor2),
+                new Seller(sellerId, sellerUsername));
+    }
+}
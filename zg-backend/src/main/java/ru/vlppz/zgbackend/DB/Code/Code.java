@@ -1,9 +1,11 @@
 package ru.vlppz.zgbackend.DB.Code;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -34,4 +36,10 @@ public class Code {
 
     @Column(nullable = false)
     private LocalDateTime createdAt;
+    // Concurrent redemptions of one code conflict here instead of losing a use
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long version;
 }
\ No newline at end of file
@@ -9,7 +9,10 @@ import ru.vlppz.zgbackend.DB.User.User;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "code_usages")
+// The unique pair is what finally rejects a second redemption by the same user (see CodeRedemptionService)
+@Table(name = "code_usages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_code_usages_code_user", columnNames = {"code_id", "user_id"})
+})
 @Getter
 @Setter
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -5,5 +5,6 @@ import ru.vlppz.zgbackend.DB.User.User;
 
 public interface CodeUsageRepository extends JpaRepository<CodeUsage, Long> {
     boolean existsByCodeAndUser(Code code, User user);
+    boolean existsByCodeIdAndUserId(Long codeId, Long userId);
     Long countByUser(User user);
 }
\ No newline at end of file
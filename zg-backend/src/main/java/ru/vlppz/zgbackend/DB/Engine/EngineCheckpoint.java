@@ -0,0 +1,25 @@
+package ru.vlppz.zgbackend.DB.Engine;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Journal position of the economy engine that Postgres has caught up with: every effect up to and
+// including lastSequence is in the tables. Written in the same transaction as the effects, so on
+// restart only the journal past it is replayed. A single row with id 1.
+@Entity
+@Table(name = "engine_checkpoints")
+@Getter
+@Setter
+public class EngineCheckpoint {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long lastSequence;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,6 @@
+package ru.vlppz.zgbackend.DB.Engine;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface EngineCheckpointRepository extends JpaRepository<EngineCheckpoint, Long> {
+}
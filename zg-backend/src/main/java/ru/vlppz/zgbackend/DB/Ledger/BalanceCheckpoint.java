@@ -0,0 +1,28 @@
+package ru.vlppz.zgbackend.DB.Ledger;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// A user's balance as folded from the ledger up to and including lastEntryId. Only entries after it
+// need replaying; users without a checkpoint fold from zero. For users that predate the ledger the
+// first checkpoint is an opening balance with lastEntryId 0.
+@Entity
+@Table(name = "balance_checkpoints")
+@Getter
+@Setter
+public class BalanceCheckpoint {
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long balance;
+
+    @Column(nullable = false)
+    private Long lastEntryId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package ru.vlppz.zgbackend.DB.Ledger;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, Long> {
+}
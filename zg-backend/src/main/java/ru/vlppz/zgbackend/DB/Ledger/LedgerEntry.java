@@ -0,0 +1,54 @@
+package ru.vlppz.zgbackend.DB.Ledger;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+// One coin movement on a user's balance, positive or negative. Rows are only ever inserted (in
+// batches by CoinLedger, in the transaction that moved the coins) and never updated or deleted.
+@Entity
+@Immutable
+@Table(name = "coin_ledger", indexes = {
+        @Index(name = "idx_coin_ledger_user_id", columnList = "user_id, id")
+})
+@Getter
+@Setter
+public class LedgerEntry {
+    public enum Reason {
+        TASK_REWARD,
+        CODE_REDEEM,
+        REFERRAL_BONUS,
+        SHOP_PURCHASE,
+        NFT_SELL,
+        TRANSFER_FEE,
+        AUCTION_PURCHASE,
+        AUCTION_SALE,
+        ORDER_ESCROW,
+        ORDER_REFUND,
+        ADMIN_ADJUST
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 24)
+    private Reason reason;
+
+    // Task, code, NFT, auction or buy order the movement belongs to, depending on the reason
+    @Column
+    private Long refId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,11 @@
+package ru.vlppz.zgbackend.DB.Ledger;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    // A user's history newest first, paged by id over idx_coin_ledger_user_id
+    List<LedgerEntry> findByUserIdAndIdLessThanOrderByIdDesc(Long userId, Long beforeId, Limit limit);
+}
@@ -0,0 +1,25 @@
+package ru.vlppz.zgbackend.DB.Ledger;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// When the ledger went live: users up to lastUserId existed before it and get an opening checkpoint,
+// everyone created later starts from zero. Written once, by the first start with the ledger. A single
+// row with id 1.
+@Entity
+@Table(name = "ledger_openings")
+@Getter
+@Setter
+public class LedgerOpening {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long lastUserId;
+
+    @Column(nullable = false)
+    private LocalDateTime openedAt;
+}
@@ -7,14 +7,19 @@ import jakarta.persistence.*;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.Services.Image.ImageVariants;
 
 import java.awt.*;
+import java.util.Map;
 
 @Getter
 @Setter
 @Entity
-@Table(name = "nfts")
+@Table(name = "nfts", indexes = {
+        @Index(name = "idx_nfts_owner_id", columnList = "owner_id, id")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class NFT {
     @Id
@@ -39,11 +44,26 @@ public class NFT {
     @Column(nullable = false)
     private String imageURL;
 
+    // Price of the last auction sale; the NFT is valued at this instead of the shop price once resold
+    @Column
+    private Long lastSalePrice;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     @JsonIgnore
     private User owner;
 
+    // True while the NFT has an active auction; kept in step by AuctionController
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private Boolean listed = false;
+
+    // Set for copies bought from an edition; legacy one-off NFTs have none
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "edition_id")
+    @JsonIgnore
+    private NFTEdition edition;
+
     @JsonProperty("isOwned")
     public boolean isOwned() {
         return owner != null;
@@ -53,4 +73,25 @@ public class NFT {
     public Long getOwnerId() {
         return owner != null ? owner.getId() : null;
     }
+
+    @JsonProperty("editionId")
+    public Long getEditionId() {
+        return edition != null ? edition.getId() : null;
+    }
+
+    @JsonProperty("imageVariants")
+    public Map<String, String> getImageVariants() {
+        return ImageVariants.urlsFor(imageURL);
+    }
+
+    // Bumped by entity writes and by the native ownership/listing updates in NFTRepository
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long version;
+
+    public long valuation() {
+        return lastSalePrice != null ? lastSalePrice : price;
+    }
 }
@@ -0,0 +1,76 @@
+package ru.vlppz.zgbackend.DB.NFT;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.Services.Image.ImageVariants;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// A mass-minted NFT: the shared look and price plus a stock counter.
+// Individual NFT rows are only created when a copy is bought.
+@Entity
+@Table(name = "nft_editions")
+@Getter
+@Setter
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+public class NFTEdition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private String description;
+
+    @Column(nullable = false)
+    private Long price;
+
+    @Column(nullable = false)
+    private String gradientColor1;
+
+    @Column(nullable = false)
+    private String gradientColor2;
+
+    @Column(nullable = false)
+    private String imageURL;
+
+    @Column(nullable = false)
+    private Long supply;
+
+    @Column(nullable = false)
+    private Long remaining;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // High-demand release: purchases go through DropQueueService instead of hitting the table directly
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private Boolean limitedDrop = false;
+
+    @JsonProperty("imageVariants")
+    public Map<String, String> getImageVariants() {
+        return ImageVariants.urlsFor(imageURL);
+    }
+
+    public NFT mintFor(User owner) {
+        NFT nft = new NFT();
+        nft.setName(name);
+        nft.setDescription(description);
+        nft.setPrice(price);
+        nft.setGradientColor1(gradientColor1);
+        nft.setGradientColor2(gradientColor2);
+        nft.setImageURL(imageURL);
+        nft.setEdition(this);
+        nft.setOwner(owner);
+        return nft;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.vlppz.zgbackend.DB.NFT;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface NFTEditionRepository extends JpaRepository<NFTEdition, Long> {
+    List<NFTEdition> findByRemainingGreaterThanOrderByIdAsc(Long remaining);
+
+    @Query("SELECT COUNT(e) > 0 FROM NFTEdition e WHERE e.imageURL = :imageURL")
+    boolean existsByImageURL(@Param("imageURL") String imageURL);
+
+    // Takes one copy off the stock; 0 means the edition is sold out
+    @Modifying
+    @Query(value = "UPDATE nft_editions SET remaining = remaining - 1 WHERE id = :id AND remaining > 0", nativeQuery = true)
+    int takeOne(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "UPDATE nft_editions SET remaining = remaining - :count WHERE id = :id AND remaining >= :count", nativeQuery = true)
+    int takeMany(@Param("id") Long id, @Param("count") Long count);
+
+    // Pulls the edition from the shop; copies that were already bought stay with their owners
+    @Transactional
+    @Modifying
+    @Query("UPDATE NFTEdition e SET e.remaining = 0 WHERE e.id = :id")
+    int retire(@Param("id") Long id);
+
+    @Query("SELECT e.id FROM NFTEdition e WHERE e.name = :name")
+    List<Long> findIdsByName(@Param("name") String name);
+
+    @Modifying
+    @Query("UPDATE NFTEdition e SET e.remaining = 0 WHERE e.name = :name")
+    int retireByName(@Param("name") String name);
+}
@@ -0,0 +1,20 @@
+package ru.vlppz.zgbackend.DB.NFT;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ru.vlppz.zgbackend.Services.Image.ImageVariants;
+
+import java.util.Map;
+
+public record NFTPreview(Long id, String name, String imageURL, String gradientColor1, String gradientColor2) {
+    public static NFTPreview of(NFT nft) {
+        if (nft == null) {
+            return null;
+        }
+        return new NFTPreview(nft.getId(), nft.getName(), nft.getImageURL(), nft.getGradientColor1(), nft.getGradientColor2());
+    }
+
+    @JsonProperty("imageVariants")
+    public Map<String, String> imageVariants() {
+        return ImageVariants.urlsFor(imageURL);
+    }
+}
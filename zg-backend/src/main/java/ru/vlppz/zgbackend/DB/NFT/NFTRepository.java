@@ -1,16 +1,69 @@
 package ru.vlppz.zgbackend.DB.NFT;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.vlppz.zgbackend.DB.User.User;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface NFTRepository extends JpaRepository<NFT, Long> {
     List<NFT> findByOwnerIsNull();
     List<NFT> findByOwner(User owner);
-    
-    @Query("SELECT n FROM NFT n WHERE n.owner = :owner AND n.id NOT IN (SELECT a.nft.id FROM Auction a WHERE a.active = true)")
-    List<NFT> findByOwnerAndNotInActiveAuction(@Param("owner") User owner);
+
+    @Query("SELECT COUNT(n) > 0 FROM NFT n WHERE n.imageURL = :imageURL")
+    boolean existsByImageURL(@Param("imageURL") String imageURL);
+
+    // Inventory page: owned and not on auction, walked by id over idx_nfts_owner_id
+    @Query("SELECT n FROM NFT n WHERE n.owner.id = :ownerId AND n.listed = false AND n.id > :afterId ORDER BY n.id ASC")
+    List<NFT> findUnlistedByOwnerId(@Param("ownerId") Long ownerId, @Param("afterId") Long afterId, Limit limit);
+
+    // Startup backfill of the listed flag from the auctions table
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE nfts n SET listed = EXISTS (SELECT 1 FROM auctions a WHERE a.nft_id = n.id AND a.active), version = n.version + 1 " +
+            "WHERE n.listed <> EXISTS (SELECT 1 FROM auctions a WHERE a.nft_id = n.id AND a.active)", nativeQuery = true)
+    int syncListedWithAuctions();
+
+    @Query("SELECT new ru.vlppz.zgbackend.DB.NFT.NFTSummary(n.id, n.name, n.description, n.price, n.imageURL, " +
+            "n.gradientColor1, n.gradientColor2) " +
+            "FROM NFT n WHERE n.owner.id = :ownerId AND n.id > :afterId ORDER BY n.id ASC")
+    List<NFTSummary> findSummariesByOwnerId(@Param("ownerId") Long ownerId, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT COUNT(n) FROM NFT n WHERE n.owner.id = :ownerId")
+    long countByOwnerId(@Param("ownerId") Long ownerId);
+
+    // Compare-and-set on ownership: of any number of concurrent buyers exactly one gets 1 back
+    @Modifying
+    @Query(value = "UPDATE nfts SET owner_id = :userId, version = version + 1 WHERE id = :nftId AND owner_id IS NULL", nativeQuery = true)
+    int claimIfUnowned(@Param("nftId") Long nftId, @Param("userId") Long userId);
+
+    // Batches for the admin bulk operations, walked by id; deleted rows drop out, so afterId can stay 0
+    @Query("SELECT n.id FROM NFT n WHERE n.name = :name AND n.id > :afterId ORDER BY n.id ASC")
+    List<Long> findIdsByName(@Param("name") String name, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT n.id FROM NFT n WHERE n.name = :name AND n.owner IS NULL AND n.id > :afterId ORDER BY n.id ASC")
+    List<Long> findUnownedIdsByName(@Param("name") String name, @Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT DISTINCT n.imageURL FROM NFT n WHERE n.name = :name")
+    List<String> findImageURLsByName(@Param("name") String name);
+
+    // Rows of [ownerId, sum of valuations] of the owned NFTs among the given ids
+    @Query("SELECT n.owner.id, SUM(COALESCE(n.lastSalePrice, n.price)) FROM NFT n " +
+            "WHERE n.id IN :nftIds AND n.owner IS NOT NULL GROUP BY n.owner.id")
+    List<Object[]> sumValuationByOwnerForIds(@Param("nftIds") Collection<Long> nftIds);
+
+    // Auctions, bids and pins referencing the NFTs must be gone first
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM NFT n WHERE n.id IN :nftIds")
+    int deleteByIds(@Param("nftIds") Collection<Long> nftIds);
+
+    // Rows of [ownerId, sum of valuations] for owners in the given id range
+    @Query("SELECT n.owner.id, SUM(COALESCE(n.lastSalePrice, n.price)) FROM NFT n " +
+            "WHERE n.owner.id BETWEEN :fromUserId AND :toUserId GROUP BY n.owner.id")
+    List<Object[]> sumValuationByOwnerBetween(@Param("fromUserId") Long fromUserId, @Param("toUserId") Long toUserId);
 }
@@ -0,0 +1,14 @@
+package ru.vlppz.zgbackend.DB.NFT;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ru.vlppz.zgbackend.Services.Image.ImageVariants;
+
+import java.util.Map;
+
+public record NFTSummary(Long id, String name, String description, Long price, String imageURL,
+                         String gradientColor1, String gradientColor2) {
+    @JsonProperty("imageVariants")
+    public Map<String, String> imageVariants() {
+        return ImageVariants.urlsFor(imageURL);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.vlppz.zgbackend.DB.Order;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import ru.vlppz.zgbackend.DB.User.User;
+
+import java.time.LocalDateTime;
+
+// Standing "I'll pay up to maxPrice for any NFT named nftName". maxPrice is taken from the buyer's
+// balance when the order is placed and held until it fills (the unused part is refunded) or is cancelled.
+@Entity
+@Table(name = "buy_orders", indexes = {
+        @Index(name = "idx_buy_orders_buyer_status", columnList = "buyer_id, status")
+})
+@Getter
+@Setter
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+public class BuyOrder {
+    public enum Status {
+        OPEN,
+        FILLED,
+        CANCELLED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "buyer_id", nullable = false)
+    @JsonIgnore
+    private User buyer;
+
+    @Column(nullable = false)
+    private String nftName;
+
+    @Column(nullable = false)
+    private Long maxPrice;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column
+    private Long filledPrice;
+
+    @Column
+    private Long filledNftId;
+
+    @Column
+    private LocalDateTime closedAt;
+
+    @JsonProperty("buyerId")
+    public Long getBuyerId() {
+        return buyer != null ? buyer.getId() : null;
+    }
+}
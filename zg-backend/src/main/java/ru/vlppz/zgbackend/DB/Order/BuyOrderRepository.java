@@ -0,0 +1,26 @@
+package ru.vlppz.zgbackend.DB.Order;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface BuyOrderRepository extends JpaRepository<BuyOrder, Long> {
+    List<BuyOrder> findByStatusOrderByIdAsc(BuyOrder.Status status);
+
+    @Query("SELECT o FROM BuyOrder o WHERE o.buyer.id = :buyerId ORDER BY o.id DESC")
+    List<BuyOrder> findByBuyerId(@Param("buyerId") Long buyerId);
+
+    // Guarded status changes: a fill and a cancel racing for the same order cannot both succeed
+    @Modifying
+    @Query(value = "UPDATE buy_orders SET status = 'FILLED', filled_price = :price, filled_nft_id = :nftId, closed_at = now() " +
+            "WHERE id = :id AND status = 'OPEN'", nativeQuery = true)
+    int markFilled(@Param("id") Long id, @Param("price") Long price, @Param("nftId") Long nftId);
+
+    @Modifying
+    @Query(value = "UPDATE buy_orders SET status = 'CANCELLED', closed_at = now() " +
+            "WHERE id = :id AND buyer_id = :buyerId AND status = 'OPEN'", nativeQuery = true)
+    int markCancelled(@Param("id") Long id, @Param("buyerId") Long buyerId);
+}
@@ -0,0 +1,34 @@
+package ru.vlppz.zgbackend.DB.Season;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "seasons")
+@Getter
+@Setter
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+public class Season {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column
+    private LocalDateTime endedAt;
+
+    @Column(nullable = false)
+    private Boolean active = true;
+
+    @Column
+    private Integer entryCount;
+}
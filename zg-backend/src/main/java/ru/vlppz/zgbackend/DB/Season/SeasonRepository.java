@@ -0,0 +1,11 @@
+package ru.vlppz.zgbackend.DB.Season;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SeasonRepository extends JpaRepository<Season, Long> {
+    Optional<Season> findFirstByActiveTrueOrderByStartedAtDesc();
+    List<Season> findAllByOrderByStartedAtDesc();
+}
@@ -0,0 +1,27 @@
+package ru.vlppz.zgbackend.DB.Season;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Frozen final standings of a season, encoded by SeasonStandings. Written once, never updated.
+@Entity
+@Table(name = "season_snapshots")
+@Getter
+@Setter
+public class SeasonSnapshot {
+    @Id
+    @Column(name = "season_id")
+    private Long seasonId;
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+
+    @Column(nullable = false)
+    private String checksum;
+
+    @Column(nullable = false)
+    private LocalDateTime takenAt;
+}
@@ -0,0 +1,6 @@
+package ru.vlppz.zgbackend.DB.Season;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SeasonSnapshotRepository extends JpaRepository<SeasonSnapshot, Long> {
+}
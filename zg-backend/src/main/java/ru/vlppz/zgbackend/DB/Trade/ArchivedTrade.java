@@ -0,0 +1,41 @@
+package ru.vlppz.zgbackend.DB.Trade;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Same columns as Trade; rows are moved here by TradeArchiver once their buckets are rolled up.
+// Keeps the original trade id, so it is not generated.
+@Entity
+@Table(name = "trades_archive", indexes = {
+        @Index(name = "idx_trades_archive_executed_at", columnList = "executed_at")
+})
+@Getter
+@Setter
+public class ArchivedTrade {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long auctionId;
+
+    @Column(nullable = false)
+    private Long nftId;
+
+    @Column(nullable = false)
+    private String nftName;
+
+    @Column(nullable = false)
+    private Long sellerId;
+
+    @Column(nullable = false)
+    private Long buyerId;
+
+    @Column(nullable = false)
+    private Long price;
+
+    @Column(nullable = false)
+    private LocalDateTime executedAt;
+}
@@ -0,0 +1,63 @@
+package ru.vlppz.zgbackend.DB.Trade;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// OHLC and volume of all trades of one NFT name inside one bucket. Maintained by TradeRecorder with an
+// upsert per trade and resolution, so charts never touch the raw trades. open/close follow the lowest
+// and highest trade id seen, which keeps them right when fills commit out of order.
+@Entity
+@Table(name = "price_candles", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_price_candles_bucket", columnNames = {"nft_name", "resolution", "bucket_start"})
+}, indexes = {
+        @Index(name = "idx_price_candles_resolution_bucket", columnList = "resolution, bucket_start")
+})
+@Getter
+@Setter
+public class PriceCandle {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @JsonIgnore
+    private Long id;
+
+    @Column(nullable = false)
+    private String nftName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private CandleResolution resolution;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private Long open;
+
+    @Column(nullable = false)
+    private Long high;
+
+    @Column(nullable = false)
+    private Long low;
+
+    @Column(nullable = false)
+    private Long close;
+
+    // Number of trades and the sum of their prices
+    @Column(nullable = false)
+    private Long volume;
+
+    @Column(nullable = false)
+    private Long turnover;
+
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long openTradeId;
+
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long closeTradeId;
+}
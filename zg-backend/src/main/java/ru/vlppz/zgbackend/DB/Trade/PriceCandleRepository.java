@@ -0,0 +1,19 @@
+package ru.vlppz.zgbackend.DB.Trade;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface PriceCandleRepository extends JpaRepository<PriceCandle, Long> {
+    // Served straight from the unique (nft_name, resolution, bucket_start) index
+    @Query("SELECT c FROM PriceCandle c WHERE c.nftName = :nftName AND c.resolution = :resolution " +
+           "AND c.bucketStart >= :from ORDER BY c.bucketStart ASC")
+    List<PriceCandle> findSeries(@Param("nftName") String nftName,
+                                 @Param("resolution") CandleResolution resolution,
+                                 @Param("from") LocalDateTime from,
+                                 Limit limit);
+}
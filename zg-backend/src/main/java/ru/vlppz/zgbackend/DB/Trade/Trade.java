@@ -0,0 +1,45 @@
+package ru.vlppz.zgbackend.DB.Trade;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// One executed sale of a listing, written in the settling transaction and never updated afterwards.
+// Participants and the NFT are kept as plain ids and the name is copied, so the history survives the
+// NFT being sold back to the shop or deleted. Rows older than the retention move to trades_archive.
+@Entity
+@Table(name = "trades", indexes = {
+        @Index(name = "idx_trades_nft_name_id", columnList = "nft_name, id"),
+        @Index(name = "idx_trades_executed_at", columnList = "executed_at"),
+        @Index(name = "uk_trades_auction_id", columnList = "auction_id", unique = true)
+})
+@Getter
+@Setter
+public class Trade {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long auctionId;
+
+    @Column(nullable = false)
+    private Long nftId;
+
+    @Column(nullable = false)
+    private String nftName;
+
+    @Column(nullable = false)
+    private Long sellerId;
+
+    @Column(nullable = false)
+    private Long buyerId;
+
+    @Column(nullable = false)
+    private Long price;
+
+    @Column(nullable = false)
+    private LocalDateTime executedAt;
+}
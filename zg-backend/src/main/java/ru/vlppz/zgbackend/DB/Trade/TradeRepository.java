@@ -0,0 +1,10 @@
+package ru.vlppz.zgbackend.DB.Trade;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface TradeRepository extends JpaRepository<Trade, Long> {
+    List<Trade> findByNftNameOrderByIdDesc(String nftName, Limit limit);
+}
@@ -1,13 +1,19 @@
 package ru.vlppz.zgbackend.DB.User;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardUserListener;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_balance_id", columnList = "balance DESC, id ASC")
+})
+@EntityListeners(LeaderboardUserListener.class)
 @Getter
 @Setter
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -41,6 +47,14 @@ public class User {
 
     @Column
     private Integer referralCount = 0;
+
+    // Optimistic lock: a stale read-modify-write of balance fails (and is retried by OptimisticRetryExecutor)
+    // instead of overwriting a concurrent one. The native balance updates in UserRepository bump it as well.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @JsonIgnore
+    private Long version;
 }
 
 
@@ -0,0 +1,27 @@
+package ru.vlppz.zgbackend.DB.User;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Value of the NFTs a user holds, maintained incrementally next to users.balance.
+// Kept out of the users row so entity saves of User can never overwrite it with a stale value.
+@Entity
+@Table(name = "user_net_worth")
+@Getter
+@Setter
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+public class UserNetWorth {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long nftValue = 0L;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,27 @@
+package ru.vlppz.zgbackend.DB.User;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UserNetWorthRepository extends JpaRepository<UserNetWorth, Long> {
+    List<UserNetWorth> findByUserIdBetween(Long fromUserId, Long toUserId);
+
+    @Transactional
+    @Query(value = "INSERT INTO user_net_worth (user_id, nft_value, updated_at) VALUES (:userId, :delta, now()) " +
+            "ON CONFLICT (user_id) DO UPDATE SET nft_value = user_net_worth.nft_value + EXCLUDED.nft_value, updated_at = now() " +
+            "RETURNING nft_value", nativeQuery = true)
+    Long addNftValue(@Param("userId") Long userId, @Param("delta") Long delta);
+
+    // Compare-and-set: writes only while the row still holds the value the caller saw (a missing row
+    // counts as 0), so a delta committed in between is kept. Null when nothing was written.
+    @Transactional
+    @Query(value = "INSERT INTO user_net_worth (user_id, nft_value, updated_at) VALUES (:userId, :value, now()) " +
+            "ON CONFLICT (user_id) DO UPDATE SET nft_value = EXCLUDED.nft_value, updated_at = now() " +
+            "WHERE user_net_worth.nft_value = :stored " +
+            "RETURNING nft_value", nativeQuery = true)
+    Long repairNftValue(@Param("userId") Long userId, @Param("stored") Long stored, @Param("value") Long value);
+}
@@ -1,15 +1,79 @@
 package ru.vlppz.zgbackend.DB.User;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByTelegramId(Long telegramId);
     Optional<User> findByUsername(String username);
-    List<User> findAllByOrderByBalanceDesc();
     List<User> findByReferredBy(User referredBy);
-}
 
+    @Query("SELECT COALESCE(MAX(u.id), 0) FROM User u")
+    Long findMaxId();
+
+    @Query("SELECT u.id FROM User u ORDER BY u.id")
+    List<Long> findAllIds();
+
+    long countByIdBetween(Long fromId, Long toId);
+
+    @Query("SELECT u.balance FROM User u WHERE u.id = :id")
+    Optional<Long> findBalanceById(@Param("id") Long id);
+
+    // Guarded debit: the balance check and the write are one statement, so it can never go negative
+    @Modifying
+    @Query(value = "UPDATE users SET balance = balance - :amount, version = version + 1 WHERE id = :userId AND balance >= :amount", nativeQuery = true)
+    int debitIfSufficient(@Param("userId") Long userId, @Param("amount") Long amount);
+
+    @Modifying
+    @Query(value = "UPDATE users SET balance = balance + :amount, version = version + 1 WHERE id = :userId", nativeQuery = true)
+    int credit(@Param("userId") Long userId, @Param("amount") Long amount);
+
+    // The in-place updates below hand back the new balance through RETURNING, so a reward is one statement
+    // with no User loaded; empty when the user does not exist (or, for the debit, cannot pay). A statement
+    // that returns rows runs as a query rather than @Modifying, hence @Transactional to keep it writable
+    // when called outside a transaction.
+    @Transactional
+    @Query(value = "UPDATE users SET balance = balance + :amount, version = version + 1 WHERE id = :userId RETURNING balance", nativeQuery = true)
+    Optional<Long> creditReturningBalance(@Param("userId") Long userId, @Param("amount") Long amount);
 
+    @Transactional
+    @Query(value = "UPDATE users SET balance = balance - :amount, version = version + 1 WHERE id = :userId AND balance >= :amount RETURNING balance", nativeQuery = true)
+    Optional<Long> debitIfSufficientReturningBalance(@Param("userId") Long userId, @Param("amount") Long amount);
+
+    @Transactional
+    @Query(value = "UPDATE users SET balance = balance + :bonus, referral_count = referral_count + 1, version = version + 1 " +
+            "WHERE id = :userId RETURNING balance", nativeQuery = true)
+    Optional<Long> creditReferralBonus(@Param("userId") Long userId, @Param("bonus") Long bonus);
+
+    // Clears the showcase of whoever pinned one of the NFTs, before those NFTs are deleted. Returns those
+    // users, whose leaderboard entries LeaderboardUserListener does not see change.
+    @Transactional
+    @Query(value = "UPDATE users SET pinned_nft_id = NULL, version = version + 1 WHERE pinned_nft_id IN (:nftIds) RETURNING id", nativeQuery = true)
+    List<Long> unpinNfts(@Param("nftIds") Collection<Long> nftIds);
+
+    @Query("SELECT new ru.vlppz.zgbackend.DB.User.UserSummary(u.id, u.username, u.avatarURL, u.balance, " +
+            "p.id, p.name, p.imageURL, p.gradientColor1, p.gradientColor2) " +
+            "FROM User u LEFT JOIN u.pinnedNFT p")
+    List<UserSummary> findAllSummaries();
+
+    @Query("SELECT new ru.vlppz.zgbackend.DB.User.UserSummary(u.id, u.username, u.avatarURL, u.balance, " +
+            "p.id, p.name, p.imageURL, p.gradientColor1, p.gradientColor2) " +
+            "FROM User u LEFT JOIN u.pinnedNFT p WHERE u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+    // Keyset pagination over (balance desc, id asc): page cost does not grow with the page number
+    @Query("SELECT new ru.vlppz.zgbackend.DB.User.UserSummary(u.id, u.username, u.avatarURL, u.balance, " +
+            "p.id, p.name, p.imageURL, p.gradientColor1, p.gradientColor2) " +
+            "FROM User u LEFT JOIN u.pinnedNFT p " +
+            "WHERE u.balance < :balance OR (u.balance = :balance AND u.id > :id) " +
+            "ORDER BY u.balance DESC, u.id ASC")
+    List<UserSummary> findSummariesAfter(@Param("balance") Long balance, @Param("id") Long id, Limit limit);
+}
@@ -0,0 +1,31 @@
+package ru.vlppz.zgbackend.DB.User;
+
+import ru.vlppz.zgbackend.DB.NFT.NFTPreview;
+
+public record UserSummary(Long id, String username, String avatarURL, Long balance, Long netWorth, NFTPreview pinnedNFT) {
+
+    // Used by JPQL constructor expressions, which cannot build the nested preview themselves
+    public UserSummary(Long id, String username, String avatarURL, Long balance,
+                       Long pinnedId, String pinnedName, String pinnedImageURL,
+                       String pinnedGradientColor1, String pinnedGradientColor2) {
+        this(id, username, avatarURL, balance, null, pinnedId == null ? null
+                : new NFTPreview(pinnedId, pinnedName, pinnedImageURL, pinnedGradientColor1, pinnedGradientColor2));
+    }
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), user.getAvatarURL(), user.getBalance(), null,
+                NFTPreview.of(user.getPinnedNFT()));
+    }
+
+    public UserSummary withBalance(long balance) {
+        return new UserSummary(id, username, avatarURL, balance, netWorth, pinnedNFT);
+    }
+
+    public UserSummary withNetWorth(long netWorth) {
+        return new UserSummary(id, username, avatarURL, balance, netWorth, pinnedNFT);
+    }
+
+    public UserSummary withPinnedNFT(NFTPreview pinnedNFT) {
+        return new UserSummary(id, username, avatarURL, balance, netWorth, pinnedNFT);
+    }
+}
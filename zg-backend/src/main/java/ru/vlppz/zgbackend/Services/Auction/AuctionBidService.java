@@ -0,0 +1,385 @@
+package ru.vlppz.zgbackend.Services.Auction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Auction.Auction;
+import ru.vlppz.zgbackend.DB.Auction.AuctionBidRepository;
+import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.OptimisticRetryExecutor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Bidding engine for timed auctions. Every live auction has an in-memory book, and bids on it are
+// sequenced under the book's monitor, so a burst in the last seconds is decided without touching
+// the auctions row. Accepted bids are written behind in batches by a flusher thread (one insert
+// per bid, one update per auction per batch), and a scheduled job settles ended auctions.
+@Service
+public class AuctionBidService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(AuctionBidService.class);
+
+    // Skips bids on auctions deleted or closed meanwhile (admin NFT removal), which would otherwise fail the whole batch forever
+    private static final String INSERT_BID_SQL =
+            "INSERT INTO auction_bids (auction_id, bidder_id, amount, created_at) " +
+            "SELECT ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM auctions WHERE id = ? AND active)";
+    private static final String ACTIVE_SQL = "SELECT active FROM auctions WHERE id = ?";
+    // Guarded so a batch replayed after a failure can never move an auction back to a lower bid
+    private static final String UPDATE_AUCTION_SQL =
+            "UPDATE auctions SET price = ?, highest_bidder_id = ?, ends_at = ?, version = version + 1 " +
+            "WHERE id = ? AND active AND (highest_bidder_id IS NULL OR price < ?)";
+
+    public enum Outcome {
+        OK,
+        USER_NOT_FOUND,
+        AUCTION_NOT_FOUND,
+        NOT_TIMED,
+        ENDED,
+        OWN_AUCTION,
+        ALREADY_LEADING,
+        BID_TOO_LOW,
+        INSUFFICIENT_FUNDS
+    }
+
+    // price, endsAt and minimumBid describe the book after the bid was decided
+    public record Result(Outcome outcome, Long price, LocalDateTime endsAt, Long minimumBid) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null, null, null);
+        }
+    }
+
+    private record PendingBid(Long auctionId, Long bidderId, long amount, LocalDateTime placedAt, LocalDateTime endsAt) {}
+
+    private static final class BidBook {
+        final Long auctionId;
+        final Long sellerId;
+        final long minIncrement;
+        long price;
+        Long leaderId;
+        LocalDateTime endsAt;
+        boolean closed;
+        // Whether the auction was seen active after the book went into the map
+        volatile boolean confirmed;
+
+        BidBook(Auction auction, boolean confirmed) {
+            this.auctionId = auction.getId();
+            this.sellerId = auction.getSeller().getId();
+            this.minIncrement = auction.getMinIncrement() != null ? auction.getMinIncrement() : 1L;
+            this.price = auction.getPrice();
+            this.leaderId = auction.getHighestBidderId();
+            this.endsAt = auction.getEndsAt();
+            this.confirmed = confirmed;
+        }
+
+        long minimumBid() {
+            return leaderId == null ? price : price + minIncrement;
+        }
+
+        Result snapshot(Outcome outcome) {
+            return new Result(outcome, price, endsAt, minimumBid());
+        }
+    }
+
+    private final AuctionRepository auctionRepository;
+    private final AuctionBidRepository auctionBidRepository;
+    private final UserRepository userRepository;
+    private final AuctionSettlementService settlementService;
+    private final OptimisticRetryExecutor optimisticRetry;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, BidBook> books = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<PendingBid> pending = new LinkedBlockingQueue<>();
+    private final Object flushLock = new Object();
+    private final Thread flusher = new Thread(this::flusherLoop, "auction-bid-flusher");
+
+    @Value("${auction.anti-snipe-seconds:30}")
+    private long antiSnipeSeconds;
+
+    @Value("${auction.bid-flush-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${auction.settle-batch-size:100}")
+    private int settleBatchSize;
+
+    public AuctionBidService(AuctionRepository auctionRepository,
+                             AuctionBidRepository auctionBidRepository,
+                             UserRepository userRepository,
+                             AuctionSettlementService settlementService,
+                             OptimisticRetryExecutor optimisticRetry,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager) {
+        this.auctionRepository = auctionRepository;
+        this.auctionBidRepository = auctionBidRepository;
+        this.userRepository = userRepository;
+        this.settlementService = settlementService;
+        this.optimisticRetry = optimisticRetry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flusher.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startFlusher() {
+        flusher.start();
+    }
+
+    public Result placeBid(Long userId, Long auctionId, long amount) {
+        BidBook book = books.get(auctionId);
+        if (book == null) {
+            Optional<Auction> auction = auctionRepository.findById(auctionId);
+            if (auction.isEmpty()) {
+                return Result.of(Outcome.AUCTION_NOT_FOUND);
+            }
+            if (!auction.get().isTimed()) {
+                return Result.of(Outcome.NOT_TIMED);
+            }
+            if (!auction.get().getActive()) {
+                return Result.of(Outcome.ENDED);
+            }
+            book = books.computeIfAbsent(auctionId, id -> new BidBook(auction.get(), false));
+        }
+        if (!book.confirmed && !confirmActive(book)) {
+            return Result.of(Outcome.ENDED);
+        }
+        if (userId.equals(book.sellerId)) {
+            return Result.of(Outcome.OWN_AUCTION);
+        }
+
+        // Checked outside the sequencer so the monitor is never held across a query. Funds are not
+        // reserved: settlement falls back to the next bidder if the winner can no longer pay.
+        Optional<Long> balance = userRepository.findBalanceById(userId);
+        if (balance.isEmpty()) {
+            return Result.of(Outcome.USER_NOT_FOUND);
+        }
+
+        synchronized (book) {
+            LocalDateTime now = LocalDateTime.now();
+            if (book.closed || !now.isBefore(book.endsAt)) {
+                return book.snapshot(Outcome.ENDED);
+            }
+            if (userId.equals(book.leaderId)) {
+                return book.snapshot(Outcome.ALREADY_LEADING);
+            }
+            if (amount < book.minimumBid()) {
+                return book.snapshot(Outcome.BID_TOO_LOW);
+            }
+            if (balance.get() < amount) {
+                return book.snapshot(Outcome.INSUFFICIENT_FUNDS);
+            }
+
+            book.price = amount;
+            book.leaderId = userId;
+            // Anti-sniping: a bid in the closing window keeps the auction open for another full window
+            LocalDateTime extended = now.plusSeconds(antiSnipeSeconds);
+            if (book.endsAt.isBefore(extended)) {
+                book.endsAt = extended;
+            }
+            pending.add(new PendingBid(auctionId, userId, amount, now, book.endsAt));
+            return book.snapshot(Outcome.OK);
+        }
+    }
+
+    // Closes a timed auction for cancellation if nobody has bid yet; must be called inside the
+    // cancelling transaction, and the book reopens if that transaction rolls back
+    public boolean closeForCancel(Auction auction) {
+        BidBook book = books.computeIfAbsent(auction.getId(), id -> new BidBook(auction, true));
+        synchronized (book) {
+            if (book.closed || book.leaderId != null) {
+                return false;
+            }
+            book.closed = true;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    books.remove(book.auctionId);
+                } else {
+                    synchronized (book) {
+                        book.closed = false;
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    // A book built from a read taken before a cancellation committed (and removed the old book) would
+    // take bids on a cancelled auction. Reading the row again once the book is in the map settles it:
+    // a cancellation that committed earlier shows here, a later one goes through this book.
+    private boolean confirmActive(BidBook book) {
+        Boolean active = jdbcTemplate.query(ACTIVE_SQL, rs -> rs.next() ? rs.getBoolean(1) : null, book.auctionId);
+        if (Boolean.TRUE.equals(active)) {
+            book.confirmed = true;
+            return true;
+        }
+        synchronized (book) {
+            book.closed = true;
+        }
+        books.remove(book.auctionId, book);
+        return false;
+    }
+
+    // Auction rows deleted with their NFTs: once the delete commits, their books stop taking bids
+    public void forgetAuctions(Collection<Long> auctionIds) {
+        AfterCommit.run(() -> {
+            for (Long auctionId : auctionIds) {
+                BidBook book = books.remove(auctionId);
+                if (book != null) {
+                    synchronized (book) {
+                        book.closed = true;
+                    }
+                }
+            }
+        });
+    }
+
+    @Scheduled(initialDelayString = "${auction.settle-interval-ms:1000}",
+            fixedDelayString = "${auction.settle-interval-ms:1000}")
+    public void settleEnded() {
+        try {
+            flush();
+            List<Long> ended = auctionRepository.findEndedIds(LocalDateTime.now(), Limit.of(settleBatchSize));
+            if (ended.isEmpty()) {
+                return;
+            }
+
+            // Close the books first, then flush once more: any bid accepted before the close is in
+            // the table before the winner is picked
+            List<Long> closing = new ArrayList<>(ended.size());
+            LocalDateTime now = LocalDateTime.now();
+            for (Long auctionId : ended) {
+                BidBook book = books.get(auctionId);
+                if (book == null) {
+                    closing.add(auctionId);
+                    continue;
+                }
+                synchronized (book) {
+                    // Extended by a bid that is not flushed yet
+                    if (now.isBefore(book.endsAt)) {
+                        continue;
+                    }
+                    book.closed = true;
+                }
+                closing.add(auctionId);
+            }
+            flush();
+
+            int settled = 0;
+            for (Long auctionId : closing) {
+                try {
+                    optimisticRetry.execute("auction.settle", status -> {
+                        settleTimed(auctionId);
+                        return null;
+                    });
+                    books.remove(auctionId);
+                    settled++;
+                } catch (Exception e) {
+                    log.warn("Settlement of auction {} failed: {}", auctionId, e.getMessage());
+                }
+            }
+            log.debug("Settled {} of {} ended auctions", settled, closing.size());
+        } catch (Exception e) {
+            log.warn("Auction settlement run failed: {}", e.getMessage());
+        }
+    }
+
+    private void settleTimed(Long auctionId) {
+        Optional<Auction> auctionOptional = auctionRepository.findById(auctionId);
+        if (auctionOptional.isEmpty() || !auctionOptional.get().getActive()) {
+            return;
+        }
+        Auction auction = auctionOptional.get();
+
+        for (Object[] row : auctionBidRepository.findBestBidPerBidder(auctionId)) {
+            Optional<User> bidder = userRepository.findById((Long) row[0]);
+            if (bidder.isEmpty()) {
+                continue;
+            }
+            long amount = ((Number) row[1]).longValue();
+            AuctionSettlementService.Outcome outcome = settlementService.settle(auction, bidder.get(), amount).outcome();
+            if (outcome == AuctionSettlementService.Outcome.OK || outcome == AuctionSettlementService.Outcome.ALREADY_CLOSED) {
+                return;
+            }
+        }
+        settlementService.closeUnsold(auction);
+    }
+
+    private void flusherLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(flushIntervalMs);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Bid flush failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void flush() {
+        synchronized (flushLock) {
+            List<PendingBid> batch = new ArrayList<>();
+            pending.drainTo(batch);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> bidRows = new ArrayList<>(batch.size());
+            // Only the latest state of each auction needs to reach its row
+            Map<Long, PendingBid> latest = new LinkedHashMap<>();
+            for (PendingBid bid : batch) {
+                bidRows.add(new Object[]{bid.auctionId(), bid.bidderId(), bid.amount(), bid.placedAt(), bid.auctionId()});
+                latest.put(bid.auctionId(), bid);
+            }
+            List<Object[]> auctionRows = new ArrayList<>(latest.size());
+            for (PendingBid bid : latest.values()) {
+                auctionRows.add(new Object[]{bid.amount(), bid.bidderId(), bid.endsAt(), bid.auctionId(), bid.amount()});
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_BID_SQL, bidRows);
+                    jdbcTemplate.batchUpdate(UPDATE_AUCTION_SQL, auctionRows);
+                });
+            } catch (RuntimeException e) {
+                // Retried with the next flush; the guarded update keeps the replay idempotent for the auction rows
+                pending.addAll(batch);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flusher.interrupt();
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Final bid flush failed, {} bids lost: {}", pending.size(), e.getMessage());
+        }
+    }
+}
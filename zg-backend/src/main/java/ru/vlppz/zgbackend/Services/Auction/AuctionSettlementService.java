@@ -0,0 +1,148 @@
+package ru.vlppz.zgbackend.Services.Auction;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.vlppz.zgbackend.DB.Auction.Auction;
+import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+import ru.vlppz.zgbackend.Services.Trade.TradeRecorder;
+
+import java.util.List;
+
+// The money and ownership transfer of an auction sale, shared by "buy now" on fixed-price
+// listings, the expiry job for timed auctions and buy-order fills. Runs inside the caller's transaction.
+// Auction is versioned, so of two settlements racing for one auction only the first commits and the
+// other's retry (OptimisticRetryExecutor) sees it closed.
+@Service
+public class AuctionSettlementService {
+    public enum Outcome {
+        OK,
+        ALREADY_CLOSED,
+        OWN_AUCTION,
+        INSUFFICIENT_FUNDS
+    }
+
+    public record Result(Outcome outcome, Long newBalance) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null);
+        }
+    }
+
+    private final AuctionRepository auctionRepository;
+    private final NFTRepository nftRepository;
+    private final UserRepository userRepository;
+    private final NetWorthService netWorthService;
+    private final MarketEventBus marketEventBus;
+    private final TradeRecorder tradeRecorder;
+    private final CoinLedger coinLedger;
+    private final EconomyEngine economyEngine;
+
+    public AuctionSettlementService(AuctionRepository auctionRepository,
+                                    NFTRepository nftRepository,
+                                    UserRepository userRepository,
+                                    NetWorthService netWorthService,
+                                    MarketEventBus marketEventBus,
+                                    TradeRecorder tradeRecorder,
+                                    CoinLedger coinLedger,
+                                    EconomyEngine economyEngine) {
+        this.auctionRepository = auctionRepository;
+        this.nftRepository = nftRepository;
+        this.userRepository = userRepository;
+        this.netWorthService = netWorthService;
+        this.marketEventBus = marketEventBus;
+        this.tradeRecorder = tradeRecorder;
+        this.coinLedger = coinLedger;
+        this.economyEngine = economyEngine;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Result settle(Auction auction, User buyer, long price) {
+        if (auction.getSeller().equals(buyer)) {
+            return Result.of(Outcome.OWN_AUCTION);
+        }
+        if (buyer.getBalance() < price) {
+            return Result.of(Outcome.INSUFFICIENT_FUNDS);
+        }
+        if (!auction.getActive()) {
+            return Result.of(Outcome.ALREADY_CLOSED);
+        }
+        // In engine mode the users row lags debits the engine has not flushed yet; its balance decides
+        if (!economyEngine.holdUntilCompletion(buyer.getId(), price)) {
+            return Result.of(Outcome.INSUFFICIENT_FUNDS);
+        }
+
+        buyer.setBalance(buyer.getBalance() - price);
+        coinLedger.record(buyer.getId(), -price, LedgerEntry.Reason.AUCTION_PURCHASE, auction.getId());
+        transfer(auction, buyer, price);
+        return new Result(Outcome.OK, buyer.getBalance());
+    }
+
+    // Buy-order fill: the buyer paid `escrowed` when placing the order, so only the unused part comes back
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Result settleEscrowed(Auction auction, User buyer, long price, long escrowed) {
+        if (auction.getSeller().equals(buyer)) {
+            return Result.of(Outcome.OWN_AUCTION);
+        }
+        if (!auction.getActive()) {
+            return Result.of(Outcome.ALREADY_CLOSED);
+        }
+
+        buyer.setBalance(buyer.getBalance() + escrowed - price);
+        coinLedger.record(buyer.getId(), escrowed - price, LedgerEntry.Reason.ORDER_REFUND, auction.getId());
+        transfer(auction, buyer, price);
+        return new Result(Outcome.OK, buyer.getBalance());
+    }
+
+    // The buyer's side is already paid by the caller: seller gets the price, the NFT changes hands
+    private void transfer(Auction auction, User buyer, long price) {
+        User seller = auction.getSeller();
+        seller.setBalance(seller.getBalance() + price);
+        coinLedger.record(seller.getId(), price, LedgerEntry.Reason.AUCTION_SALE, auction.getId());
+
+        NFT nft = auction.getNft();
+        if (seller.getPinnedNFT() != null && seller.getPinnedNFT().equals(nft)) {
+            seller.setPinnedNFT(null);
+        }
+        netWorthService.onReleased(seller, nft);
+        nft.setOwner(buyer);
+        nft.setLastSalePrice(price);
+        nft.setListed(false);
+
+        auction.setActive(false);
+
+        userRepository.save(buyer);
+        userRepository.save(seller);
+        nftRepository.save(nft);
+        // Flushed before the trade insert: a lost race must fail the version check (and be retried),
+        // not block on and then violate the unique auction_id of the winner's trade
+        auctionRepository.saveAndFlush(auction);
+        netWorthService.onAcquired(buyer, nft);
+        tradeRecorder.record(auction, seller, buyer, price);
+        marketEventBus.listingSold(auction, price);
+        economyEngine.forgetNfts(List.of(nft.getId()));
+    }
+
+    // Timed auction that ended without a buyer who could pay: the NFT goes back to the seller's inventory
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean closeUnsold(Auction auction) {
+        if (!auction.getActive()) {
+            return false;
+        }
+        auction.setActive(false);
+        auction.getNft().setListed(false);
+        auctionRepository.save(auction);
+        nftRepository.save(auction.getNft());
+        marketEventBus.listingCancelled(auction);
+        economyEngine.forgetNfts(List.of(auction.getNft().getId()));
+        return true;
+    }
+}
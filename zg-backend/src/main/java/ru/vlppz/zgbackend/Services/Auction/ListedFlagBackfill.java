@@ -0,0 +1,29 @@
+package ru.vlppz.zgbackend.Services.Auction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+
+// Brings NFT.listed in line with the auctions table on startup: fills it in for auctions created
+// before the column existed and corrects any drift.
+@Component
+public class ListedFlagBackfill {
+    private static final Logger log = LoggerFactory.getLogger(ListedFlagBackfill.class);
+
+    private final NFTRepository nftRepository;
+
+    public ListedFlagBackfill(NFTRepository nftRepository) {
+        this.nftRepository = nftRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int fixed = nftRepository.syncListedWithAuctions();
+        if (fixed > 0) {
+            log.info("Listed flag corrected on {} NFTs", fixed);
+        }
+    }
+}
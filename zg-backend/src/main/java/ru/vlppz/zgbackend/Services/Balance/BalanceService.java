@@ -0,0 +1,90 @@
+package ru.vlppz.zgbackend.Services.Balance;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionCallback;
+import ru.vlppz.zgbackend.Services.OptimisticRetryExecutor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Entry point for request paths that change balances: the work runs through OptimisticRetryExecutor
+// while this instance holds the lock of every user it touches. Locks are striped over a fixed table,
+// so memory does not grow with the user count, and taken in stripe order, so two operations over the
+// same users never deadlock. Rapid requests of one user queue here instead of racing each other into
+// version conflicts; across instances the version checks still decide. Wait time is exported as
+// economy.balance.lock.wait, timeouts as economy.balance.lock.timeouts.
+@Service
+public class BalanceService {
+    private final OptimisticRetryExecutor optimisticRetry;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock[] stripes;
+    private final long timeoutMs;
+
+    public BalanceService(OptimisticRetryExecutor optimisticRetry,
+                          MeterRegistry meterRegistry,
+                          @Value("${economy.balance.lock-stripes:1024}") int stripeCount,
+                          @Value("${economy.balance.lock-timeout-ms:2000}") long timeoutMs) {
+        this.optimisticRetry = optimisticRetry;
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        // Power of two, so a stripe is a mask of the spread hash
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T execute(String operation, Long userId, TransactionCallback<T> work) {
+        return execute(operation, List.of(userId), work);
+    }
+
+    // Null ids (a party that does not exist) are skipped; the work reports those itself
+    public <T> T execute(String operation, Collection<Long> userIds, TransactionCallback<T> work) {
+        TreeSet<Integer> held = new TreeSet<>();
+        for (Long userId : userIds) {
+            if (userId != null) {
+                held.add(stripe(userId));
+            }
+        }
+
+        int locked = 0;
+        long started = System.nanoTime();
+        try {
+            for (int stripe : held) {
+                long left = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - started);
+                if (!stripes[stripe].tryLock(Math.max(0, left), TimeUnit.NANOSECONDS)) {
+                    Counter.builder("economy.balance.lock.timeouts").tag("operation", operation).register(meterRegistry).increment();
+                    throw new IllegalStateException("Timed out waiting for balance locks: " + operation);
+                }
+                locked++;
+            }
+            Timer.builder("economy.balance.lock.wait").tag("operation", operation).register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+            return optimisticRetry.execute(operation, work);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for balance locks: " + operation);
+        } finally {
+            for (int stripe : held) {
+                if (locked-- == 0) {
+                    break;
+                }
+                stripes[stripe].unlock();
+            }
+        }
+    }
+
+    private int stripe(long userId) {
+        int hash = Long.hashCode(userId);
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
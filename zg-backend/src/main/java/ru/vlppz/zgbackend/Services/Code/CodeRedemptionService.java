@@ -0,0 +1,384 @@
+package ru.vlppz.zgbackend.Services.Code;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Code.Code;
+import ru.vlppz.zgbackend.DB.Code.CodeRepository;
+import ru.vlppz.zgbackend.DB.Code.CodeUsageRepository;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Promo code redemption that holds up when thousands redeem one code within a minute. Every code in
+// use has an in-memory counter of uses left, so a request reserves a use with one CAS instead of
+// queueing on the codes row, and a Bloom filter of users who already redeemed it, so most requests
+// skip the code_usages lookup. Reserved redemptions are written by one writer thread, a batch per
+// code per transaction: the codes row is locked once, usages go in as one insert whose conflicts on
+// (code_id, user_id) mark repeat redemptions, and rewards as one update. The row's uses left decide
+// over the counter, so several instances (or an admin edit) can never over-issue a code.
+@Service
+public class CodeRedemptionService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(CodeRedemptionService.class);
+    private static final int MIN_FILTER_USERS = 1024;
+    private static final int MAX_FILTER_USERS = 1_000_000;
+
+    private static final String REDEEMED_USERS_SQL = "SELECT user_id FROM code_usages WHERE code_id = ?";
+    private static final String USES_LEFT_SQL = "SELECT max_uses - current_uses FROM codes WHERE id = ? AND active";
+    private static final String LOCK_USES_LEFT_SQL = USES_LEFT_SQL + " FOR UPDATE";
+    // Users that do not exist are left out rather than failing the batch on the foreign key
+    private static final String INSERT_USAGES_SQL =
+            "INSERT INTO code_usages (code_id, user_id, used_at) " +
+            "SELECT ?, u.id, ? FROM unnest(?::bigint[]) AS c(user_id) JOIN users u ON u.id = c.user_id " +
+            "ON CONFLICT (code_id, user_id) DO NOTHING RETURNING user_id";
+    private static final String RELEASE_USAGES_SQL = "DELETE FROM code_usages WHERE code_id = ? AND user_id = ANY(?::bigint[])";
+    private static final String EXISTING_USERS_SQL = "SELECT id FROM users WHERE id = ANY(?::bigint[])";
+    // Row locks are taken in id order, like every other multi-user write
+    private static final String CREDIT_SQL =
+            "UPDATE users SET balance = balance + ?, version = version + 1 " +
+            "WHERE id IN (SELECT id FROM users WHERE id = ANY(?::bigint[]) ORDER BY id FOR UPDATE) RETURNING id, balance";
+    private static final String COUNT_USES_SQL = "UPDATE codes SET current_uses = current_uses + ?, version = version + 1 WHERE id = ?";
+
+    public enum Outcome {
+        OK,
+        CODE_NOT_FOUND,
+        ALREADY_USED,
+        EXHAUSTED,
+        USER_NOT_FOUND
+    }
+
+    public record Result(Outcome outcome, Long reward, Long newBalance) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null, null);
+        }
+    }
+
+    private static final class HotCode {
+        final Long id;
+        final String code;
+        final long reward;
+        final RedeemedFilter redeemed;
+        // Uses this instance may still hand out, and reservations not written yet
+        final AtomicInteger available;
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile long lastUsedAt = System.currentTimeMillis();
+
+        HotCode(Code code, int usesLeft, RedeemedFilter redeemed) {
+            this.id = code.getId();
+            this.code = code.getCode();
+            this.reward = code.getReward();
+            this.redeemed = redeemed;
+            this.available = new AtomicInteger(Math.max(0, usesLeft));
+        }
+
+        boolean reserve() {
+            int left = available.get();
+            while (left > 0) {
+                if (available.compareAndSet(left, left - 1)) {
+                    inFlight.incrementAndGet();
+                    return true;
+                }
+                left = available.get();
+            }
+            return false;
+        }
+
+        // After a written batch: what the row has left, minus what is reserved but not written
+        void reconcile(int usesLeft) {
+            available.set(Math.max(0, usesLeft - inFlight.get()));
+        }
+    }
+
+    private record Redemption(HotCode code, Long userId, CompletableFuture<Result> result) {}
+
+    private record BatchResult(List<Result> results, Integer usesLeft) {}
+
+    private final CodeRepository codeRepository;
+    private final CodeUsageRepository codeUsageRepository;
+    private final CodeUsageMigration codeUsageMigration;
+    private final CoinLedger coinLedger;
+    private final LeaderboardIndex leaderboardIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, HotCode> hotCodes = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Redemption> pending = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::writerLoop, "code-redemption-writer");
+    private volatile boolean stopping;
+
+    @Value("${codes.redeem.flush-ms:10}")
+    private long flushIntervalMs;
+
+    @Value("${codes.redeem.batch-size:1000}")
+    private int maxBatchSize;
+
+    // Bounds a batch's transaction, and with it how long a redemption can wait for its answer
+    @Value("${codes.redeem.write-timeout-s:5}")
+    private int writeTimeoutSeconds;
+
+    @Value("${codes.redeem.idle-evict-ms:60000}")
+    private long idleEvictMs;
+
+    public CodeRedemptionService(CodeRepository codeRepository,
+                                 CodeUsageRepository codeUsageRepository,
+                                 CodeUsageMigration codeUsageMigration,
+                                 CoinLedger coinLedger,
+                                 LeaderboardIndex leaderboardIndex,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager) {
+        this.codeRepository = codeRepository;
+        this.codeUsageRepository = codeUsageRepository;
+        this.codeUsageMigration = codeUsageMigration;
+        this.coinLedger = coinLedger;
+        this.leaderboardIndex = leaderboardIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writer.setDaemon(true);
+    }
+
+    // The batch insert needs the unique constraint on (code_id, user_id)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        codeUsageMigration.migrate();
+        transactionTemplate.setTimeout(writeTimeoutSeconds);
+        writer.start();
+    }
+
+    public Result redeem(Long userId, String code) {
+        if (code == null) {
+            return Result.of(Outcome.CODE_NOT_FOUND);
+        }
+        HotCode hot = hotCodes.computeIfAbsent(code, this::load);
+        if (hot == null) {
+            return Result.of(Outcome.CODE_NOT_FOUND);
+        }
+        hot.lastUsedAt = System.currentTimeMillis();
+
+        if (hot.redeemed.mightContain(userId) && codeUsageRepository.existsByCodeIdAndUserId(hot.id, userId)) {
+            return Result.of(Outcome.ALREADY_USED);
+        }
+        if (!hot.reserve()) {
+            return Result.of(Outcome.EXHAUSTED);
+        }
+
+        Redemption redemption = new Redemption(hot, userId, new CompletableFuture<>());
+        pending.add(redemption);
+        // Every queued redemption is answered by the writer, whose transactions time out, so this wait
+        // ends with the redemption's real outcome instead of an error for a write that may still commit
+        try {
+            return redemption.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while redeeming code");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // For admin changes to a code: it is reloaded from the table on its next redemption
+    public void forget(Long codeId) {
+        hotCodes.values().removeIf(hot -> hot.id.equals(codeId));
+    }
+
+    // Drops codes nobody redeems any more and pulls admin edits of the others from the table
+    @Scheduled(initialDelayString = "${codes.redeem.reconcile-ms:10000}",
+            fixedDelayString = "${codes.redeem.reconcile-ms:10000}")
+    public void reconcile() {
+        long idleSince = System.currentTimeMillis() - idleEvictMs;
+        for (HotCode hot : hotCodes.values()) {
+            if (hot.inFlight.get() == 0 && hot.lastUsedAt < idleSince) {
+                hotCodes.remove(hot.code, hot);
+                continue;
+            }
+            Integer usesLeft = usesLeft(USES_LEFT_SQL, hot.id);
+            if (usesLeft == null) {
+                hotCodes.remove(hot.code, hot);
+            } else {
+                hot.reconcile(usesLeft);
+            }
+        }
+    }
+
+    private HotCode load(String code) {
+        Optional<Code> codeOptional = codeRepository.findByCodeAndActiveTrue(code);
+        if (codeOptional.isEmpty()) {
+            return null;
+        }
+        Code entity = codeOptional.get();
+        List<Long> redeemedUsers = jdbcTemplate.queryForList(REDEEMED_USERS_SQL, Long.class, entity.getId());
+        int expectedUsers = Math.max(entity.getMaxUses(), redeemedUsers.size());
+        RedeemedFilter filter = new RedeemedFilter(Math.min(MAX_FILTER_USERS, Math.max(MIN_FILTER_USERS, expectedUsers)));
+        redeemedUsers.forEach(filter::add);
+        return new HotCode(entity, entity.getMaxUses() - entity.getCurrentUses(), filter);
+    }
+
+    private void writerLoop() {
+        while (!stopping || !pending.isEmpty()) {
+            List<Redemption> batch = new ArrayList<>();
+            try {
+                Redemption first = pending.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, maxBatchSize - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failPending();
+                return;
+            }
+
+            Map<HotCode, List<Redemption>> byCode = new LinkedHashMap<>();
+            for (Redemption redemption : batch) {
+                byCode.computeIfAbsent(redemption.code(), hot -> new ArrayList<>()).add(redemption);
+            }
+            byCode.forEach(this::write);
+        }
+    }
+
+    // The writer stops for good: whatever is still queued was never written, so it is refused
+    private void failPending() {
+        IllegalStateException stopped = new IllegalStateException("Code redemption writer stopped");
+        Redemption redemption;
+        while ((redemption = pending.poll()) != null) {
+            redemption.code().inFlight.decrementAndGet();
+            redemption.code().available.incrementAndGet();
+            redemption.result().completeExceptionally(stopped);
+        }
+    }
+
+    // One transaction per code, so a failing code does not hold up the others
+    private void write(HotCode hot, List<Redemption> redemptions) {
+        BatchResult written;
+        try {
+            written = transactionTemplate.execute(status -> writeBatch(hot, redemptions));
+        } catch (RuntimeException e) {
+            log.warn("Writing {} redemptions of code {} failed: {}", redemptions.size(), hot.id, e.getMessage());
+            hot.inFlight.addAndGet(-redemptions.size());
+            hot.available.addAndGet(redemptions.size());
+            redemptions.forEach(redemption -> redemption.result().completeExceptionally(e));
+            return;
+        }
+
+        hot.inFlight.addAndGet(-redemptions.size());
+        if (written.usesLeft() == null) {
+            hotCodes.remove(hot.code, hot);
+        } else {
+            hot.reconcile(written.usesLeft());
+        }
+        for (int i = 0; i < redemptions.size(); i++) {
+            Redemption redemption = redemptions.get(i);
+            Result result = written.results().get(i);
+            if (result.outcome() == Outcome.OK || result.outcome() == Outcome.ALREADY_USED) {
+                hot.redeemed.add(redemption.userId());
+            }
+            redemption.result().complete(result);
+        }
+    }
+
+    private BatchResult writeBatch(HotCode hot, List<Redemption> redemptions) {
+        List<Result> results = new ArrayList<>(redemptions.size());
+        Integer usesLeft = usesLeft(LOCK_USES_LEFT_SQL, hot.id);
+        if (usesLeft == null) {
+            redemptions.forEach(redemption -> results.add(Result.of(Outcome.CODE_NOT_FOUND)));
+            return new BatchResult(results, null);
+        }
+
+        // A user's repeat within the batch is settled here; repeats of earlier batches by the unique index
+        Set<Long> candidates = new LinkedHashSet<>();
+        for (Redemption redemption : redemptions) {
+            candidates.add(redemption.userId());
+        }
+        Set<Long> inserted = new HashSet<>(jdbcTemplate.queryForList(INSERT_USAGES_SQL, Long.class,
+                hot.id, Timestamp.valueOf(LocalDateTime.now()), candidates.toArray(new Long[0])));
+
+        // When the row has fewer uses left than were reserved here (another instance, an admin edit),
+        // the earliest requests get them and the rest give their usage back
+        List<Long> winners = new ArrayList<>();
+        List<Long> overflow = new ArrayList<>();
+        for (Long userId : candidates) {
+            if (inserted.contains(userId)) {
+                (winners.size() < usesLeft ? winners : overflow).add(userId);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            jdbcTemplate.update(RELEASE_USAGES_SQL, hot.id, overflow.toArray(new Long[0]));
+        }
+
+        Map<Long, Long> balances = new HashMap<>();
+        if (!winners.isEmpty()) {
+            jdbcTemplate.query(CREDIT_SQL, rs -> {
+                balances.put(rs.getLong(1), rs.getLong(2));
+            }, hot.reward, winners.toArray(new Long[0]));
+            jdbcTemplate.update(COUNT_USES_SQL, winners.size(), hot.id);
+            for (Long userId : winners) {
+                coinLedger.record(userId, hot.reward, LedgerEntry.Reason.CODE_REDEEM, hot.id);
+            }
+            AfterCommit.run(() -> balances.forEach(leaderboardIndex::updateBalance));
+        }
+
+        // Not inserted means redeemed before, unless the user does not exist at all
+        Set<Long> missingUsers = new HashSet<>();
+        if (inserted.size() < candidates.size()) {
+            List<Long> notInserted = candidates.stream().filter(userId -> !inserted.contains(userId)).toList();
+            missingUsers.addAll(notInserted);
+            jdbcTemplate.queryForList(EXISTING_USERS_SQL, Long.class, (Object) notInserted.toArray(new Long[0]))
+                    .forEach(missingUsers::remove);
+        }
+
+        Set<Long> answered = new HashSet<>();
+        for (Redemption redemption : redemptions) {
+            Long userId = redemption.userId();
+            if (!answered.add(userId)) {
+                results.add(Result.of(Outcome.ALREADY_USED));
+            } else if (balances.containsKey(userId)) {
+                results.add(new Result(Outcome.OK, hot.reward, balances.get(userId)));
+            } else if (overflow.contains(userId)) {
+                results.add(Result.of(Outcome.EXHAUSTED));
+            } else if (missingUsers.contains(userId)) {
+                results.add(Result.of(Outcome.USER_NOT_FOUND));
+            } else {
+                results.add(Result.of(Outcome.ALREADY_USED));
+            }
+        }
+        return new BatchResult(results, usesLeft - winners.size());
+    }
+
+    // Null when the code is gone or no longer active
+    private Integer usesLeft(String sql, Long codeId) {
+        return jdbcTemplate.query(sql, rs -> rs.next() ? rs.getInt(1) : null, codeId);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        stopping = true;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
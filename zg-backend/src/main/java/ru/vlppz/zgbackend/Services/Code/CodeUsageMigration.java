@@ -0,0 +1,71 @@
+package ru.vlppz.zgbackend.Services.Code;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// One-off migration to the unique (code_id, user_id) constraint on code_usages, which schema update
+// cannot add while old redemptions left duplicates behind. Removing them deletes data, so it only
+// happens when codes.migrate.dedupe-usages is set for the run, and every removed row is logged.
+// Without it, startup fails while duplicates remain.
+@Component
+public class CodeUsageMigration {
+    private static final Logger log = LoggerFactory.getLogger(CodeUsageMigration.class);
+
+    private static final String INDEX_EXISTS_SQL =
+            "SELECT EXISTS (SELECT 1 FROM pg_indexes WHERE tablename = 'code_usages' AND indexname = 'uk_code_usages_code_user')";
+    private static final String COUNT_DUPLICATES_SQL =
+            "SELECT COUNT(*) FROM (SELECT 1 FROM code_usages GROUP BY code_id, user_id HAVING COUNT(*) > 1) d";
+    // Keeps the earliest usage of each pair
+    private static final String DEDUPE_USAGES_SQL =
+            "DELETE FROM code_usages a USING code_usages b " +
+            "WHERE a.code_id = b.code_id AND a.user_id = b.user_id AND a.id > b.id " +
+            "RETURNING a.id, a.code_id, a.user_id, a.used_at";
+    // The constraint CodeUsage declares, as schema update would have added it
+    private static final String UNIQUE_USAGE_SQL =
+            "ALTER TABLE code_usages ADD CONSTRAINT uk_code_usages_code_user UNIQUE (code_id, user_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${codes.migrate.dedupe-usages:false}")
+    private boolean dedupeUsages;
+
+    public CodeUsageMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void migrate() {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(INDEX_EXISTS_SQL, Boolean.class))) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            long duplicates = countDuplicates();
+            if (duplicates > 0 && dedupeUsages) {
+                int[] removed = {0};
+                jdbcTemplate.query(DEDUPE_USAGES_SQL, rs -> {
+                    log.warn("Removing duplicate code usage {} (code {}, user {}, used at {})",
+                            rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getTimestamp(4));
+                    removed[0]++;
+                });
+                log.warn("Removed {} duplicate code usages of {} (code, user) pairs", removed[0], duplicates);
+                duplicates = countDuplicates();
+            }
+            if (duplicates > 0) {
+                throw new IllegalStateException("code_usages has " + duplicates + " duplicate (code_id, user_id) pairs; " +
+                        "review them and start once with codes.migrate.dedupe-usages=true to keep the earliest of each");
+            }
+            jdbcTemplate.execute(UNIQUE_USAGE_SQL);
+            log.info("Added unique constraint on code_usages (code_id, user_id)");
+        });
+    }
+
+    private long countDuplicates() {
+        return jdbcTemplate.queryForObject(COUNT_DUPLICATES_SQL, Long.class);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.vlppz.zgbackend.Services.Code;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bloom filter over the ids of users who redeemed one code. "No" is definite and skips the
+// code_usages lookup; "maybe" (about 1% false positives at the sized capacity, more past it) still
+// goes to the table. Read by request threads while the redemption writer adds to it.
+final class RedeemedFilter {
+    private static final int HASHES = 7;
+    // ~9.6 bits per expected user gives the 1% rate with 7 hashes
+    private static final double BITS_PER_ENTRY = 9.6;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+
+    RedeemedFilter(int expectedUsers) {
+        long bits = Math.max(64, (long) Math.ceil(expectedUsers * BITS_PER_ENTRY));
+        this.words = new AtomicLongArray((int) ((bits + 63) >>> 6));
+        this.bitCount = (long) words.length() << 6;
+    }
+
+    void add(long userId) {
+        long hash = mix(userId);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            // Another bit of the word may be set meanwhile; retry with the new value
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    boolean mightContain(long userId) {
+        long hash = mix(userId);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // SplitMix64 finalizer: sequential user ids must not land on neighbouring bits
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,316 @@
+package ru.vlppz.zgbackend.Services.Drop;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+import ru.vlppz.zgbackend.Services.Shop.CatalogCache;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Purchase path for limited-drop editions. Each attempt takes a unit of in-memory stock and a place
+// in a bounded FIFO queue; once the stock is promised, everyone else is told "sold out" without a
+// query. A single allocator thread drains the queues and commits the winners in batches, so the
+// edition row sees one update per batch instead of one contended update per buyer.
+@Service
+public class DropQueueService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(DropQueueService.class);
+    private static final long RESOLVED_TICKET_TTL_MINUTES = 10;
+
+    public enum Admission {
+        QUEUED,
+        SOLD_OUT,
+        ALREADY_QUEUED,
+        QUEUE_FULL
+    }
+
+    public record Entry(Admission admission, DropTicket ticket) {}
+
+    private record Resolution(DropTicket ticket, DropTicket.Status status, Long nftId, Long newBalance) {}
+
+    private static final class DropState {
+        final Long editionId;
+        final ArrayBlockingQueue<DropTicket> queue;
+        // Stock not yet promised to a queued ticket
+        final AtomicLong available;
+        final Set<Long> queuedUsers = ConcurrentHashMap.newKeySet();
+        long enqueued;
+        volatile long processed;
+        // Set under the state's monitor once forget() dropped it; nothing may be queued here afterwards
+        volatile boolean closed;
+
+        DropState(NFTEdition edition, int capacity) {
+            this.editionId = edition.getId();
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.available = new AtomicLong(edition.getRemaining());
+        }
+    }
+
+    private final NFTEditionRepository nftEditionRepository;
+    private final NFTRepository nftRepository;
+    private final UserRepository userRepository;
+    private final NetWorthService netWorthService;
+    private final LeaderboardIndex leaderboardIndex;
+    private final CatalogCache catalogCache;
+    private final MarketEventBus marketEventBus;
+    private final CoinLedger coinLedger;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, DropState> drops = new ConcurrentHashMap<>();
+    private final Map<String, DropTicket> tickets = new ConcurrentHashMap<>();
+    private final Semaphore wakeup = new Semaphore(0);
+    private final Thread allocator = new Thread(this::allocatorLoop, "drop-allocator");
+
+    @Value("${drop.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${drop.batch-size:200}")
+    private int batchSize;
+
+    public DropQueueService(NFTEditionRepository nftEditionRepository,
+                            NFTRepository nftRepository,
+                            UserRepository userRepository,
+                            NetWorthService netWorthService,
+                            LeaderboardIndex leaderboardIndex,
+                            CatalogCache catalogCache,
+                            MarketEventBus marketEventBus,
+                            CoinLedger coinLedger,
+                            PlatformTransactionManager transactionManager) {
+        this.nftEditionRepository = nftEditionRepository;
+        this.nftRepository = nftRepository;
+        this.userRepository = userRepository;
+        this.netWorthService = netWorthService;
+        this.leaderboardIndex = leaderboardIndex;
+        this.catalogCache = catalogCache;
+        this.marketEventBus = marketEventBus;
+        this.coinLedger = coinLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.allocator.setDaemon(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startAllocator() {
+        allocator.start();
+    }
+
+    // Empty when the edition is not a limited drop and should be bought the regular way
+    public Optional<Entry> enter(Long userId, Long editionId) {
+        while (true) {
+            DropState state = stateFor(editionId);
+            if (state == null) {
+                return Optional.empty();
+            }
+            Entry entry = enter(state, userId);
+            if (entry != null) {
+                return Optional.of(entry);
+            }
+            // forget() dropped the state meanwhile: the attempt goes to whatever is current now
+        }
+    }
+
+    // Null when the state was closed by forget() before the attempt could be queued
+    private Entry enter(DropState state, Long userId) {
+        if (!state.queuedUsers.add(userId)) {
+            return state.closed ? null : new Entry(Admission.ALREADY_QUEUED, null);
+        }
+        if (state.available.decrementAndGet() < 0) {
+            state.available.incrementAndGet();
+            state.queuedUsers.remove(userId);
+            return state.closed ? null : new Entry(Admission.SOLD_OUT, null);
+        }
+
+        DropTicket ticket;
+        synchronized (state) {
+            if (state.closed) {
+                state.available.incrementAndGet();
+                state.queuedUsers.remove(userId);
+                return null;
+            }
+            ticket = new DropTicket(UUID.randomUUID().toString(), userId, state.editionId, state.enqueued + 1);
+            if (!state.queue.offer(ticket)) {
+                state.available.incrementAndGet();
+                state.queuedUsers.remove(userId);
+                return new Entry(Admission.QUEUE_FULL, null);
+            }
+            state.enqueued++;
+        }
+        tickets.put(ticket.getId(), ticket);
+        wakeup.release();
+        return new Entry(Admission.QUEUED, ticket);
+    }
+
+    public Optional<DropTicket> ticket(String ticketId) {
+        return Optional.ofNullable(tickets.get(ticketId));
+    }
+
+    // How many attempts are still ahead of this ticket, 0 once it is being committed or resolved
+    public long ahead(DropTicket ticket) {
+        DropState state = drops.get(ticket.getEditionId());
+        if (state == null || ticket.getStatus() != DropTicket.Status.QUEUED) {
+            return 0;
+        }
+        return Math.max(0, ticket.getPosition() - state.processed - 1);
+    }
+
+    // Drops the cached stock, e.g. after the edition was pulled from sale. Tickets still waiting in
+    // its queue are answered "sold out" so pollers stop and the tickets age out like any other.
+    public void forget(Long editionId) {
+        DropState state = drops.remove(editionId);
+        if (state == null) {
+            return;
+        }
+        List<DropTicket> pending = new ArrayList<>();
+        synchronized (state) {
+            state.closed = true;
+            state.queue.drainTo(pending);
+            state.queuedUsers.clear();
+            state.available.set(0);
+        }
+        for (DropTicket ticket : pending) {
+            ticket.resolve(DropTicket.Status.SOLD_OUT);
+        }
+    }
+
+    private DropState stateFor(Long editionId) {
+        DropState state = drops.get(editionId);
+        if (state != null) {
+            return state;
+        }
+        Optional<NFTEdition> edition = nftEditionRepository.findById(editionId);
+        if (edition.isEmpty() || !Boolean.TRUE.equals(edition.get().getLimitedDrop())) {
+            return null;
+        }
+        return drops.computeIfAbsent(editionId, id -> new DropState(edition.get(), queueCapacity));
+    }
+
+    private void allocatorLoop() {
+        List<DropTicket> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                boolean drained = false;
+                for (DropState state : drops.values()) {
+                    if (state.queue.drainTo(batch, batchSize) > 0) {
+                        allocate(state, batch);
+                        batch.clear();
+                        drained = true;
+                    }
+                }
+                if (!drained) {
+                    wakeup.tryAcquire(1, TimeUnit.SECONDS);
+                    wakeup.drainPermits();
+                    evictResolvedTickets();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Drop allocator iteration failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void allocate(DropState state, List<DropTicket> batch) {
+        try {
+            List<Resolution> resolutions = transactionTemplate.execute(status -> commitBatch(state, batch, status));
+            for (Resolution resolution : resolutions) {
+                switch (resolution.status()) {
+                    case WON -> resolution.ticket().win(resolution.nftId(), resolution.newBalance());
+                    case SOLD_OUT -> {
+                        state.available.set(0);
+                        resolution.ticket().resolve(DropTicket.Status.SOLD_OUT);
+                    }
+                    default -> {
+                        // The promised unit goes back to the pool for whoever enters next
+                        state.available.incrementAndGet();
+                        resolution.ticket().resolve(resolution.status());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Drop batch of {} for edition {} failed: {}", batch.size(), state.editionId, e.getMessage());
+            for (DropTicket ticket : batch) {
+                state.available.incrementAndGet();
+                ticket.fail(e.getMessage());
+            }
+        } finally {
+            for (DropTicket ticket : batch) {
+                state.queuedUsers.remove(ticket.getUserId());
+            }
+            state.processed = batch.get(batch.size() - 1).getPosition();
+        }
+    }
+
+    private List<Resolution> commitBatch(DropState state, List<DropTicket> batch, TransactionStatus status) {
+        List<Resolution> resolutions = new ArrayList<>(batch.size());
+        Optional<NFTEdition> editionOptional = nftEditionRepository.findById(state.editionId);
+        if (editionOptional.isEmpty()) {
+            batch.forEach(ticket -> resolutions.add(new Resolution(ticket, DropTicket.Status.SOLD_OUT, null, null)));
+            return resolutions;
+        }
+        NFTEdition edition = editionOptional.get();
+
+        long won = 0;
+        for (DropTicket ticket : batch) {
+            Long userId = ticket.getUserId();
+            if (userRepository.debitIfSufficient(userId, edition.getPrice()) == 0) {
+                resolutions.add(new Resolution(ticket, DropTicket.Status.INSUFFICIENT_FUNDS, null, null));
+                continue;
+            }
+            NFT nft = nftRepository.save(edition.mintFor(userRepository.getReferenceById(userId)));
+            long newBalance = userRepository.findBalanceById(userId).orElseThrow();
+            netWorthService.adjust(userId, nft.valuation());
+            AfterCommit.run(() -> leaderboardIndex.updateBalance(userId, newBalance));
+            coinLedger.record(userId, -edition.getPrice(), LedgerEntry.Reason.SHOP_PURCHASE, nft.getId());
+            marketEventBus.shopItemSold(nft.getId(), edition.getId(), edition.getName(), edition.getPrice());
+            resolutions.add(new Resolution(ticket, DropTicket.Status.WON, nft.getId(), newBalance));
+            won++;
+        }
+
+        // Stock was changed behind our back (edition retired): nobody in this batch wins
+        if (won > 0 && nftEditionRepository.takeMany(edition.getId(), won) == 0) {
+            status.setRollbackOnly();
+            resolutions.clear();
+            batch.forEach(ticket -> resolutions.add(new Resolution(ticket, DropTicket.Status.SOLD_OUT, null, null)));
+        } else if (won > 0) {
+            catalogCache.invalidate();
+        }
+        return resolutions;
+    }
+
+    private void evictResolvedTickets() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(RESOLVED_TICKET_TTL_MINUTES);
+        tickets.values().removeIf(ticket -> ticket.getResolvedAt() != null && ticket.getResolvedAt().isBefore(cutoff));
+    }
+
+    @Override
+    public void destroy() {
+        allocator.interrupt();
+    }
+}
@@ -0,0 +1,52 @@
+package ru.vlppz.zgbackend.Services.Drop;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// One purchase attempt waiting in a drop queue; the buyer polls it until it is resolved
+@Getter
+public class DropTicket {
+    public enum Status {
+        QUEUED,
+        WON,
+        SOLD_OUT,
+        INSUFFICIENT_FUNDS,
+        FAILED
+    }
+
+    private final String id;
+    private final Long userId;
+    private final Long editionId;
+    private final long position;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Long nftId;
+    private volatile Long newBalance;
+    private volatile String error;
+    private volatile LocalDateTime resolvedAt;
+
+    DropTicket(String id, Long userId, Long editionId, long position) {
+        this.id = id;
+        this.userId = userId;
+        this.editionId = editionId;
+        this.position = position;
+    }
+
+    void win(Long nftId, Long newBalance) {
+        this.nftId = nftId;
+        this.newBalance = newBalance;
+        resolve(Status.WON);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        resolve(Status.FAILED);
+    }
+
+    void resolve(Status status) {
+        this.resolvedAt = LocalDateTime.now();
+        this.status = status;
+    }
+}
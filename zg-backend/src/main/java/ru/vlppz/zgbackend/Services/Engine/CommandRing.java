@@ -0,0 +1,80 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Sequenced ring between the request threads and the engine's writer. A producer claims a slot with
+// one atomic increment and publishes it by storing the slot's sequence, so commands are applied in
+// claim order without a lock. A full ring parks producers until the writer catches up: that is the
+// engine's back pressure. Only the writer thread drains.
+final class CommandRing {
+    private static final long PRODUCER_WAIT_NANOS = 50_000;
+
+    private final EngineCommand[] slots;
+    // Sequence + 1 of the command in each slot; 0 = never written
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile Thread parkedConsumer;
+
+    CommandRing(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.slots = new EngineCommand[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    void publish(EngineCommand command) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= slots.length) {
+            LockSupport.parkNanos(this, PRODUCER_WAIT_NANOS);
+        }
+        int index = (int) (sequence & mask);
+        slots[index] = command;
+        published.set(index, sequence + 1);
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    // Writer thread only. Moves up to max commands in sequence order into the list; parks for at most
+    // idleNanos when there is nothing to take and returns 0
+    int drain(List<EngineCommand> into, int max, long idleNanos) {
+        long next = consumed;
+        int count = 0;
+        while (count < max) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next + 1) {
+                break;
+            }
+            into.add(slots[index]);
+            slots[index] = null;
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            consumed = next;
+            return count;
+        }
+
+        // Announce the park before the last look, so a publish racing with it always unparks us
+        parkedConsumer = Thread.currentThread();
+        if (published.get((int) (next & mask)) != next + 1) {
+            LockSupport.parkNanos(this, idleNanos);
+        }
+        parkedConsumer = null;
+        return 0;
+    }
+
+    int size() {
+        return (int) Math.max(0, claimed.get() - consumed);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
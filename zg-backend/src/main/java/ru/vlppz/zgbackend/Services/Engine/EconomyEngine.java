@@ -0,0 +1,370 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Opt-in (economy.engine.enabled) single-writer mode for the economy: rewards, shop purchases, sells,
+// transfers and fixed-price listing, delisting and buying. Request threads put commands into a ring;
+// one writer thread decides them against in-memory state, journals the effects to a memory-mapped
+// write-ahead log, applies them and answers once a batch is durable on disk. Postgres is brought up
+// to date behind it by EngineFlusher, and a restart replays the journal past the flushed checkpoint.
+// No command waits on a row lock, so a hot user or NFT costs one in-memory check per request.
+//
+// Balances changed by paths that stay on Postgres (codes, referrals, order refunds, admin edits) reach
+// the engine through the coin ledger after they commit. Timed auctions still settle on Postgres; the
+// winner's coins are held in the engine for the settling transaction (holdUntilCompletion). Rows those paths rewrite are dropped from the
+// cache via forgetNfts / forgetEdition.
+@Service
+public class EconomyEngine implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(EconomyEngine.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String ALLOCATE_NFT_ID_SQL = "SELECT nextval(pg_get_serial_sequence('nfts', 'id'))";
+    private static final String ALLOCATE_AUCTION_ID_SQL = "SELECT nextval(pg_get_serial_sequence('auctions', 'id'))";
+    private static final String INIT_CHECKPOINT_SQL =
+            "INSERT INTO engine_checkpoints (id, last_sequence, updated_at) VALUES (1, 0, now()) ON CONFLICT (id) DO NOTHING";
+    private static final String READ_CHECKPOINT_SQL = "SELECT last_sequence FROM engine_checkpoints WHERE id = 1";
+
+    public enum Outcome {
+        OK,
+        USER_NOT_FOUND,
+        RECEIVER_NOT_FOUND,
+        NFT_NOT_FOUND,
+        AUCTION_NOT_FOUND,
+        NOT_OWNER,
+        ALREADY_OWNED,
+        ALREADY_DONE,
+        SOLD_OUT,
+        LISTED,
+        NOT_ACTIVE,
+        TIMED,
+        OWN_AUCTION,
+        SELF_TRANSFER,
+        INSUFFICIENT_FUNDS
+    }
+
+    // newBalance is the caller's balance after the command; amount is what it moved (reward, payout, price)
+    public record Result(Outcome outcome, Long newBalance, Long amount, Long nftId) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null, null, null);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EngineFlusher flusher;
+    private final CoinLedger coinLedger;
+    private final MeterRegistry meterRegistry;
+    private final EngineState state;
+    private final Thread writer = new Thread(this::writerLoop, "engine-writer");
+
+    private CommandRing ring;
+    private EngineJournal journal;
+    private long lastSequence;
+    private volatile boolean running;
+
+    @Value("${economy.engine.enabled:false}")
+    private boolean enabled;
+
+    @Value("${economy.engine.journal-dir:engine-journal}")
+    private String journalDir;
+
+    @Value("${economy.engine.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${economy.engine.ring-size:65536}")
+    private int ringSize;
+
+    @Value("${economy.engine.batch-size:1024}")
+    private int batchSize;
+
+    @Value("${economy.engine.max-cached:200000}")
+    private int maxCached;
+
+    @Value("${economy.engine.timeout-ms:5000}")
+    private long timeoutMs;
+
+    public EconomyEngine(JdbcTemplate jdbcTemplate,
+                         EngineFlusher flusher,
+                         CoinLedger coinLedger,
+                         MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flusher = flusher;
+        this.coinLedger = coinLedger;
+        this.meterRegistry = meterRegistry;
+        this.state = new EngineState(jdbcTemplate);
+        this.writer.setDaemon(true);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    // Replays the journal past the checkpoint into the state and the flusher before taking any command
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.update(INIT_CHECKPOINT_SQL);
+        long checkpoint = jdbcTemplate.queryForObject(READ_CHECKPOINT_SQL, Long.class);
+
+        journal = new EngineJournal(Paths.get(journalDir), segmentBytes);
+        List<EngineState.Applied> replayed = new ArrayList<>();
+        long journaled = journal.open(checkpoint, effect -> replayed.add(state.apply(effect)));
+        lastSequence = Math.max(journaled, checkpoint);
+
+        ring = new CommandRing(ringSize);
+        Gauge.builder("economy.engine.ring.depth", ring, CommandRing::size).register(meterRegistry);
+        Gauge.builder("economy.engine.flush.backlog", flusher, EngineFlusher::backlog).register(meterRegistry);
+        Gauge.builder("economy.engine.flush.lag", this, engine -> engine.lastSequence - flusher.flushedSequence()).register(meterRegistry);
+
+        flusher.start(checkpoint, this::release);
+        flusher.submit(replayed);
+        coinLedger.setListener((userId, amount, entryId) -> offer(EngineCommand.notice(EngineCommand.Kind.EXTERNAL, userId, amount, entryId, null)));
+        running = true;
+        writer.start();
+        log.info("Economy engine started at sequence {}, replayed {} effects past checkpoint {}", lastSequence, replayed.size(), checkpoint);
+    }
+
+    public Result completeTask(Long userId, Long taskId, long reward) {
+        return submit(EngineCommand.request(EngineCommand.Kind.REWARD, userId, 0, 0, reward, taskId));
+    }
+
+    public Result buy(Long userId, Long nftId) {
+        return submit(EngineCommand.request(EngineCommand.Kind.BUY, userId, 0, nftId, 0, 0));
+    }
+
+    public Result buyEdition(Long userId, Long editionId) {
+        long nftId = jdbcTemplate.queryForObject(ALLOCATE_NFT_ID_SQL, Long.class);
+        return submit(EngineCommand.request(EngineCommand.Kind.BUY_EDITION, userId, 0, nftId, 0, editionId));
+    }
+
+    public Result sell(Long userId, Long nftId) {
+        return submit(EngineCommand.request(EngineCommand.Kind.SELL, userId, 0, nftId, 0, 0));
+    }
+
+    public Result transfer(Long userId, Long receiverId, Long nftId, long fee) {
+        return submit(EngineCommand.request(EngineCommand.Kind.TRANSFER, userId, receiverId, nftId, fee, 0));
+    }
+
+    public Result list(Long userId, Long nftId, long price) {
+        long auctionId = jdbcTemplate.queryForObject(ALLOCATE_AUCTION_ID_SQL, Long.class);
+        return submit(EngineCommand.request(EngineCommand.Kind.LIST, userId, 0, nftId, price, auctionId));
+    }
+
+    public Result delist(Long userId, Long auctionId) {
+        return submit(EngineCommand.request(EngineCommand.Kind.DELIST, userId, 0, 0, 0, auctionId));
+    }
+
+    public Result buyListing(Long userId, Long auctionId) {
+        return submit(EngineCommand.request(EngineCommand.Kind.AUCTION_BUY, userId, 0, 0, 0, auctionId));
+    }
+
+    // For paths that rewrite NFT, auction or edition rows themselves; takes effect after their commit
+    public void forgetNfts(Collection<Long> nftIds) {
+        if (enabled && !nftIds.isEmpty()) {
+            List<Long> ids = List.copyOf(nftIds);
+            AfterCommit.run(() -> offer(EngineCommand.notice(EngineCommand.Kind.FORGET_NFTS, 0, 0, 0, ids)));
+        }
+    }
+
+    // Reserves the coins a Postgres transaction is about to debit from a user; must be called inside
+    // that transaction, and the hold is released once it completes. Always granted when the engine is off.
+    public boolean holdUntilCompletion(Long userId, long amount) {
+        if (!enabled) {
+            return true;
+        }
+        if (submit(EngineCommand.request(EngineCommand.Kind.HOLD, userId, 0, 0, amount, 0)).outcome() != Outcome.OK) {
+            return false;
+        }
+        // After the ledger's afterCommit notices, so the debit reaches the balance before the hold goes
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                offer(EngineCommand.notice(EngineCommand.Kind.RELEASE, userId, amount, 0, null));
+            }
+        });
+        return true;
+    }
+
+    public void forgetEdition(Long editionId) {
+        if (enabled) {
+            AfterCommit.run(() -> offer(EngineCommand.notice(EngineCommand.Kind.FORGET_EDITION, 0, 0, editionId, null)));
+        }
+    }
+
+    // A timed-out command may still be applied later; the caller only stops waiting for it
+    private Result submit(EngineCommand command) {
+        if (!running) {
+            throw new IllegalStateException("Economy engine is not running");
+        }
+        ring.publish(command);
+        try {
+            return command.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the economy engine");
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Economy engine did not answer in " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void offer(EngineCommand notice) {
+        if (running) {
+            ring.publish(notice);
+        }
+    }
+
+    private void writerLoop() {
+        List<EngineCommand> batch = new ArrayList<>(batchSize);
+        List<EngineCommand> answered = new ArrayList<>(batchSize);
+        List<Result> results = new ArrayList<>(batchSize);
+        List<EngineState.Applied> applied = new ArrayList<>(batchSize);
+
+        while (running) {
+            batch.clear();
+            if (ring.drain(batch, batchSize, IDLE_PARK_NANOS) == 0) {
+                continue;
+            }
+            answered.clear();
+            results.clear();
+            applied.clear();
+            long at = System.currentTimeMillis();
+
+            Exception failure = null;
+            for (EngineCommand command : batch) {
+                try {
+                    switch (command.kind()) {
+                        case EXTERNAL -> state.external(command.userId(), command.amount(), command.refId());
+                        case FORGET_NFTS -> state.forgetNfts(command.ids(), flusher.flushedSequence());
+                        case FORGET_EDITION -> state.forgetEdition(command.refId(), flusher.flushedSequence());
+                        case RELEASE -> state.release(command.userId(), command.amount());
+                        case HOLD -> {
+                            if (failure != null) {
+                                command.result().completeExceptionally(failure);
+                                continue;
+                            }
+                            // Answered with the batch: the balance it was checked against may include effects not yet on disk
+                            Outcome held = state.hold(command.userId(), command.amount());
+                            answered.add(command);
+                            results.add(Result.of(held));
+                        }
+                        default -> {
+                            if (failure != null) {
+                                command.result().completeExceptionally(failure);
+                                continue;
+                            }
+                            EngineState.Decision decision = state.decide(command, lastSequence + 1, at);
+                            counter(command.kind(), decision.outcome()).increment();
+                            if (decision.effect() == null) {
+                                command.result().complete(Result.of(decision.outcome()));
+                                continue;
+                            }
+                            // Journaled before it is applied: a failed append leaves the state untouched
+                            journal.append(decision.effect());
+                            lastSequence = decision.effect().sequence();
+                            EngineState.Applied after;
+                            try {
+                                after = state.apply(decision.effect());
+                            } catch (RuntimeException e) {
+                                // On disk but not in memory: only a restart, replaying the journal, brings them back in line
+                                failure = e;
+                                command.result().completeExceptionally(e);
+                                continue;
+                            }
+                            applied.add(after);
+                            answered.add(command);
+                            results.add(new Result(Outcome.OK, after.userBalance(), decision.effect().amount(), decision.effect().nftId()));
+                        }
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                    command.result().completeExceptionally(e);
+                } catch (RuntimeException e) {
+                    // A failed load (Postgres unavailable) refuses this command only; nothing was applied
+                    if (command.result() != null) {
+                        command.result().completeExceptionally(e);
+                    } else {
+                        log.warn("Engine notice {} failed: {}", command.kind(), e.getMessage());
+                    }
+                }
+            }
+
+            // Answers go out only once the batch is on disk
+            journal.force();
+            flusher.submit(applied);
+            for (int i = 0; i < answered.size(); i++) {
+                answered.get(i).result().complete(results.get(i));
+            }
+            if (failure != null) {
+                log.error("Economy engine failed, no further commands are accepted: {}", failure.getMessage());
+                running = false;
+                break;
+            }
+
+            if (state.size() > maxCached) {
+                state.prune(flusher.flushedSequence());
+            }
+        }
+
+        // Whatever is still queued will never be decided
+        batch.clear();
+        while (ring.drain(batch, Integer.MAX_VALUE, 0) > 0) {
+            for (EngineCommand command : batch) {
+                if (command.result() != null) {
+                    command.result().completeExceptionally(new IllegalStateException("Economy engine stopped"));
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void release(long flushedSequence) {
+        try {
+            journal.release(flushedSequence);
+        } catch (IOException e) {
+            log.warn("Could not delete flushed journal segments: {}", e.getMessage());
+        }
+    }
+
+    private Counter counter(EngineCommand.Kind kind, Outcome outcome) {
+        return Counter.builder("economy.engine.commands")
+                .tag("command", kind.name().toLowerCase())
+                .tag("outcome", outcome.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        flusher.stop();
+        journal.close();
+    }
+}
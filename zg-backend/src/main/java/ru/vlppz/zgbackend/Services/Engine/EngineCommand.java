@@ -0,0 +1,43 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+// A request waiting in the ring for the writer thread. Ids the command creates (minted copy, new
+// auction) are drawn from the Postgres sequences by the caller, so the writer never waits on them.
+// result is null for the fire-and-forget kinds.
+record EngineCommand(Kind kind,
+                     long userId,
+                     long counterpartyId,
+                     long nftId,
+                     long amount,
+                     long refId,
+                     Collection<Long> ids,
+                     CompletableFuture<EconomyEngine.Result> result) {
+    enum Kind {
+        REWARD,
+        BUY,
+        BUY_EDITION,
+        SELL,
+        TRANSFER,
+        LIST,
+        DELIST,
+        AUCTION_BUY,
+        // A balance change committed by a path outside the engine (code, referral, refund, admin)
+        EXTERNAL,
+        // Rows changed outside the engine: drop the cached copies so they are reloaded
+        FORGET_NFTS,
+        FORGET_EDITION,
+        // Coins reserved for a debit committed outside the engine (timed auction settlement), and their release
+        HOLD,
+        RELEASE
+    }
+
+    static EngineCommand request(Kind kind, long userId, long counterpartyId, long nftId, long amount, long refId) {
+        return new EngineCommand(kind, userId, counterpartyId, nftId, amount, refId, null, new CompletableFuture<>());
+    }
+
+    static EngineCommand notice(Kind kind, long userId, long amount, long refId, Collection<Long> ids) {
+        return new EngineCommand(kind, userId, 0, 0, amount, refId, ids, null);
+    }
+}
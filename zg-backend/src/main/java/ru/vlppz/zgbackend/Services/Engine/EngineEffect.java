@@ -0,0 +1,71 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+// One applied economy command as it is journaled: what it did rather than what was asked, so replay
+// needs no validation and always lands on the same state. Fields that do not apply to the type are 0.
+//   REWARD       userId, refId = task, amount = reward
+//   BUY          userId, nftId, amount = price, valuation
+//   BUY_EDITION  userId, nftId = minted copy, refId = edition, amount = price, valuation
+//   SELL         userId, nftId, amount = payout, valuation
+//   TRANSFER     userId, counterpartyId = receiver, nftId, amount = fee, valuation
+//   LIST         userId, nftId, refId = auction, amount = price
+//   DELIST       userId, nftId, refId = auction
+//   AUCTION_BUY  userId = buyer, counterpartyId = seller, nftId, refId = auction, amount = price, valuation = seller's
+record EngineEffect(long sequence,
+                    Type type,
+                    long userId,
+                    long counterpartyId,
+                    long nftId,
+                    long amount,
+                    long refId,
+                    long valuation,
+                    long at) {
+    // sequence, type, crc, then seven longs
+    static final int BYTES = 72;
+    private static final int CRC_OFFSET = 12;
+
+    enum Type {
+        REWARD,
+        BUY,
+        BUY_EDITION,
+        SELL,
+        TRANSFER,
+        LIST,
+        DELIST,
+        AUCTION_BUY
+    }
+
+    void writeTo(ByteBuffer buffer, byte[] scratch) {
+        ByteBuffer record = ByteBuffer.wrap(scratch);
+        record.putLong(sequence).putInt(type.ordinal()).putInt(0)
+                .putLong(userId).putLong(counterpartyId).putLong(nftId)
+                .putLong(amount).putLong(refId).putLong(valuation).putLong(at);
+        record.putInt(CRC_OFFSET, checksum(scratch));
+        buffer.put(scratch, 0, BYTES);
+    }
+
+    // Null at the end of the journal: an untouched (zero) slot or a record torn by a crash mid-write
+    static EngineEffect readFrom(ByteBuffer buffer, byte[] scratch) {
+        buffer.get(scratch, 0, BYTES);
+        ByteBuffer record = ByteBuffer.wrap(scratch);
+        long sequence = record.getLong(0);
+        int type = record.getInt(8);
+        int crc = record.getInt(CRC_OFFSET);
+        record.putInt(CRC_OFFSET, 0);
+        if (sequence <= 0 || type < 0 || type >= Type.values().length || crc != checksum(scratch)) {
+            return null;
+        }
+        record.position(16);
+        return new EngineEffect(sequence, Type.values()[type],
+                record.getLong(), record.getLong(), record.getLong(),
+                record.getLong(), record.getLong(), record.getLong(), record.getLong());
+    }
+
+    private static int checksum(byte[] scratch) {
+        CRC32C crc = new CRC32C();
+        crc.update(scratch, 0, BYTES);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,331 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Auction.AuctionBidRepository;
+import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+import ru.vlppz.zgbackend.Services.Shop.CatalogCache;
+import ru.vlppz.zgbackend.Services.Trade.TradeRecorder;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+// Writes the economy engine's applied effects behind to Postgres. Whatever has queued up is written
+// in one transaction: balances as one delta per user, NFTs and auctions as their final state, plus
+// the ledger entries, trades, completions and net worth the request paths would have written, and
+// the engine checkpoint. A failed batch is retried as a whole, in order, until it goes through.
+@Service
+public class EngineFlusher {
+    private static final Logger log = LoggerFactory.getLogger(EngineFlusher.class);
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+
+    private static final String MINT_SQL =
+            "INSERT INTO nfts (id, name, description, price, gradient_color1, gradient_color2, imageurl, owner_id, edition_id) " +
+            "SELECT ?, e.name, e.description, e.price, e.gradient_color1, e.gradient_color2, e.imageurl, ?, e.id " +
+            "FROM nft_editions e WHERE e.id = ? ON CONFLICT (id) DO NOTHING";
+    private static final String TAKE_STOCK_SQL =
+            "UPDATE nft_editions SET remaining = GREATEST(remaining - ?, 0) WHERE id = ?";
+    // Skips listings of NFTs deleted meanwhile (admin removal), which would otherwise fail the whole batch forever
+    private static final String INSERT_AUCTION_SQL =
+            "INSERT INTO auctions (id, nft_id, seller_id, price, created_at, active) " +
+            "SELECT ?, ?, ?, ?, ?, true WHERE EXISTS (SELECT 1 FROM nfts WHERE id = ?) ON CONFLICT (id) DO NOTHING";
+    private static final String UPDATE_NFT_SQL =
+            "UPDATE nfts SET owner_id = ?, listed = ?, last_sale_price = ?, version = version + 1 WHERE id = ?";
+    private static final String CLOSE_AUCTION_SQL =
+            "UPDATE auctions SET active = false, version = version + 1 WHERE id = ? AND active";
+    private static final String ADD_BALANCE_SQL =
+            "UPDATE users SET balance = balance + ?, version = version + 1 WHERE id = ?";
+    private static final String INSERT_COMPLETION_SQL =
+            "INSERT INTO task_completions (task_id, user_id, completed_at) " +
+            "SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM tasks WHERE id = ?) AND EXISTS (SELECT 1 FROM users WHERE id = ?)";
+    private static final String CHECKPOINT_SQL =
+            "UPDATE engine_checkpoints SET last_sequence = ?, updated_at = now() WHERE id = 1 AND last_sequence < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRepository userRepository;
+    private final NFTRepository nftRepository;
+    private final AuctionRepository auctionRepository;
+    private final AuctionBidRepository auctionBidRepository;
+    private final CoinLedger coinLedger;
+    private final TradeRecorder tradeRecorder;
+    private final NetWorthService netWorthService;
+    private final LeaderboardIndex leaderboardIndex;
+    private final MarketEventBus marketEventBus;
+    private final CatalogCache catalogCache;
+
+    private final LinkedBlockingQueue<EngineState.Applied> pending = new LinkedBlockingQueue<>();
+    private final Thread flusher = new Thread(this::flusherLoop, "engine-flusher");
+    private volatile long flushedSequence;
+    private volatile boolean stopping;
+    private LongConsumer onFlushed;
+
+    @Value("${economy.engine.flush-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${economy.engine.flush-batch-size:5000}")
+    private int maxBatchSize;
+
+    public EngineFlusher(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         UserRepository userRepository,
+                         NFTRepository nftRepository,
+                         AuctionRepository auctionRepository,
+                         AuctionBidRepository auctionBidRepository,
+                         CoinLedger coinLedger,
+                         TradeRecorder tradeRecorder,
+                         NetWorthService netWorthService,
+                         LeaderboardIndex leaderboardIndex,
+                         MarketEventBus marketEventBus,
+                         CatalogCache catalogCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userRepository = userRepository;
+        this.nftRepository = nftRepository;
+        this.auctionRepository = auctionRepository;
+        this.auctionBidRepository = auctionBidRepository;
+        this.coinLedger = coinLedger;
+        this.tradeRecorder = tradeRecorder;
+        this.netWorthService = netWorthService;
+        this.leaderboardIndex = leaderboardIndex;
+        this.marketEventBus = marketEventBus;
+        this.catalogCache = catalogCache;
+        this.flusher.setDaemon(true);
+    }
+
+    void start(long checkpoint, LongConsumer onFlushed) {
+        this.flushedSequence = checkpoint;
+        this.onFlushed = onFlushed;
+        flusher.start();
+    }
+
+    void submit(List<EngineState.Applied> applied) {
+        pending.addAll(applied);
+    }
+
+    long flushedSequence() {
+        return flushedSequence;
+    }
+
+    int backlog() {
+        return pending.size();
+    }
+
+    // Writes out everything submitted so far and stops; called once the writer has stopped
+    void stop() {
+        stopping = true;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            log.warn("Engine flusher stopped with {} effects unwritten; they are replayed from the journal on start", pending.size());
+        }
+    }
+
+    private void flusherLoop() {
+        long backoffMs = flushIntervalMs;
+        while (true) {
+            List<EngineState.Applied> batch = new ArrayList<>();
+            try {
+                EngineState.Applied first = pending.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, maxBatchSize - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            while (true) {
+                try {
+                    write(batch);
+                    backoffMs = flushIntervalMs;
+                    break;
+                } catch (RuntimeException e) {
+                    log.warn("Engine flush of {} effects failed, retrying: {}", batch.size(), e.getMessage());
+                    if (stopping) {
+                        return;
+                    }
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    backoffMs = Math.min(MAX_RETRY_BACKOFF_MS, backoffMs * 2);
+                }
+            }
+        }
+    }
+
+    private void write(List<EngineState.Applied> batch) {
+        List<Object[]> mints = new ArrayList<>();
+        Map<Long, Long> stockTaken = new TreeMap<>();
+        List<Object[]> auctionInserts = new ArrayList<>();
+        Map<Long, EngineState.Applied> nftStates = new LinkedHashMap<>();
+        Set<Long> closedAuctions = new TreeSet<>();
+        Set<Long> movedNfts = new LinkedHashSet<>();
+        Set<Long> soldNfts = new LinkedHashSet<>();
+        Map<Long, Long> balanceDeltas = new TreeMap<>();
+        Map<Long, Long> balances = new HashMap<>();
+        Map<Long, Long> nftValueDeltas = new TreeMap<>();
+        List<Object[]> completions = new ArrayList<>();
+        List<Runnable> inTransaction = new ArrayList<>();
+
+        for (EngineState.Applied applied : batch) {
+            EngineEffect effect = applied.effect();
+            Long userId = effect.userId();
+            Long counterpartyId = effect.counterpartyId();
+            Long nftId = effect.nftId();
+            Long refId = effect.refId();
+            long amount = effect.amount();
+            LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(effect.at()), ZoneId.systemDefault());
+            balances.put(userId, applied.userBalance());
+
+            switch (effect.type()) {
+                case REWARD -> {
+                    balanceDeltas.merge(userId, amount, Long::sum);
+                    completions.add(new Object[]{refId, userId, at, refId, userId});
+                    inTransaction.add(() -> coinLedger.recordApplied(userId, amount, LedgerEntry.Reason.TASK_REWARD, refId, at));
+                }
+                case BUY, BUY_EDITION -> {
+                    if (effect.type() == EngineEffect.Type.BUY_EDITION) {
+                        mints.add(new Object[]{nftId, userId, refId});
+                        stockTaken.merge(refId, 1L, Long::sum);
+                    }
+                    balanceDeltas.merge(userId, -amount, Long::sum);
+                    nftStates.put(nftId, applied);
+                    nftValueDeltas.merge(userId, effect.valuation(), Long::sum);
+                    inTransaction.add(() -> {
+                        coinLedger.recordApplied(userId, -amount, LedgerEntry.Reason.SHOP_PURCHASE, nftId, at);
+                        marketEventBus.shopItemSold(nftId, applied.editionId(), applied.nftName(), amount);
+                    });
+                }
+                case SELL -> {
+                    balanceDeltas.merge(userId, amount, Long::sum);
+                    soldNfts.add(nftId);
+                    nftValueDeltas.merge(userId, -effect.valuation(), Long::sum);
+                    inTransaction.add(() -> coinLedger.recordApplied(userId, amount, LedgerEntry.Reason.NFT_SELL, nftId, at));
+                }
+                case TRANSFER -> {
+                    balanceDeltas.merge(userId, -amount, Long::sum);
+                    nftStates.put(nftId, applied);
+                    movedNfts.add(nftId);
+                    nftValueDeltas.merge(userId, -effect.valuation(), Long::sum);
+                    nftValueDeltas.merge(counterpartyId, effect.valuation(), Long::sum);
+                    inTransaction.add(() -> coinLedger.recordApplied(userId, -amount, LedgerEntry.Reason.TRANSFER_FEE, nftId, at));
+                }
+                case LIST -> {
+                    auctionInserts.add(new Object[]{refId, nftId, userId, amount, at, nftId});
+                    nftStates.put(nftId, applied);
+                    inTransaction.add(() -> marketEventBus.listingCreated(refId, nftId, applied.nftName(), amount, userId));
+                }
+                case DELIST -> {
+                    closedAuctions.add(refId);
+                    nftStates.put(nftId, applied);
+                    inTransaction.add(() -> marketEventBus.listingCancelled(refId, nftId));
+                }
+                case AUCTION_BUY -> {
+                    balanceDeltas.merge(userId, -amount, Long::sum);
+                    balanceDeltas.merge(counterpartyId, amount, Long::sum);
+                    balances.put(counterpartyId, applied.counterpartyBalance());
+                    closedAuctions.add(refId);
+                    nftStates.put(nftId, applied);
+                    movedNfts.add(nftId);
+                    // The seller gives up the NFT at its old value, the buyer holds it at the price paid
+                    nftValueDeltas.merge(counterpartyId, -effect.valuation(), Long::sum);
+                    nftValueDeltas.merge(userId, amount, Long::sum);
+                    inTransaction.add(() -> {
+                        coinLedger.recordApplied(userId, -amount, LedgerEntry.Reason.AUCTION_PURCHASE, refId, at);
+                        coinLedger.recordApplied(counterpartyId, amount, LedgerEntry.Reason.AUCTION_SALE, refId, at);
+                        tradeRecorder.record(refId, nftId, applied.nftName(), counterpartyId, userId, amount, at);
+                        marketEventBus.listingSold(refId, nftId, applied.nftName(), amount, counterpartyId);
+                    });
+                }
+            }
+        }
+        nftStates.keySet().removeAll(soldNfts);
+
+        List<Object[]> nftRows = new ArrayList<>(nftStates.size());
+        for (Map.Entry<Long, EngineState.Applied> entry : nftStates.entrySet()) {
+            EngineState.Applied state = entry.getValue();
+            nftRows.add(new Object[]{state.ownerId(), state.listed(), state.lastSalePrice(), entry.getKey()});
+        }
+        List<Object[]> stockRows = new ArrayList<>(stockTaken.size());
+        stockTaken.forEach((editionId, taken) -> stockRows.add(new Object[]{taken, editionId}));
+        List<Object[]> closeRows = new ArrayList<>(closedAuctions.size());
+        closedAuctions.forEach(auctionId -> closeRows.add(new Object[]{auctionId}));
+        List<Object[]> balanceRows = new ArrayList<>(balanceDeltas.size());
+        balanceDeltas.forEach((userId, delta) -> balanceRows.add(new Object[]{delta, userId}));
+        long lastSequence = batch.get(batch.size() - 1).effect().sequence();
+        boolean shopChanged = !mints.isEmpty() || batch.stream().anyMatch(applied -> applied.effect().type() == EngineEffect.Type.BUY);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Rows the later statements refer to come first: minted copies, then the listings of them
+            jdbcTemplate.batchUpdate(MINT_SQL, mints);
+            jdbcTemplate.batchUpdate(TAKE_STOCK_SQL, stockRows);
+            jdbcTemplate.batchUpdate(INSERT_AUCTION_SQL, auctionInserts);
+            jdbcTemplate.batchUpdate(UPDATE_NFT_SQL, nftRows);
+            jdbcTemplate.batchUpdate(CLOSE_AUCTION_SQL, closeRows);
+
+            Set<Long> unpinned = new LinkedHashSet<>(movedNfts);
+            unpinned.addAll(soldNfts);
+            if (!unpinned.isEmpty()) {
+                List<Long> unpinnedUsers = userRepository.unpinNfts(unpinned);
+                AfterCommit.run(() -> leaderboardIndex.clearPinned(unpinnedUsers));
+            }
+            if (!soldNfts.isEmpty()) {
+                auctionBidRepository.deleteByNftIds(soldNfts);
+                auctionRepository.deleteByNftIds(soldNfts);
+                nftRepository.deleteByIds(soldNfts);
+            }
+
+            // Sorted by user id, so the row locks of one batch are always taken in the same order
+            jdbcTemplate.batchUpdate(ADD_BALANCE_SQL, balanceRows);
+            jdbcTemplate.batchUpdate(INSERT_COMPLETION_SQL, completions);
+            inTransaction.forEach(Runnable::run);
+            nftValueDeltas.forEach(netWorthService::adjust);
+            if (shopChanged) {
+                catalogCache.invalidate();
+            }
+            AfterCommit.run(() -> balances.forEach(leaderboardIndex::updateBalance));
+            jdbcTemplate.update(CHECKPOINT_SQL, lastSequence, lastSequence);
+        });
+
+        flushedSequence = lastSequence;
+        onFlushed.accept(lastSequence);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Write-ahead journal of applied effects, kept in memory-mapped segment files named after their first
+// sequence. Appending is a copy into the mapping; force() makes everything appended so far durable
+// with one msync of the dirty range. Records are fixed-size and checksummed, so the end of a segment
+// is its first slot that is empty, torn or out of sequence. Segments that Postgres has fully caught up
+// with are deleted by release(). Appends come from the writer thread only.
+final class EngineJournal implements Closeable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final byte[] scratch = new byte[EngineEffect.BYTES];
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int forcedPosition;
+    private volatile long segmentFirst;
+    private long lastSequence;
+
+    EngineJournal(Path dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentRecords = (int) Math.max(1, Math.min(Integer.MAX_VALUE / EngineEffect.BYTES, segmentBytes / EngineEffect.BYTES));
+        Files.createDirectories(dir);
+    }
+
+    // Hands every intact record past afterSequence to replay, in order, and positions the journal after
+    // the last intact one. Returns the sequence of that record, 0 for an empty journal. A segment starts
+    // at the sequence in its name, which may leave a gap behind the previous one (see append), and is
+    // contiguous from there.
+    long open(long afterSequence, Consumer<EngineEffect> replay) throws IOException {
+        List<Long> firsts = segments();
+        for (int i = 0; i < firsts.size(); i++) {
+            boolean last = i == firsts.size() - 1;
+            long first = firsts.get(i);
+            if (first <= lastSequence) {
+                throw new IOException("Journal segment " + first + " overlaps sequence " + lastSequence);
+            }
+            FileChannel segment = FileChannel.open(segmentPath(first), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer mapped = segment.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * EngineEffect.BYTES);
+            long expected = first;
+            while (mapped.remaining() >= EngineEffect.BYTES) {
+                int position = mapped.position();
+                EngineEffect effect = EngineEffect.readFrom(mapped, scratch);
+                if (effect == null || effect.sequence() != expected) {
+                    mapped.position(position);
+                    break;
+                }
+                expected++;
+                lastSequence = effect.sequence();
+                if (effect.sequence() > afterSequence) {
+                    replay.accept(effect);
+                }
+            }
+            if (!last) {
+                segment.close();
+                continue;
+            }
+            if (mapped.position() == 0) {
+                // Rolled but never written: whatever comes next may not start at this name
+                segment.close();
+                Files.delete(segmentPath(first));
+                break;
+            }
+            // Keep appending to the last segment, over its torn tail if there is one
+            channel = segment;
+            buffer = mapped;
+            forcedPosition = mapped.position();
+            segmentFirst = first;
+        }
+        return lastSequence;
+    }
+
+    void append(EngineEffect effect) throws IOException {
+        // A gap (the journal restarted behind the checkpoint) starts a new segment, so every segment stays contiguous
+        if (buffer == null || buffer.remaining() < EngineEffect.BYTES || effect.sequence() != lastSequence + 1) {
+            roll(effect.sequence());
+        }
+        effect.writeTo(buffer, scratch);
+        lastSequence = effect.sequence();
+    }
+
+    void force() {
+        if (buffer == null || buffer.position() == forcedPosition) {
+            return;
+        }
+        buffer.force(forcedPosition, buffer.position() - forcedPosition);
+        forcedPosition = buffer.position();
+    }
+
+    // Deletes the segments whose records are all at or below upToSequence; the open segment stays
+    void release(long upToSequence) throws IOException {
+        List<Long> firsts = segments();
+        long current = segmentFirst;
+        for (int i = 0; i + 1 < firsts.size(); i++) {
+            long nextFirst = firsts.get(i + 1);
+            if (firsts.get(i) >= current || nextFirst - 1 > upToSequence) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(firsts.get(i)));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    private void roll(long firstSequence) throws IOException {
+        close();
+        channel = FileChannel.open(segmentPath(firstSequence),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * EngineEffect.BYTES);
+        forcedPosition = 0;
+        segmentFirst = firstSequence;
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return dir.resolve(String.format("journal-%020d.log", firstSequence));
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> firsts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    firsts.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        firsts.sort(null);
+        return firsts;
+    }
+}
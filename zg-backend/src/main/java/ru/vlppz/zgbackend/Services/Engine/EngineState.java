@@ -0,0 +1,541 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine.Outcome;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// The economy as the engine sees it: balances and finished tasks per user, owner and listing flag per
+// NFT, edition stock and fixed-price listings. An entry is loaded from Postgres the first time a
+// command touches it and is the engine's from then on; it may only be dropped again once the flusher
+// has written every effect that touched it. Only the writer thread uses this class.
+final class EngineState {
+    private static final String ACCOUNT_SQL =
+            "SELECT u.balance, COALESCE((SELECT MAX(l.id) FROM coin_ledger l WHERE l.user_id = u.id), 0) FROM users u WHERE u.id = ?";
+    private static final String COMPLETED_TASKS_SQL =
+            "SELECT task_id FROM task_completions WHERE user_id = ?";
+    private static final String HOLDING_SQL =
+            "SELECT name, price, edition_id, owner_id, listed, last_sale_price FROM nfts WHERE id = ?";
+    private static final String STOCK_SQL =
+            "SELECT name, price, remaining FROM nft_editions WHERE id = ?";
+    private static final String LISTING_SQL =
+            "SELECT nft_id, seller_id, price, active, ends_at IS NOT NULL FROM auctions WHERE id = ?";
+
+    static final class Account {
+        long balance;
+        // Newest ledger entry already in the loaded balance; older external changes are not applied again
+        final long ledgerMark;
+        final Set<Long> completedTasks;
+        // Reserved by settlements running on Postgres until their transaction completes
+        long held;
+        long touched;
+
+        Account(long balance, long ledgerMark, Set<Long> completedTasks) {
+            this.balance = balance;
+            this.ledgerMark = ledgerMark;
+            this.completedTasks = completedTasks;
+        }
+
+        long available() {
+            return balance - held;
+        }
+    }
+
+    static final class Holding {
+        final long id;
+        final String name;
+        final long price;
+        final Long editionId;
+        Long ownerId;
+        boolean listed;
+        Long lastSalePrice;
+        // Sold back to the system; kept until flushed so a reload cannot resurrect the row
+        boolean deleted;
+        long touched;
+
+        Holding(long id, String name, long price, Long editionId, Long ownerId, boolean listed, Long lastSalePrice) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.editionId = editionId;
+            this.ownerId = ownerId;
+            this.listed = listed;
+            this.lastSalePrice = lastSalePrice;
+        }
+
+        long valuation() {
+            return lastSalePrice != null ? lastSalePrice : price;
+        }
+    }
+
+    static final class Stock {
+        final String name;
+        final long price;
+        long remaining;
+        long touched;
+
+        Stock(String name, long price, long remaining) {
+            this.name = name;
+            this.price = price;
+            this.remaining = remaining;
+        }
+    }
+
+    static final class Listing {
+        final long nftId;
+        final long sellerId;
+        final long price;
+        final boolean timed;
+        boolean active;
+        long touched;
+
+        Listing(long nftId, long sellerId, long price, boolean active, boolean timed) {
+            this.nftId = nftId;
+            this.sellerId = sellerId;
+            this.price = price;
+            this.active = active;
+            this.timed = timed;
+        }
+    }
+
+    // Either an effect to journal and apply, or why the command was refused
+    record Decision(Outcome outcome, EngineEffect effect) {
+        static Decision refused(Outcome outcome) {
+            return new Decision(outcome, null);
+        }
+    }
+
+    // State after an effect, for the flusher and the caller's reply
+    record Applied(EngineEffect effect,
+                   String nftName,
+                   Long editionId,
+                   Long ownerId,
+                   boolean listed,
+                   Long lastSalePrice,
+                   long userBalance,
+                   long counterpartyBalance) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Account> accounts = new HashMap<>();
+    private final Map<Long, Holding> holdings = new HashMap<>();
+    private final Map<Long, Stock> stocks = new HashMap<>();
+    private final Map<Long, Listing> listings = new HashMap<>();
+
+    EngineState(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    Decision decide(EngineCommand command, long sequence, long at) {
+        long userId = command.userId();
+        switch (command.kind()) {
+            case REWARD -> {
+                Account account = account(userId);
+                if (account == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                if (account.completedTasks.contains(command.refId())) {
+                    return Decision.refused(Outcome.ALREADY_DONE);
+                }
+                return effect(sequence, EngineEffect.Type.REWARD, userId, 0, 0, command.amount(), command.refId(), 0, at);
+            }
+            case BUY -> {
+                Holding holding = holding(command.nftId());
+                if (holding == null) {
+                    return Decision.refused(Outcome.NFT_NOT_FOUND);
+                }
+                if (holding.ownerId != null) {
+                    return Decision.refused(Outcome.ALREADY_OWNED);
+                }
+                Account account = account(userId);
+                if (account == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                if (account.available() < holding.price) {
+                    return Decision.refused(Outcome.INSUFFICIENT_FUNDS);
+                }
+                return effect(sequence, EngineEffect.Type.BUY, userId, 0, holding.id, holding.price, 0, holding.valuation(), at);
+            }
+            case BUY_EDITION -> {
+                Stock stock = stock(command.refId());
+                if (stock == null) {
+                    return Decision.refused(Outcome.NFT_NOT_FOUND);
+                }
+                if (stock.remaining <= 0) {
+                    return Decision.refused(Outcome.SOLD_OUT);
+                }
+                Account account = account(userId);
+                if (account == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                if (account.available() < stock.price) {
+                    return Decision.refused(Outcome.INSUFFICIENT_FUNDS);
+                }
+                return effect(sequence, EngineEffect.Type.BUY_EDITION, userId, 0, command.nftId(), stock.price, command.refId(), stock.price, at);
+            }
+            case SELL -> {
+                Account account = account(userId);
+                if (account == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                Holding holding = holding(command.nftId());
+                if (holding == null) {
+                    return Decision.refused(Outcome.NFT_NOT_FOUND);
+                }
+                if (!Long.valueOf(userId).equals(holding.ownerId)) {
+                    return Decision.refused(Outcome.NOT_OWNER);
+                }
+                if (holding.listed) {
+                    return Decision.refused(Outcome.LISTED);
+                }
+                // Sold back for 75% of the original price
+                long payout = (long) (holding.price * 0.75);
+                return effect(sequence, EngineEffect.Type.SELL, userId, 0, holding.id, payout, 0, holding.valuation(), at);
+            }
+            case TRANSFER -> {
+                Account sender = account(userId);
+                if (sender == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                if (account(command.counterpartyId()) == null) {
+                    return Decision.refused(Outcome.RECEIVER_NOT_FOUND);
+                }
+                Holding holding = holding(command.nftId());
+                if (holding == null) {
+                    return Decision.refused(Outcome.NFT_NOT_FOUND);
+                }
+                if (!Long.valueOf(userId).equals(holding.ownerId)) {
+                    return Decision.refused(Outcome.NOT_OWNER);
+                }
+                if (sender.available() < command.amount()) {
+                    return Decision.refused(Outcome.INSUFFICIENT_FUNDS);
+                }
+                if (userId == command.counterpartyId()) {
+                    return Decision.refused(Outcome.SELF_TRANSFER);
+                }
+                if (holding.listed) {
+                    return Decision.refused(Outcome.LISTED);
+                }
+                return effect(sequence, EngineEffect.Type.TRANSFER, userId, command.counterpartyId(), holding.id,
+                        command.amount(), 0, holding.valuation(), at);
+            }
+            case LIST -> {
+                if (account(userId) == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                Holding holding = holding(command.nftId());
+                if (holding == null) {
+                    return Decision.refused(Outcome.NFT_NOT_FOUND);
+                }
+                if (!Long.valueOf(userId).equals(holding.ownerId)) {
+                    return Decision.refused(Outcome.NOT_OWNER);
+                }
+                if (holding.listed) {
+                    return Decision.refused(Outcome.LISTED);
+                }
+                return effect(sequence, EngineEffect.Type.LIST, userId, 0, holding.id, command.amount(), command.refId(), 0, at);
+            }
+            case DELIST -> {
+                if (account(userId) == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                Listing listing = listing(command.refId());
+                if (listing == null) {
+                    return Decision.refused(Outcome.AUCTION_NOT_FOUND);
+                }
+                if (listing.sellerId != userId) {
+                    return Decision.refused(Outcome.NOT_OWNER);
+                }
+                if (!listing.active) {
+                    return Decision.refused(Outcome.NOT_ACTIVE);
+                }
+                if (listing.timed) {
+                    return Decision.refused(Outcome.TIMED);
+                }
+                // Loaded here so apply() finds it cached and cannot fail on a query
+                holding(listing.nftId);
+                return effect(sequence, EngineEffect.Type.DELIST, userId, 0, listing.nftId, listing.price, command.refId(), 0, at);
+            }
+            case AUCTION_BUY -> {
+                Account buyer = account(userId);
+                if (buyer == null) {
+                    return Decision.refused(Outcome.USER_NOT_FOUND);
+                }
+                Listing listing = listing(command.refId());
+                if (listing == null) {
+                    return Decision.refused(Outcome.AUCTION_NOT_FOUND);
+                }
+                if (!listing.active) {
+                    return Decision.refused(Outcome.NOT_ACTIVE);
+                }
+                if (listing.timed) {
+                    return Decision.refused(Outcome.TIMED);
+                }
+                if (listing.sellerId == userId) {
+                    return Decision.refused(Outcome.OWN_AUCTION);
+                }
+                if (buyer.available() < listing.price) {
+                    return Decision.refused(Outcome.INSUFFICIENT_FUNDS);
+                }
+                Holding holding = holding(listing.nftId);
+                if (holding == null || account(listing.sellerId) == null) {
+                    return Decision.refused(Outcome.NOT_ACTIVE);
+                }
+                return effect(sequence, EngineEffect.Type.AUCTION_BUY, userId, listing.sellerId, holding.id,
+                        listing.price, command.refId(), holding.valuation(), at);
+            }
+            default -> throw new IllegalArgumentException("Not a journaled command: " + command.kind());
+        }
+    }
+
+    // Also the replay path, so it must not depend on anything but the effect and the loaded state. For a
+    // decided effect, everything it touches was loaded by decide(), so nothing here goes to Postgres.
+    Applied apply(EngineEffect effect) {
+        long sequence = effect.sequence();
+        Account user = touch(account(effect.userId()), sequence);
+        Account counterparty = effect.counterpartyId() != 0 ? touch(account(effect.counterpartyId()), sequence) : null;
+        Holding holding = null;
+        switch (effect.type()) {
+            case REWARD -> {
+                if (user != null) {
+                    user.balance += effect.amount();
+                    user.completedTasks.add(effect.refId());
+                }
+            }
+            case BUY -> {
+                debit(user, effect.amount());
+                holding = touch(holding(effect.nftId()), sequence);
+                if (holding != null) {
+                    holding.ownerId = effect.userId();
+                }
+            }
+            case BUY_EDITION -> {
+                debit(user, effect.amount());
+                Stock stock = stock(effect.refId());
+                if (stock != null) {
+                    stock.remaining--;
+                    stock.touched = sequence;
+                }
+                holding = new Holding(effect.nftId(), stock != null ? stock.name : null, effect.amount(), effect.refId(),
+                        effect.userId(), false, null);
+                holding.touched = sequence;
+                holdings.put(holding.id, holding);
+            }
+            case SELL -> {
+                credit(user, effect.amount());
+                holding = touch(holding(effect.nftId()), sequence);
+                if (holding != null) {
+                    holding.ownerId = null;
+                    holding.deleted = true;
+                }
+            }
+            case TRANSFER -> {
+                debit(user, effect.amount());
+                holding = touch(holding(effect.nftId()), sequence);
+                if (holding != null) {
+                    holding.ownerId = effect.counterpartyId();
+                }
+            }
+            case LIST -> {
+                holding = touch(holding(effect.nftId()), sequence);
+                if (holding != null) {
+                    holding.listed = true;
+                }
+                Listing listing = new Listing(effect.nftId(), effect.userId(), effect.amount(), true, false);
+                listing.touched = sequence;
+                listings.put(effect.refId(), listing);
+            }
+            case DELIST -> {
+                holding = touch(holding(effect.nftId()), sequence);
+                if (holding != null) {
+                    holding.listed = false;
+                }
+                closeListing(effect.refId(), sequence);
+            }
+            case AUCTION_BUY -> {
+                debit(user, effect.amount());
+                credit(counterparty, effect.amount());
+                holding = touch(holding(effect.nftId()), sequence);
+                if (holding != null) {
+                    holding.ownerId = effect.userId();
+                    holding.listed = false;
+                    holding.lastSalePrice = effect.amount();
+                }
+                closeListing(effect.refId(), sequence);
+            }
+        }
+        return new Applied(effect,
+                holding != null ? holding.name : null,
+                holding != null ? holding.editionId : null,
+                holding != null ? holding.ownerId : null,
+                holding != null && holding.listed,
+                holding != null ? holding.lastSalePrice : null,
+                user != null ? user.balance : 0,
+                counterparty != null ? counterparty.balance : 0);
+    }
+
+    // A balance change committed outside the engine. Users that are not loaded pick it up from their
+    // row when they are; entries at or below the mark are already part of the loaded balance.
+    void external(long userId, long amount, long ledgerEntryId) {
+        Account account = accounts.get(userId);
+        if (account != null && ledgerEntryId > account.ledgerMark) {
+            account.balance += amount;
+        }
+    }
+
+    // Reserves coins for a debit a Postgres transaction is about to commit, so engine commands cannot
+    // spend them meanwhile. The debit itself arrives through external() before the hold is released.
+    Outcome hold(long userId, long amount) {
+        Account account = account(userId);
+        if (account == null) {
+            return Outcome.USER_NOT_FOUND;
+        }
+        if (account.available() < amount) {
+            return Outcome.INSUFFICIENT_FUNDS;
+        }
+        account.held += amount;
+        return Outcome.OK;
+    }
+
+    void release(long userId, long amount) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            account.held = Math.max(0, account.held - amount);
+        }
+    }
+
+    // Rows rewritten outside the engine; entries with effects the flusher has not written yet are kept,
+    // since dropping them would lose those effects from the engine's view
+    void forgetNfts(Collection<Long> nftIds, long flushedSequence) {
+        for (Long nftId : nftIds) {
+            Holding holding = holdings.get(nftId);
+            if (holding != null && holding.touched <= flushedSequence) {
+                holdings.remove(nftId);
+            }
+        }
+        Set<Long> ids = new HashSet<>(nftIds);
+        listings.values().removeIf(listing -> ids.contains(listing.nftId) && listing.touched <= flushedSequence);
+    }
+
+    void forgetEdition(long editionId, long flushedSequence) {
+        Stock stock = stocks.get(editionId);
+        if (stock != null && stock.touched <= flushedSequence) {
+            stocks.remove(editionId);
+        }
+    }
+
+    // Drops everything Postgres already has; it is simply reloaded when touched again
+    void prune(long flushedSequence) {
+        // A held account stays: its balance must still take the pending external debit
+        accounts.values().removeIf(account -> account.held == 0 && account.touched <= flushedSequence);
+        holdings.values().removeIf(holding -> holding.touched <= flushedSequence);
+        stocks.values().removeIf(stock -> stock.touched <= flushedSequence);
+        listings.values().removeIf(listing -> listing.touched <= flushedSequence);
+    }
+
+    int size() {
+        return accounts.size() + holdings.size() + stocks.size() + listings.size();
+    }
+
+    private Decision effect(long sequence, EngineEffect.Type type, long userId, long counterpartyId, long nftId,
+                            long amount, long refId, long valuation, long at) {
+        return new Decision(Outcome.OK, new EngineEffect(sequence, type, userId, counterpartyId, nftId, amount, refId, valuation, at));
+    }
+
+    private void closeListing(long auctionId, long sequence) {
+        Listing listing = listing(auctionId);
+        if (listing != null) {
+            listing.active = false;
+            listing.touched = sequence;
+        }
+    }
+
+    private static void debit(Account account, long amount) {
+        if (account != null) {
+            account.balance -= amount;
+        }
+    }
+
+    private static void credit(Account account, long amount) {
+        if (account != null) {
+            account.balance += amount;
+        }
+    }
+
+    private static Account touch(Account account, long sequence) {
+        if (account != null) {
+            account.touched = sequence;
+        }
+        return account;
+    }
+
+    private static Holding touch(Holding holding, long sequence) {
+        if (holding != null) {
+            holding.touched = sequence;
+        }
+        return holding;
+    }
+
+    private Account account(long userId) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            return account;
+        }
+        account = jdbcTemplate.query(ACCOUNT_SQL, rs -> rs.next()
+                ? new Account(rs.getLong(1), rs.getLong(2), new HashSet<>())
+                : null, userId);
+        if (account == null) {
+            return null;
+        }
+        account.completedTasks.addAll(jdbcTemplate.queryForList(COMPLETED_TASKS_SQL, Long.class, userId));
+        accounts.put(userId, account);
+        return account;
+    }
+
+    // Null for unknown and for sold (deleted) NFTs
+    private Holding holding(long nftId) {
+        Holding holding = holdings.get(nftId);
+        if (holding == null) {
+            holding = jdbcTemplate.query(HOLDING_SQL, rs -> rs.next()
+                    ? new Holding(nftId, rs.getString(1), rs.getLong(2), rs.getObject(3, Long.class),
+                            rs.getObject(4, Long.class), rs.getBoolean(5), rs.getObject(6, Long.class))
+                    : null, nftId);
+            if (holding == null) {
+                return null;
+            }
+            holdings.put(nftId, holding);
+        }
+        return holding.deleted ? null : holding;
+    }
+
+    private Stock stock(long editionId) {
+        Stock stock = stocks.get(editionId);
+        if (stock != null) {
+            return stock;
+        }
+        stock = jdbcTemplate.query(STOCK_SQL, rs -> rs.next()
+                ? new Stock(rs.getString(1), rs.getLong(2), rs.getLong(3))
+                : null, editionId);
+        if (stock != null) {
+            stocks.put(editionId, stock);
+        }
+        return stock;
+    }
+
+    private Listing listing(long auctionId) {
+        Listing listing = listings.get(auctionId);
+        if (listing != null) {
+            return listing;
+        }
+        listing = jdbcTemplate.query(LISTING_SQL, rs -> rs.next()
+                ? new Listing(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBoolean(4), rs.getBoolean(5))
+                : null, auctionId);
+        if (listing != null) {
+            listings.put(auctionId, listing);
+        }
+        return listing;
+    }
+}
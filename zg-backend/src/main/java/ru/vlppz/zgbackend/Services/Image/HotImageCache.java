@@ -0,0 +1,52 @@
+package ru.vlppz.zgbackend.Services.Image;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Small LRU of upload bytes for the images every client asks for (thumbnails, popular cards).
+// Entries never go stale because upload names never get new content; they only leave on
+// eviction or when ImageStorage deletes the file.
+@Component
+public class HotImageCache {
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    @Value("${uploads.cache.max-entry-bytes:65536}")
+    private long maxEntryBytes;
+
+    @Value("${uploads.cache.max-total-bytes:16777216}")
+    private long maxTotalBytes;
+
+    public boolean accepts(long size) {
+        return size <= maxEntryBytes;
+    }
+
+    public synchronized byte[] get(String filename) {
+        return entries.get(filename);
+    }
+
+    public synchronized void put(String filename, byte[] data) {
+        if (!accepts(data.length)) {
+            return;
+        }
+        byte[] previous = entries.put(filename, data);
+        totalBytes += data.length - (previous != null ? previous.length : 0);
+
+        Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxTotalBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    public synchronized void evict(String filename) {
+        byte[] removed = entries.remove(filename);
+        if (removed != null) {
+            totalBytes -= removed.length;
+        }
+    }
+}
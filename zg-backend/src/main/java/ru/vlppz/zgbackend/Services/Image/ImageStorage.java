@@ -0,0 +1,278 @@
+package ru.vlppz.zgbackend.Services.Image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+// Uploaded NFT images. Files are named by the SHA-256 of their content, so re-uploading the same
+// picture for another edition stores nothing new and every name maps to exactly one content forever.
+// Thumbnail and card sized copies are rendered on a background worker after the upload returns.
+@Service
+public class ImageStorage implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ImageStorage.class);
+    private static final Set<String> EXTENSIONS = Set.copyOf(ImageVariants.ORIGINAL_EXTENSIONS);
+    private static final int SNIFF_BYTES = 12;
+    private static final long COPY_CHUNK_BYTES = 64 * 1024;
+
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] GIF87_MAGIC = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89_MAGIC = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF_MAGIC = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP_MAGIC = {'W', 'E', 'B', 'P'};
+
+    private final NFTRepository nftRepository;
+    private final NFTEditionRepository nftEditionRepository;
+    private final HotImageCache hotImageCache;
+    private final Path uploadsDir = Paths.get("uploads");
+    private final ExecutorService variantWorker = Executors.newSingleThreadExecutor();
+
+    @Value("${uploads.max-image-bytes:10485760}")
+    private long maxImageBytes;
+
+    public ImageStorage(NFTRepository nftRepository,
+                        NFTEditionRepository nftEditionRepository,
+                        HotImageCache hotImageCache) {
+        this.nftRepository = nftRepository;
+        this.nftEditionRepository = nftEditionRepository;
+        this.hotImageCache = hotImageCache;
+    }
+
+    // Renders variants for uploads that predate the pipeline or were interrupted by a restart
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillVariants() {
+        variantWorker.submit(() -> {
+            if (!Files.isDirectory(uploadsDir)) {
+                return;
+            }
+            List<Path> originals;
+            try (Stream<Path> files = Files.list(uploadsDir)) {
+                originals = files.filter(Files::isRegularFile)
+                        .filter(path -> isOriginal(path.getFileName().toString()))
+                        .toList();
+            } catch (IOException e) {
+                log.warn("Could not list uploads: {}", e.getMessage());
+                return;
+            }
+            originals.forEach(this::generateVariants);
+        });
+    }
+
+    // Streams the upload to a temp file while hashing it, then moves it under its hash.
+    // Memory use is one copy buffer per upload whatever the file size. Returns the public URL.
+    public String store(MultipartFile image) throws IOException {
+        if (image.getSize() > maxImageBytes) {
+            throw new IllegalArgumentException("Файл изображения слишком большой");
+        }
+
+        Files.createDirectories(uploadsDir);
+        Path temp = Files.createTempFile(uploadsDir, "upload", ".tmp");
+        try (InputStream raw = new BufferedInputStream(image.getInputStream())) {
+            // The format is decided by the file's own header, never by the client's file name
+            raw.mark(SNIFF_BYTES);
+            String extension = sniffFormat(raw.readNBytes(SNIFF_BYTES));
+            if (extension == null) {
+                throw new IllegalArgumentException("Неподдерживаемый формат изображения");
+            }
+            raw.reset();
+
+            MessageDigest digest = sha256();
+            try (ReadableByteChannel in = Channels.newChannel(new DigestInputStream(raw, digest));
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long copied;
+                while ((copied = out.transferFrom(in, position, COPY_CHUNK_BYTES)) > 0) {
+                    position += copied;
+                    if (position > maxImageBytes) {
+                        throw new IllegalArgumentException("Файл изображения слишком большой");
+                    }
+                }
+            }
+
+            String filename = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+            Path target = uploadsDir.resolve(filename);
+            if (!Files.exists(target)) {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            variantWorker.submit(() -> generateVariants(target));
+            return ImageVariants.URL_PREFIX + filename;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Removes the file and its variants once no NFT or edition points at it any more
+    public void deleteIfUnreferenced(String imageURL) {
+        if (imageURL == null || !imageURL.startsWith(ImageVariants.URL_PREFIX)
+                || nftRepository.existsByImageURL(imageURL) || nftEditionRepository.existsByImageURL(imageURL)) {
+            return;
+        }
+        List<String> filenames = new ArrayList<>();
+        filenames.add(imageURL.substring(ImageVariants.URL_PREFIX.length()));
+        for (String variantURL : ImageVariants.urlsFor(imageURL).values()) {
+            filenames.add(variantURL.substring(ImageVariants.URL_PREFIX.length()));
+        }
+        try {
+            for (String filename : filenames) {
+                // Along with any precompressed copies placed next to it
+                for (String name : List.of(filename, filename + ".br", filename + ".gz")) {
+                    Files.deleteIfExists(uploadsDir.resolve(name));
+                    hotImageCache.evict(name);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл изображения: {}", e.getMessage());
+        }
+    }
+
+    private void generateVariants(Path original) {
+        String filename = original.getFileName().toString();
+        String base = ImageVariants.baseName(filename);
+        String format = ImageVariants.formatFor(filename);
+        Path thumb = uploadsDir.resolve(base + "_thumb." + format);
+        Path card = uploadsDir.resolve(base + "_card." + format);
+        Path cardWebp = uploadsDir.resolve(base + "_card.webp");
+        if (Files.exists(thumb) && Files.exists(card) && (!ImageVariants.WEBP_SUPPORTED || Files.exists(cardWebp))) {
+            return;
+        }
+
+        try {
+            BufferedImage source = ImageIO.read(original.toFile());
+            if (source == null) {
+                log.debug("No image reader for {}, variants skipped", filename);
+                return;
+            }
+            write(resize(source, ImageVariants.THUMB_WIDTH, format), format, thumb);
+            BufferedImage cardImage = resize(source, ImageVariants.CARD_WIDTH, format);
+            write(cardImage, format, card);
+            if (ImageVariants.WEBP_SUPPORTED) {
+                write(cardImage, "webp", cardWebp);
+            }
+        } catch (Exception e) {
+            log.warn("Could not render variants for {}: {}", filename, e.getMessage());
+        }
+    }
+
+    // Halves the image until it is close to the target width, then does one last bilinear step;
+    // a single large bilinear step would skip most source pixels and alias badly
+    private static BufferedImage resize(BufferedImage source, int targetWidth, String format) {
+        int type = "jpg".equals(format) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            int nextWidth = width / 2 >= targetWidth ? width / 2 : Math.min(width, targetWidth);
+            int nextHeight = Math.max(1, (int) Math.round((double) height * nextWidth / width));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            width = nextWidth;
+            height = nextHeight;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Path temp = Files.createTempFile(uploadsDir, "variant", ".tmp");
+        try {
+            if (!ImageIO.write(image, format, temp.toFile())) {
+                throw new IOException("No image writer for " + format);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static boolean isOriginal(String filename) {
+        return EXTENSIONS.contains(extensionOf(filename)) && !ImageVariants.isVariant(filename);
+    }
+
+    private static String extensionOf(String filename) {
+        if (filename == null || !filename.contains(".")) {
+            return "";
+        }
+        return filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+    private static String sniffFormat(byte[] header) {
+        if (startsWith(header, 0, PNG_MAGIC)) {
+            return "png";
+        }
+        if (startsWith(header, 0, JPEG_MAGIC)) {
+            return "jpg";
+        }
+        if (startsWith(header, 0, GIF87_MAGIC) || startsWith(header, 0, GIF89_MAGIC)) {
+            return "gif";
+        }
+        if (startsWith(header, 0, RIFF_MAGIC) && startsWith(header, 8, WEBP_MAGIC)) {
+            return "webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (data.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        variantWorker.shutdownNow();
+    }
+}
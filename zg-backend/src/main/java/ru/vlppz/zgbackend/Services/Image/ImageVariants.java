@@ -0,0 +1,65 @@
+package ru.vlppz.zgbackend.Services.Image;
+
+import javax.imageio.ImageIO;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Naming scheme of the resized copies ImageStorage writes next to each upload, so the URLs
+// can be derived from imageURL alone without storing them anywhere.
+public final class ImageVariants {
+    public static final String URL_PREFIX = "/api/uploads/";
+
+    static final List<String> ORIGINAL_EXTENSIONS = List.of("png", "jpg", "jpeg", "gif", "webp");
+
+    static final int THUMB_WIDTH = 160;
+    static final int CARD_WIDTH = 480;
+
+    // WebP needs an ImageIO plugin; without one the WebP variant is simply not produced
+    static final boolean WEBP_SUPPORTED = ImageIO.getImageWritersByFormatName("webp").hasNext();
+
+    private ImageVariants() {
+    }
+
+    public static Map<String, String> urlsFor(String imageURL) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (imageURL == null || !imageURL.startsWith(URL_PREFIX)) {
+            return urls;
+        }
+        String filename = imageURL.substring(URL_PREFIX.length());
+        String base = baseName(filename);
+        String format = formatFor(filename);
+        urls.put("thumb", URL_PREFIX + base + "_thumb." + format);
+        urls.put("card", URL_PREFIX + base + "_card." + format);
+        if (WEBP_SUPPORTED) {
+            urls.put("cardWebp", URL_PREFIX + base + "_card.webp");
+        }
+        return urls;
+    }
+
+    // The names the variant's original may have: its extension is not part of the variant's name
+    public static List<String> originalNamesOf(String variantFilename) {
+        if (!isVariant(variantFilename)) {
+            return List.of();
+        }
+        String base = baseName(variantFilename);
+        String hash = base.substring(0, base.lastIndexOf('_'));
+        return ORIGINAL_EXTENSIONS.stream().map(extension -> hash + "." + extension).toList();
+    }
+
+    static boolean isVariant(String filename) {
+        String base = baseName(filename);
+        return base.endsWith("_thumb") || base.endsWith("_card");
+    }
+
+    static String baseName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? filename : filename.substring(0, dot);
+    }
+
+    // JPEG stays JPEG; everything else is resized to PNG to keep transparency
+    static String formatFor(String filename) {
+        String lower = filename.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ? "jpg" : "png";
+    }
+}
@@ -0,0 +1,248 @@
+package ru.vlppz.zgbackend.Services.Leaderboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.vlppz.zgbackend.DB.User.UserNetWorth;
+import ru.vlppz.zgbackend.DB.User.UserNetWorthRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.DB.User.UserSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory ranking of all users by balance and by net worth (balance + NFT holdings).
+// Reads never touch Postgres: pages and ranks are answered from the skip lists, display data
+// comes from the summary kept next to them.
+@Service
+public class LeaderboardIndex {
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardIndex.class);
+
+    public record Ranked(int rank, int total, UserSummary user) {}
+
+    private final UserRepository userRepository;
+    private final UserNetWorthRepository userNetWorthRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private RankedSkipList byBalance = new RankedSkipList();
+    private RankedSkipList byNetWorth = new RankedSkipList();
+    private Map<Long, UserSummary> summaries = new HashMap<>();
+    private Map<Long, Long> nftValues = new HashMap<>();
+
+    // Updates that arrive while a rebuild is reading the tables; replayed on top of the fresh snapshot
+    private List<Runnable> pendingDuringRebuild;
+    private volatile boolean ready;
+
+    public LeaderboardIndex(UserRepository userRepository, UserNetWorthRepository userNetWorthRepository) {
+        this.userRepository = userRepository;
+        this.userNetWorthRepository = userNetWorthRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RankedSkipList freshByBalance = new RankedSkipList();
+        RankedSkipList freshByNetWorth = new RankedSkipList();
+        Map<Long, UserSummary> freshSummaries = new HashMap<>();
+        Map<Long, Long> freshNftValues = new HashMap<>();
+        try {
+            for (UserNetWorth netWorth : userNetWorthRepository.findAll()) {
+                freshNftValues.put(netWorth.getUserId(), netWorth.getNftValue());
+            }
+            for (UserSummary summary : userRepository.findAllSummaries()) {
+                long balance = balanceOf(summary);
+                freshByBalance.insert(summary.id(), balance);
+                freshByNetWorth.insert(summary.id(), balance + freshNftValues.getOrDefault(summary.id(), 0L));
+                freshSummaries.put(summary.id(), summary);
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            byBalance = freshByBalance;
+            byNetWorth = freshByNetWorth;
+            summaries = freshSummaries;
+            nftValues = freshNftValues;
+            pendingDuringRebuild.forEach(Runnable::run);
+            pendingDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Leaderboard index built with {} users", freshSummaries.size());
+    }
+
+    public void upsert(UserSummary summary) {
+        mutate(() -> applyUpsert(summary));
+    }
+
+    public void remove(Long userId) {
+        mutate(() -> applyRemove(userId));
+    }
+
+    // For balance changes made by SQL updates, which bypass LeaderboardUserListener
+    public void updateBalance(Long userId, long balance) {
+        mutate(() -> {
+            UserSummary summary = summaries.get(userId);
+            if (summary != null) {
+                applyUpsert(summary.withBalance(balance));
+            }
+        });
+    }
+
+    // For showcases cleared by SQL updates, likewise
+    public void clearPinned(Collection<Long> userIds) {
+        mutate(() -> {
+            for (Long userId : userIds) {
+                UserSummary summary = summaries.get(userId);
+                if (summary != null && summary.pinnedNFT() != null) {
+                    applyUpsert(summary.withPinnedNFT(null));
+                }
+            }
+        });
+    }
+
+    public void updateNftValue(Long userId, long nftValue) {
+        mutate(() -> applyNftValue(userId, nftValue));
+    }
+
+    public List<UserSummary> page(LeaderboardMode mode, int offset, int limit) {
+        ensureReady();
+        lock.readLock().lock();
+        try {
+            RankedSkipList ranking = rankingFor(mode);
+            int size = Math.max(0, Math.min(limit, ranking.size() - offset));
+            long[] ids = new long[size];
+            long[] scores = new long[size];
+            int copied = ranking.range(offset, ids, scores);
+
+            List<UserSummary> page = new ArrayList<>(copied);
+            for (int i = 0; i < copied; i++) {
+                page.add(summaries.get(ids[i]).withNetWorth(netWorthOf(ids[i])));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Ranked> rankOf(LeaderboardMode mode, Long userId) {
+        ensureReady();
+        lock.readLock().lock();
+        try {
+            UserSummary summary = summaries.get(userId);
+            if (summary == null) {
+                return Optional.empty();
+            }
+            long score = mode == LeaderboardMode.NET_WORTH ? netWorthOf(userId) : balanceOf(summary);
+            RankedSkipList ranking = rankingFor(mode);
+            int rank = ranking.rank(userId, score);
+            return Optional.of(new Ranked(rank, ranking.size(), summary.withNetWorth(netWorthOf(userId))));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        ensureReady();
+        lock.readLock().lock();
+        try {
+            return byBalance.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureReady() {
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    private void mutate(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyUpsert(UserSummary summary) {
+        UserSummary previous = summaries.get(summary.id());
+        if (previous != null) {
+            byBalance.remove(previous.id(), balanceOf(previous));
+            byNetWorth.remove(previous.id(), netWorthOf(previous.id()));
+        }
+        summaries.put(summary.id(), summary);
+        byBalance.insert(summary.id(), balanceOf(summary));
+        byNetWorth.insert(summary.id(), netWorthOf(summary.id()));
+    }
+
+    private void applyRemove(Long userId) {
+        UserSummary previous = summaries.get(userId);
+        if (previous != null) {
+            byBalance.remove(userId, balanceOf(previous));
+            byNetWorth.remove(userId, netWorthOf(userId));
+            summaries.remove(userId);
+        }
+        nftValues.remove(userId);
+    }
+
+    private void applyNftValue(Long userId, long nftValue) {
+        boolean known = summaries.containsKey(userId);
+        if (known) {
+            byNetWorth.remove(userId, netWorthOf(userId));
+        }
+        nftValues.put(userId, nftValue);
+        if (known) {
+            byNetWorth.insert(userId, netWorthOf(userId));
+        }
+    }
+
+    private RankedSkipList rankingFor(LeaderboardMode mode) {
+        return mode == LeaderboardMode.NET_WORTH ? byNetWorth : byBalance;
+    }
+
+    private long netWorthOf(long userId) {
+        UserSummary summary = summaries.get(userId);
+        long balance = summary != null ? balanceOf(summary) : 0L;
+        return balance + nftValues.getOrDefault(userId, 0L);
+    }
+
+    private static long balanceOf(UserSummary summary) {
+        return summary.balance() != null ? summary.balance() : 0L;
+    }
+}
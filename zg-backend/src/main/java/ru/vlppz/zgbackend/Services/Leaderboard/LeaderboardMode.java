@@ -0,0 +1,6 @@
+package ru.vlppz.zgbackend.Services.Leaderboard;
+
+public enum LeaderboardMode {
+    BALANCE,
+    NET_WORTH
+}
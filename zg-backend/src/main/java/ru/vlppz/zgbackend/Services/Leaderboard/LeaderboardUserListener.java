@@ -0,0 +1,34 @@
+package ru.vlppz.zgbackend.Services.Leaderboard;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserSummary;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+
+// Keeps LeaderboardIndex in sync with every User write that goes through Hibernate, once it commits.
+// The index is resolved lazily because the listener is created together with the EntityManagerFactory.
+@Component
+public class LeaderboardUserListener {
+    private final ObjectProvider<LeaderboardIndex> leaderboardIndex;
+
+    public LeaderboardUserListener(ObjectProvider<LeaderboardIndex> leaderboardIndex) {
+        this.leaderboardIndex = leaderboardIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(User user) {
+        UserSummary summary = UserSummary.of(user);
+        AfterCommit.run(() -> leaderboardIndex.getObject().upsert(summary));
+    }
+
+    @PostRemove
+    public void onRemoved(User user) {
+        Long userId = user.getId();
+        AfterCommit.run(() -> leaderboardIndex.getObject().remove(userId));
+    }
+}
@@ -0,0 +1,179 @@
+package ru.vlppz.zgbackend.Services.Leaderboard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserNetWorth;
+import ru.vlppz.zgbackend.DB.User.UserNetWorthRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Maintains user_net_worth incrementally from the NFT ownership changes, and periodically
+// re-derives it from the nfts table to catch anything the incremental path missed.
+@Service
+public class NetWorthService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(NetWorthService.class);
+    private static final int MAX_DRIFT_SAMPLES = 20;
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    public record Drift(Long userId, long stored, long expected) {}
+
+    private record ChunkResult(int usersChecked, List<Drift> drifts) {}
+
+    public record ReconcileReport(int chunks, int usersChecked, int driftedUsers, long absoluteDrift, List<Drift> samples) {}
+
+    private final UserNetWorthRepository userNetWorthRepository;
+    private final NFTRepository nftRepository;
+    private final UserRepository userRepository;
+    private final LeaderboardIndex leaderboardIndex;
+    private final TransactionTemplate snapshotTransaction;
+    private final ExecutorService reconcilePool;
+
+    @Value("${networth.reconcile.chunk-size:5000}")
+    private long chunkSize;
+
+    public NetWorthService(UserNetWorthRepository userNetWorthRepository,
+                           NFTRepository nftRepository,
+                           UserRepository userRepository,
+                           LeaderboardIndex leaderboardIndex,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${networth.reconcile.threads:4}") int reconcileThreads) {
+        this.userNetWorthRepository = userNetWorthRepository;
+        this.nftRepository = nftRepository;
+        this.userRepository = userRepository;
+        this.leaderboardIndex = leaderboardIndex;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.reconcilePool = Executors.newFixedThreadPool(reconcileThreads);
+    }
+
+    public void onAcquired(User owner, NFT nft) {
+        adjust(owner.getId(), nft.valuation());
+    }
+
+    public void onReleased(User owner, NFT nft) {
+        adjust(owner.getId(), -nft.valuation());
+    }
+
+    public void onTransferred(User from, User to, NFT nft) {
+        onReleased(from, nft);
+        onAcquired(to, nft);
+    }
+
+    public void adjust(Long userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        long nftValue = userNetWorthRepository.addNftValue(userId, delta);
+        AfterCommit.run(() -> leaderboardIndex.updateNftValue(userId, nftValue));
+    }
+
+    @Scheduled(initialDelayString = "${networth.reconcile.initial-delay-ms:600000}",
+            fixedDelayString = "${networth.reconcile.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("Net worth reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    // Recomputes every user's NFT value from scratch, one id range per task, and repairs drifted rows
+    public ReconcileReport reconcile() throws Exception {
+        long maxUserId = userRepository.findMaxId();
+        List<Future<ChunkResult>> futures = new ArrayList<>();
+        for (long from = 1; from <= maxUserId; from += chunkSize) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(maxUserId, from + chunkSize - 1);
+            futures.add(reconcilePool.submit(() -> reconcileChunk(chunkFrom, chunkTo)));
+        }
+
+        int usersChecked = 0;
+        int driftedUsers = 0;
+        long absoluteDrift = 0;
+        List<Drift> samples = new ArrayList<>();
+        for (Future<ChunkResult> future : futures) {
+            ChunkResult chunk = future.get();
+            usersChecked += chunk.usersChecked();
+            for (Drift drift : chunk.drifts()) {
+                driftedUsers++;
+                absoluteDrift += Math.abs(drift.expected() - drift.stored());
+                if (samples.size() < MAX_DRIFT_SAMPLES) {
+                    samples.add(drift);
+                }
+            }
+        }
+
+        ReconcileReport report = new ReconcileReport(futures.size(), usersChecked, driftedUsers, absoluteDrift, samples);
+        if (driftedUsers > 0) {
+            log.warn("Net worth drift repaired for {} users (absolute drift {}), samples: {}", driftedUsers, absoluteDrift, samples);
+        } else {
+            log.info("Net worth reconciliation found no drift across {} users", usersChecked);
+        }
+        return report;
+    }
+
+    // Stored values, sums and repairs share one repeatable-read snapshot, so an ownership change
+    // committing meanwhile is in all of them or in none. Repairing a row such a change has touched
+    // since fails Postgres' serialization check instead of overwriting it, and the chunk is read again.
+    private ChunkResult reconcileChunk(long fromUserId, long toUserId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return snapshotTransaction.execute(status -> reconcileSnapshot(fromUserId, toUserId));
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private ChunkResult reconcileSnapshot(long fromUserId, long toUserId) {
+        Map<Long, Long> stored = new HashMap<>();
+        for (UserNetWorth netWorth : userNetWorthRepository.findByUserIdBetween(fromUserId, toUserId)) {
+            stored.put(netWorth.getUserId(), netWorth.getNftValue());
+        }
+        Map<Long, Long> expected = new HashMap<>();
+        for (Object[] row : nftRepository.sumValuationByOwnerBetween(fromUserId, toUserId)) {
+            expected.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+
+        List<Drift> drifts = new ArrayList<>();
+        Map<Long, Long> all = new HashMap<>(stored);
+        expected.forEach(all::putIfAbsent);
+        for (Long userId : all.keySet()) {
+            long expectedValue = expected.getOrDefault(userId, 0L);
+            long storedValue = stored.getOrDefault(userId, 0L);
+            if (expectedValue != storedValue
+                    && userNetWorthRepository.repairNftValue(userId, storedValue, expectedValue) != null) {
+                drifts.add(new Drift(userId, storedValue, expectedValue));
+                AfterCommit.run(() -> leaderboardIndex.updateNftValue(userId, expectedValue));
+            }
+        }
+        // Users without NFTs and without a row were checked too, they just had nothing to compare
+        return new ChunkResult((int) userRepository.countByIdBetween(fromUserId, toUserId), drifts);
+    }
+
+    @Override
+    public void destroy() {
+        reconcilePool.shutdownNow();
+    }
+}
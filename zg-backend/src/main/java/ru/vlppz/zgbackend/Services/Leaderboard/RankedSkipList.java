@@ -0,0 +1,163 @@
+package ru.vlppz.zgbackend.Services.Leaderboard;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Indexable skip list ordered by score desc, id asc. Every forward link also stores its span
+// (how many nodes it jumps over), so rank lookups and "n-th element" lookups are O(log n).
+// Not thread-safe: LeaderboardIndex guards it with a read/write lock.
+class RankedSkipList {
+    private static final int MAX_LEVEL = 32;
+    private static final int LEVEL_FANOUT = 4;
+
+    private static final class Node {
+        final long id;
+        final long score;
+        final Node[] next;
+        final int[] span;
+
+        Node(long id, long score, int level) {
+            this.id = id;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(0, 0, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void insert(long id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && precedes(x.next[i], score, id)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(id, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    boolean remove(long id, long score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && precedes(x.next[i], score, id)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        x = x.next[0];
+        if (x == null || x.id != id || x.score != score) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    // 1-based rank of the (id, score) pair, or 0 when it is not present
+    int rank(long id, long score) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && (precedes(x.next[i], score, id) || matches(x.next[i], score, id))) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && matches(x, score, id)) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    // Copies up to ids.length entries starting at the given 0-based offset; returns how many were copied
+    int range(int offset, long[] ids, long[] scores) {
+        if (offset < 0 || offset >= size || ids.length == 0) {
+            return 0;
+        }
+        Node x = nodeAt(offset + 1);
+        int copied = 0;
+        while (x != null && copied < ids.length) {
+            ids[copied] = x.id;
+            scores[copied] = x.score;
+            copied++;
+            x = x.next[0];
+        }
+        return copied;
+    }
+
+    private Node nodeAt(int rank) {
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == rank) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private static boolean precedes(Node node, long score, long id) {
+        return node.score > score || (node.score == score && node.id < id);
+    }
+
+    private static boolean matches(Node node, long score, long id) {
+        return node.score == score && node.id == id;
+    }
+
+    private static int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && random.nextInt(LEVEL_FANOUT) == 0) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+}
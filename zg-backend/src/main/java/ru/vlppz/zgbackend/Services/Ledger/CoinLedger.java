@@ -0,0 +1,156 @@
+package ru.vlppz.zgbackend.Services.Ledger;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Records every change of a user's balance as a coin_ledger row. Entries of one transaction are
+// collected and written as a single JDBC batch just before it commits, so a rolled-back (or retried)
+// attempt leaves nothing behind and a request costs one extra round trip however many entries it has.
+@Service
+public class CoinLedger {
+    private static final String INSERT_SQL =
+            "INSERT INTO coin_ledger (user_id, amount, reason, ref_id, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    // Told about every committed entry made through record(), with its id
+    public interface Listener {
+        void onCommitted(Long userId, long amount, long entryId);
+    }
+
+    private record Pending(Long userId, long amount, String reason, Long refId, LocalDateTime createdAt, boolean reported) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Listener listener;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CoinLedger(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Call in the same transaction as the balance change itself
+    public void record(Long userId, long amount, LedgerEntry.Reason reason, Long refId) {
+        add(new Pending(userId, amount, reason.name(), refId, LocalDateTime.now(), true));
+    }
+
+    // For balance changes the economy engine has already applied: written like any other, but not
+    // reported back to the listener
+    public void recordApplied(Long userId, long amount, LedgerEntry.Reason reason, Long refId, LocalDateTime createdAt) {
+        add(new Pending(userId, amount, reason.name(), refId, createdAt, false));
+    }
+
+    private void add(Pending entry) {
+        if (entry.amount() == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<Pending> single = List.of(entry);
+            notifyCommitted(single, insert(single));
+            return;
+        }
+        pendingEntries().add(entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Pending> pendingEntries() {
+        List<Pending> entries = (List<Pending>) TransactionSynchronizationManager.getResource(this);
+        if (entries != null) {
+            return entries;
+        }
+        List<Pending> pending = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // Entity balance writes are flushed first, so the users row is locked before the entry ids
+                // are drawn: for any one user, ledger ids then follow commit order, which checkpoints rely on
+                entityManager.flush();
+                ids.addAll(insert(pending));
+            }
+
+            @Override
+            public void afterCommit() {
+                notifyCommitted(pending, ids);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CoinLedger.this);
+            }
+        });
+        return pending;
+    }
+
+    // Generated ids are only fetched while someone listens for them
+    private List<Long> insert(List<Pending> entries) {
+        if (listener == null) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), CoinLedger::bind);
+            return List.of();
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        PreparedStatementCreator statement = connection -> connection.prepareStatement(INSERT_SQL, new String[]{"id"});
+        jdbcTemplate.batchUpdate(statement, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                bind(ps, entries.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        }, keys);
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (var row : keys.getKeyList()) {
+            ids.add(((Number) row.get("id")).longValue());
+        }
+        return ids;
+    }
+
+    private void notifyCommitted(List<Pending> entries, List<Long> ids) {
+        Listener current = listener;
+        if (current == null || ids.size() != entries.size()) {
+            return;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            Pending entry = entries.get(i);
+            if (entry.reported()) {
+                current.onCommitted(entry.userId(), entry.amount(), ids.get(i));
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Pending entry) throws SQLException {
+        ps.setLong(1, entry.userId());
+        ps.setLong(2, entry.amount());
+        ps.setString(3, entry.reason());
+        if (entry.refId() != null) {
+            ps.setLong(4, entry.refId());
+        } else {
+            ps.setNull(4, Types.BIGINT);
+        }
+        ps.setTimestamp(5, Timestamp.valueOf(entry.createdAt()));
+    }
+}
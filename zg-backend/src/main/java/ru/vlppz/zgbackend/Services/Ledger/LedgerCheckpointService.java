@@ -0,0 +1,168 @@
+package ru.vlppz.zgbackend.Services.Ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Keeps balance_checkpoints rolled forward from the coin ledger and checks users.balance against it.
+// Both walk users in id ranges; every range is a single statement, so it sees the ledger and the
+// balances in one snapshot and a transfer committing meanwhile is either fully in or fully out.
+@Service
+public class LedgerCheckpointService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(LedgerCheckpointService.class);
+    private static final int MAX_MISMATCH_SAMPLES = 20;
+
+    public record Mismatch(Long userId, long balance, long ledgerBalance) {}
+
+    private record ChunkResult(int usersChecked, List<Mismatch> mismatches) {}
+
+    public record VerifyReport(int chunks, int usersChecked, int mismatchedUsers, long absoluteDifference, List<Mismatch> samples) {}
+
+    // The first start with the ledger fixes which users predate it; later starts read the same cutoff
+    private static final String INIT_OPENING_SQL =
+            "INSERT INTO ledger_openings (id, last_user_id, opened_at) " +
+            "SELECT 1, COALESCE(MAX(id), 0), now() FROM users ON CONFLICT (id) DO NOTHING";
+    private static final String READ_OPENING_SQL = "SELECT last_user_id FROM ledger_openings WHERE id = 1";
+    // Users that predate the ledger: whatever they hold beyond their recorded entries is their opening balance
+    private static final String OPENING_SQL =
+            "INSERT INTO balance_checkpoints (user_id, balance, last_entry_id, created_at) " +
+            "SELECT u.id, u.balance - COALESCE((SELECT SUM(l.amount) FROM coin_ledger l WHERE l.user_id = u.id), 0), 0, now() " +
+            "FROM users u WHERE u.id BETWEEN ? AND ? " +
+            "AND NOT EXISTS (SELECT 1 FROM balance_checkpoints c WHERE c.user_id = u.id) " +
+            "ON CONFLICT (user_id) DO NOTHING";
+    private static final String ROLL_FORWARD_SQL =
+            "INSERT INTO balance_checkpoints (user_id, balance, last_entry_id, created_at) " +
+            "SELECT l.user_id, COALESCE(c.balance, 0) + SUM(l.amount), MAX(l.id), now() " +
+            "FROM coin_ledger l LEFT JOIN balance_checkpoints c ON c.user_id = l.user_id " +
+            "WHERE l.user_id BETWEEN ? AND ? AND l.id > COALESCE(c.last_entry_id, 0) " +
+            "GROUP BY l.user_id, c.balance " +
+            "ON CONFLICT (user_id) DO UPDATE SET balance = EXCLUDED.balance, " +
+            "last_entry_id = EXCLUDED.last_entry_id, created_at = EXCLUDED.created_at";
+    private static final String FOLD_SQL =
+            "SELECT u.id, u.balance, COALESCE(c.balance, 0) + COALESCE((SELECT SUM(l.amount) FROM coin_ledger l " +
+            "WHERE l.user_id = u.id AND l.id > COALESCE(c.last_entry_id, 0)), 0) " +
+            "FROM users u LEFT JOIN balance_checkpoints c ON c.user_id = u.id WHERE u.id BETWEEN ? AND ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final ExecutorService verifyPool;
+
+    @Value("${ledger.chunk-size:5000}")
+    private long chunkSize;
+
+    public LedgerCheckpointService(JdbcTemplate jdbcTemplate,
+                                   UserRepository userRepository,
+                                   @Value("${ledger.verify.threads:4}") int verifyThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.verifyPool = Executors.newFixedThreadPool(verifyThreads);
+    }
+
+    // Only users up to the cutoff are opened, so a later user's mismatch is never absorbed into an
+    // opening balance; a restart after an interrupted run just finishes the remaining ranges
+    @EventListener(ApplicationReadyEvent.class)
+    public void openMissingCheckpoints() {
+        jdbcTemplate.update(INIT_OPENING_SQL);
+        long lastUserId = jdbcTemplate.queryForObject(READ_OPENING_SQL, Long.class);
+        long opened = 0;
+        for (long from = 1; from <= lastUserId; from += chunkSize) {
+            opened += jdbcTemplate.update(OPENING_SQL, from, Math.min(lastUserId, from + chunkSize - 1));
+        }
+        if (opened > 0) {
+            log.info("Opened ledger checkpoints for {} users", opened);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${ledger.checkpoint.initial-delay-ms:300000}",
+            fixedDelayString = "${ledger.checkpoint.interval-ms:600000}")
+    public void rollForward() {
+        try {
+            long updated = 0;
+            long maxUserId = userRepository.findMaxId();
+            for (long from = 1; from <= maxUserId; from += chunkSize) {
+                updated += jdbcTemplate.update(ROLL_FORWARD_SQL, from, Math.min(maxUserId, from + chunkSize - 1));
+            }
+            log.debug("Rolled ledger checkpoints forward for {} users", updated);
+        } catch (Exception e) {
+            log.warn("Ledger checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${ledger.verify.initial-delay-ms:900000}",
+            fixedDelayString = "${ledger.verify.interval-ms:3600000}")
+    public void scheduledVerify() {
+        try {
+            verify();
+        } catch (Exception e) {
+            log.warn("Ledger verification failed: {}", e.getMessage());
+        }
+    }
+
+    // Re-folds every user's balance from checkpoint + later entries, one id range per task. Mismatches are
+    // only reported: which side is wrong is for whoever resolves the dispute to decide.
+    public VerifyReport verify() throws Exception {
+        long maxUserId = userRepository.findMaxId();
+        List<Future<ChunkResult>> futures = new ArrayList<>();
+        for (long from = 1; from <= maxUserId; from += chunkSize) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(maxUserId, from + chunkSize - 1);
+            futures.add(verifyPool.submit(() -> verifyChunk(chunkFrom, chunkTo)));
+        }
+
+        int usersChecked = 0;
+        int mismatchedUsers = 0;
+        long absoluteDifference = 0;
+        List<Mismatch> samples = new ArrayList<>();
+        for (Future<ChunkResult> future : futures) {
+            ChunkResult chunk = future.get();
+            usersChecked += chunk.usersChecked();
+            for (Mismatch mismatch : chunk.mismatches()) {
+                mismatchedUsers++;
+                absoluteDifference += Math.abs(mismatch.balance() - mismatch.ledgerBalance());
+                if (samples.size() < MAX_MISMATCH_SAMPLES) {
+                    samples.add(mismatch);
+                }
+            }
+        }
+
+        VerifyReport report = new VerifyReport(futures.size(), usersChecked, mismatchedUsers, absoluteDifference, samples);
+        if (mismatchedUsers > 0) {
+            log.warn("Ledger mismatch for {} users (absolute difference {}), samples: {}", mismatchedUsers, absoluteDifference, samples);
+        } else {
+            log.info("Ledger verification found no mismatch across {} users", usersChecked);
+        }
+        return report;
+    }
+
+    private ChunkResult verifyChunk(long fromUserId, long toUserId) {
+        List<Mismatch> mismatches = new ArrayList<>();
+        int[] checked = {0};
+        jdbcTemplate.query(FOLD_SQL, rs -> {
+            checked[0]++;
+            long balance = rs.getLong(2);
+            long ledgerBalance = rs.getLong(3);
+            if (balance != ledgerBalance) {
+                mismatches.add(new Mismatch(rs.getLong(1), balance, ledgerBalance));
+            }
+        }, fromUserId, toUserId);
+        return new ChunkResult(checked[0], mismatches);
+    }
+
+    @Override
+    public void destroy() {
+        verifyPool.shutdownNow();
+    }
+}
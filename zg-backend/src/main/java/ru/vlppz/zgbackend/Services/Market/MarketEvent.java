@@ -0,0 +1,31 @@
+package ru.vlppz.zgbackend.Services.Market;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+// One marketplace delta as pushed to stream subscribers. id grows with publication order; fields that
+// do not apply to the type are left out of the JSON.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MarketEvent(long id,
+                          Type type,
+                          Long auctionId,
+                          Long nftId,
+                          Long editionId,
+                          String nftName,
+                          Long price,
+                          Long sellerId,
+                          LocalDateTime endsAt) {
+    public enum Type {
+        LISTING_CREATED,
+        LISTING_SOLD,
+        LISTING_CANCELLED,
+        SHOP_ITEM_SOLD,
+        // Deltas were dropped for this subscriber: reload the listings and the shop, then keep applying events
+        RESYNC
+    }
+
+    static MarketEvent resync(long id) {
+        return new MarketEvent(id, Type.RESYNC, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,127 @@
+package ru.vlppz.zgbackend.Services.Market;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.vlppz.zgbackend.DB.Auction.Auction;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process fan-out of marketplace deltas to the SSE clients of /api/market/stream, so open pages
+// follow listings and the shop without re-polling the full lists. Events are published after the
+// transaction commits, so a rolled-back sale is never announced. Deltas are idempotent on the client
+// (add or remove by id); a subscriber that falls behind gets RESYNC and reloads instead.
+@Service
+public class MarketEventBus implements DisposableBean {
+    private final Set<MarketSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastEventId = new AtomicLong();
+    private final ThreadFactory writerThreads = Thread.ofVirtual().name("market-sse-", 0).factory();
+    private final Counter published;
+    private final Counter resyncs;
+
+    @Value("${market.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${market.stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${market.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    public MarketEventBus(MeterRegistry meterRegistry) {
+        Gauge.builder("market.stream.subscribers", subscribers, Set::size).register(meterRegistry);
+        this.published = meterRegistry.counter("market.stream.events");
+        this.resyncs = meterRegistry.counter("market.stream.resyncs");
+    }
+
+    // Each connection gets its own virtual writer thread: idle subscribers cost a parked thread and a buffer
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        MarketSubscriber subscriber = new MarketSubscriber(emitter, bufferSize, heartbeatMs, this);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        subscribers.add(subscriber);
+        subscriber.start(writerThreads);
+        return emitter;
+    }
+
+    public void listingCreated(Auction auction) {
+        publish(MarketEvent.Type.LISTING_CREATED, auction, auction.getPrice());
+    }
+
+    public void listingSold(Auction auction, long price) {
+        publish(MarketEvent.Type.LISTING_SOLD, auction, price);
+    }
+
+    public void listingCancelled(Auction auction) {
+        publish(MarketEvent.Type.LISTING_CANCELLED, auction, auction.getPrice());
+    }
+
+    // Listing removed by a bulk delete, where only the ids are at hand
+    public void listingCancelled(Long auctionId, Long nftId) {
+        AfterCommit.run(() -> fanOut(new MarketEvent(lastEventId.incrementAndGet(), MarketEvent.Type.LISTING_CANCELLED,
+                auctionId, nftId, null, null, null, null, null)));
+    }
+
+    // Listing changes applied by the economy engine, where only ids and values are at hand
+    public void listingCreated(Long auctionId, Long nftId, String nftName, long price, Long sellerId) {
+        publish(MarketEvent.Type.LISTING_CREATED, auctionId, nftId, nftName, price, sellerId, null);
+    }
+
+    public void listingSold(Long auctionId, Long nftId, String nftName, long price, Long sellerId) {
+        publish(MarketEvent.Type.LISTING_SOLD, auctionId, nftId, nftName, price, sellerId, null);
+    }
+
+    public void shopItemSold(Long nftId, Long editionId, String nftName, long price) {
+        AfterCommit.run(() -> fanOut(new MarketEvent(lastEventId.incrementAndGet(), MarketEvent.Type.SHOP_ITEM_SOLD,
+                null, nftId, editionId, nftName, price, null, null)));
+    }
+
+    long lastEventId() {
+        return lastEventId.get();
+    }
+
+    void unsubscribe(MarketSubscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    // Everything is read off the entities now: after commit they may be detached
+    private void publish(MarketEvent.Type type, Auction auction, long price) {
+        publish(type, auction.getId(), auction.getNft().getId(), auction.getNft().getName(), price,
+                auction.getSeller().getId(), auction.getEndsAt());
+    }
+
+    private void publish(MarketEvent.Type type, Long auctionId, Long nftId, String nftName, long price,
+                         Long sellerId, LocalDateTime endsAt) {
+        AfterCommit.run(() -> fanOut(new MarketEvent(lastEventId.incrementAndGet(), type,
+                auctionId, nftId, null, nftName, price, sellerId, endsAt)));
+    }
+
+    private void fanOut(MarketEvent event) {
+        published.increment();
+        for (MarketSubscriber subscriber : subscribers) {
+            if (!subscriber.offer(event)) {
+                resyncs.increment();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (MarketSubscriber subscriber : subscribers) {
+            subscriber.close();
+            subscriber.emitter().complete();
+        }
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.vlppz.zgbackend.Services.Market;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One open stream. Publishers only ever offer into the bounded buffer; the subscriber's own (virtual)
+// writer thread drains it into the connection, so a slow client blocks nobody but itself. When the
+// buffer is full the backlog is thrown away and the client is told to resync instead.
+class MarketSubscriber implements Runnable {
+    private final SseEmitter emitter;
+    private final BlockingQueue<MarketEvent> buffer;
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+    private final long heartbeatMs;
+    private final MarketEventBus bus;
+    private volatile Thread writer;
+    private volatile boolean closed;
+
+    MarketSubscriber(SseEmitter emitter, int bufferSize, long heartbeatMs, MarketEventBus bus) {
+        this.emitter = emitter;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.heartbeatMs = heartbeatMs;
+        this.bus = bus;
+    }
+
+    SseEmitter emitter() {
+        return emitter;
+    }
+
+    // Returns false when the event overflowed the buffer and the subscriber was switched to resync
+    boolean offer(MarketEvent event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+        buffer.clear();
+        resyncPending.set(true);
+        return false;
+    }
+
+    void start(ThreadFactory threads) {
+        Thread thread = threads.newThread(this);
+        writer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            emitter.send(SseEmitter.event().comment("connected"));
+            while (!closed) {
+                if (resyncPending.getAndSet(false)) {
+                    send(MarketEvent.resync(bus.lastEventId()));
+                    continue;
+                }
+                MarketEvent event = buffer.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    send(event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Client went away or the emitter timed out; the emitter callbacks unregister us
+            emitter.completeWithError(e);
+        } finally {
+            bus.unsubscribe(this);
+        }
+    }
+
+    void close() {
+        closed = true;
+        Thread thread = writer;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void send(MarketEvent event) throws Exception {
+        emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.id()))
+                .name(event.type().name())
+                .data(event, MediaType.APPLICATION_JSON));
+    }
+}
@@ -0,0 +1,163 @@
+package ru.vlppz.zgbackend.Services.Mint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
+import ru.vlppz.zgbackend.DB.User.UserNetWorth;
+import ru.vlppz.zgbackend.DB.User.UserNetWorthRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Shop.CatalogCache;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Mints copies of an edition straight into users' inventories (giveaways, season rewards).
+// Ids are taken from the nfts identity sequence a whole batch at a time and rows are written with
+// JDBC batch inserts, all in one transaction, so 100k copies cost a few hundred round trips.
+// Mints above the sync threshold run on a background thread and are polled through MintJob.
+@Service
+public class BulkMintService implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(BulkMintService.class);
+    private static final long FINISHED_JOB_TTL_MINUTES = 60;
+
+    private static final String ALLOCATE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('nfts', 'id')) FROM generate_series(1, ?)";
+    private static final String INSERT_NFT_SQL =
+            "INSERT INTO nfts (id, name, description, price, gradient_color1, gradient_color2, imageurl, owner_id, edition_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String ADD_NFT_VALUE_SQL =
+            "INSERT INTO user_net_worth (user_id, nft_value, updated_at) VALUES (?, ?, now()) " +
+            "ON CONFLICT (user_id) DO UPDATE SET nft_value = user_net_worth.nft_value + EXCLUDED.nft_value, updated_at = now()";
+    private static final String ADD_SUPPLY_SQL =
+            "UPDATE nft_editions SET supply = supply + ? WHERE id = ?";
+
+    private final NFTEditionRepository nftEditionRepository;
+    private final UserRepository userRepository;
+    private final UserNetWorthRepository userNetWorthRepository;
+    private final LeaderboardIndex leaderboardIndex;
+    private final CatalogCache catalogCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService mintExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, MintJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${mint.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${mint.sync-threshold:2000}")
+    private int syncThreshold;
+
+    public BulkMintService(NFTEditionRepository nftEditionRepository,
+                           UserRepository userRepository,
+                           UserNetWorthRepository userNetWorthRepository,
+                           LeaderboardIndex leaderboardIndex,
+                           CatalogCache catalogCache,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager) {
+        this.nftEditionRepository = nftEditionRepository;
+        this.userRepository = userRepository;
+        this.userNetWorthRepository = userNetWorthRepository;
+        this.leaderboardIndex = leaderboardIndex;
+        this.catalogCache = catalogCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Mints one copy per recipient; an empty list means every registered user.
+    // Returns a finished job for small mints and a RUNNING one for large mints.
+    public MintJob mintToUsers(Long editionId, List<Long> userIds) {
+        NFTEdition edition = nftEditionRepository.findById(editionId)
+                .orElseThrow(() -> new IllegalArgumentException("Выпуск NFT не найден"));
+        List<Long> recipients = userIds == null || userIds.isEmpty()
+                ? userRepository.findAllIds()
+                : new ArrayList<>(new LinkedHashSet<>(userIds));
+        if (recipients.isEmpty()) {
+            throw new IllegalArgumentException("Нет получателей");
+        }
+
+        evictFinishedJobs();
+        MintJob job = new MintJob(UUID.randomUUID().toString(), editionId, recipients.size());
+        jobs.put(job.getId(), job);
+
+        if (recipients.size() <= syncThreshold) {
+            run(job, edition, recipients);
+        } else {
+            mintExecutor.submit(() -> run(job, edition, recipients));
+        }
+        return job;
+    }
+
+    public Optional<MintJob> job(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(MintJob job, NFTEdition edition, List<Long> recipients) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(job, edition, recipients));
+            refreshLeaderboard(recipients);
+            job.finish();
+            log.info("Minted {} copies of edition {}", recipients.size(), edition.getId());
+        } catch (Exception e) {
+            job.fail(e.getMessage());
+            log.warn("Mint of edition {} failed: {}", edition.getId(), e.getMessage());
+        }
+    }
+
+    private void write(MintJob job, NFTEdition edition, List<Long> recipients) {
+        jdbcTemplate.update(ADD_SUPPLY_SQL, recipients.size(), edition.getId());
+        catalogCache.invalidate();
+
+        for (int from = 0; from < recipients.size(); from += batchSize) {
+            List<Long> batch = recipients.subList(from, Math.min(recipients.size(), from + batchSize));
+            List<Long> ids = jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class, batch.size());
+
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            List<Object[]> netWorthRows = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                rows.add(new Object[]{ids.get(i), edition.getName(), edition.getDescription(), edition.getPrice(),
+                        edition.getGradientColor1(), edition.getGradientColor2(), edition.getImageURL(),
+                        batch.get(i), edition.getId()});
+                netWorthRows.add(new Object[]{batch.get(i), edition.getPrice()});
+            }
+            jdbcTemplate.batchUpdate(INSERT_NFT_SQL, rows);
+            jdbcTemplate.batchUpdate(ADD_NFT_VALUE_SQL, netWorthRows);
+            job.addMinted(batch.size());
+        }
+    }
+
+    // The inserts bypass NetWorthService, so push the new totals to the index once they are committed
+    private void refreshLeaderboard(List<Long> recipients) {
+        for (int from = 0; from < recipients.size(); from += batchSize) {
+            List<Long> batch = recipients.subList(from, Math.min(recipients.size(), from + batchSize));
+            for (UserNetWorth netWorth : userNetWorthRepository.findAllById(batch)) {
+                leaderboardIndex.updateNftValue(netWorth.getUserId(), netWorth.getNftValue());
+            }
+        }
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(FINISHED_JOB_TTL_MINUTES);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    @Override
+    public void destroy() {
+        mintExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.vlppz.zgbackend.Services.Mint;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Progress of one bulk mint, polled by the admin panel while a large mint runs in the background
+@Getter
+public class MintJob {
+    public enum Status {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final String id;
+    private final Long editionId;
+    private final int total;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger written = new AtomicInteger();
+
+    private volatile Status status = Status.RUNNING;
+    private volatile String error;
+    private volatile LocalDateTime finishedAt;
+
+    MintJob(String id, Long editionId, int total) {
+        this.id = id;
+        this.editionId = editionId;
+        this.total = total;
+    }
+
+    // Rows written so far; they only become visible to other requests once the job is DONE
+    public int getMinted() {
+        return written.get();
+    }
+
+    void addMinted(int count) {
+        written.addAndGet(count);
+    }
+
+    void finish() {
+        finishedAt = LocalDateTime.now();
+        status = Status.DONE;
+    }
+
+    void fail(String message) {
+        finishedAt = LocalDateTime.now();
+        error = message;
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.vlppz.zgbackend.Services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Runs a read-modify-write on versioned entities (User, NFT, Auction, Code) in its own transaction
+// and re-runs it when the commit loses a version check to a concurrent writer, after a jittered
+// exponential backoff. Every attempt starts from an empty persistence context, so it re-reads the
+// winner's state and re-validates against it. Per-operation attempt/conflict/exhausted counters
+// are exported as economy.optimistic.* metrics.
+@Service
+public class OptimisticRetryExecutor {
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryExecutor.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${economy.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${economy.retry.base-backoff-ms:5}")
+    private long baseBackoffMs;
+
+    @Value("${economy.retry.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T execute(String operation, TransactionCallback<T> work) {
+        // Inside an outer transaction a conflict could only be retried by the outer caller
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("OptimisticRetryExecutor must not be called inside a transaction: " + operation);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            counter("economy.optimistic.attempts", operation).increment();
+            entityManager.clear();
+            try {
+                return transactionTemplate.execute(work);
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                counter("economy.optimistic.conflicts", operation).increment();
+                if (attempt >= maxAttempts) {
+                    counter("economy.optimistic.exhausted", operation).increment();
+                    log.warn("{} gave up after {} conflicting attempts", operation, attempt);
+                    throw e;
+                }
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, RuntimeException conflict) {
+        // Full jitter: a uniform wait up to the exponential cap, so the losers of one race do not collide again
+        long cap = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+
+    private static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
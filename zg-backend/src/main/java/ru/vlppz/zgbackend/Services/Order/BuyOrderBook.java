@@ -0,0 +1,61 @@
+package ru.vlppz.zgbackend.Services.Order;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Open buy orders for one NFT name: price levels best (highest) first, FIFO within a level, so the
+// order a new listing fills is found in O(log levels). Not thread-safe: BuyOrderService guards
+// each book with its own monitor.
+class BuyOrderBook {
+    record Entry(Long orderId, Long buyerId, long maxPrice) {}
+
+    private final TreeMap<Long, ArrayDeque<Entry>> levels = new TreeMap<>(Comparator.reverseOrder());
+    private final Map<Long, Entry> byId = new HashMap<>();
+
+    void add(Entry entry) {
+        levels.computeIfAbsent(entry.maxPrice(), price -> new ArrayDeque<>()).addLast(entry);
+        byId.put(entry.orderId(), entry);
+    }
+
+    // Puts back an entry taken for a fill that did not commit, ahead of the orders that came after it
+    void restore(Entry entry) {
+        levels.computeIfAbsent(entry.maxPrice(), price -> new ArrayDeque<>()).addFirst(entry);
+        byId.put(entry.orderId(), entry);
+    }
+
+    void remove(Long orderId) {
+        Entry entry = byId.remove(orderId);
+        if (entry == null) {
+            return;
+        }
+        ArrayDeque<Entry> level = levels.get(entry.maxPrice());
+        level.remove(entry);
+        if (level.isEmpty()) {
+            levels.remove(entry.maxPrice());
+        }
+    }
+
+    // Removes and returns the best order paying at least `price`, skipping the seller's own orders
+    Entry takeBest(long price, Long sellerId) {
+        for (Map.Entry<Long, ArrayDeque<Entry>> level : levels.headMap(price, true).entrySet()) {
+            Iterator<Entry> entries = level.getValue().iterator();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (entry.buyerId().equals(sellerId)) {
+                    continue;
+                }
+                entries.remove();
+                byId.remove(entry.orderId());
+                if (level.getValue().isEmpty()) {
+                    levels.remove(level.getKey());
+                }
+                return entry;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,207 @@
+package ru.vlppz.zgbackend.Services.Order;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vlppz.zgbackend.DB.Auction.Auction;
+import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+import ru.vlppz.zgbackend.DB.Order.BuyOrder;
+import ru.vlppz.zgbackend.DB.Order.BuyOrderRepository;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Auction.AuctionSettlementService;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Standing buy orders matched against fixed-price listings. Open orders live in one in-memory
+// BuyOrderBook per NFT name; the listing side is the auctions table, walked cheapest-first over the
+// price index. A fill always trades at the resting side's price and is persisted in the caller's
+// transaction; the book only changes for good once that transaction commits.
+@Service
+public class BuyOrderService {
+    private static final Logger log = LoggerFactory.getLogger(BuyOrderService.class);
+    private static final int MATCH_ATTEMPTS = 5;
+
+    public enum Outcome {
+        OK,
+        USER_NOT_FOUND,
+        INSUFFICIENT_FUNDS,
+        ORDER_NOT_FOUND,
+        ORDER_CLOSED
+    }
+
+    public record Result(Outcome outcome, BuyOrder order, Long newBalance) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null, null);
+        }
+    }
+
+    private final BuyOrderRepository buyOrderRepository;
+    private final AuctionRepository auctionRepository;
+    private final UserRepository userRepository;
+    private final AuctionSettlementService settlementService;
+    private final LeaderboardIndex leaderboardIndex;
+    private final CoinLedger coinLedger;
+
+    private final Map<String, BuyOrderBook> books = new ConcurrentHashMap<>();
+
+    public BuyOrderService(BuyOrderRepository buyOrderRepository,
+                           AuctionRepository auctionRepository,
+                           UserRepository userRepository,
+                           AuctionSettlementService settlementService,
+                           LeaderboardIndex leaderboardIndex,
+                           CoinLedger coinLedger) {
+        this.buyOrderRepository = buyOrderRepository;
+        this.auctionRepository = auctionRepository;
+        this.userRepository = userRepository;
+        this.settlementService = settlementService;
+        this.leaderboardIndex = leaderboardIndex;
+        this.coinLedger = coinLedger;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOpenOrders() {
+        List<BuyOrder> open = buyOrderRepository.findByStatusOrderByIdAsc(BuyOrder.Status.OPEN);
+        for (BuyOrder order : open) {
+            add(order.getNftName(), new BuyOrderBook.Entry(order.getId(), order.getBuyerId(), order.getMaxPrice()));
+        }
+        log.info("Loaded {} open buy orders into {} books", open.size(), books.size());
+    }
+
+    // Escrows maxPrice, then tries the cheapest matching listing; an unfilled order rests in the book.
+    // A listing created while this transaction is still open is matched by neither side until the next event.
+    @Transactional
+    public Result placeOrder(Long userId, String nftName, long maxPrice) {
+        if (userRepository.debitIfSufficient(userId, maxPrice) == 0) {
+            return Result.of(userRepository.existsById(userId) ? Outcome.INSUFFICIENT_FUNDS : Outcome.USER_NOT_FOUND);
+        }
+
+        BuyOrder order = new BuyOrder();
+        order.setBuyer(userRepository.getReferenceById(userId));
+        order.setNftName(nftName);
+        order.setMaxPrice(maxPrice);
+        order.setStatus(BuyOrder.Status.OPEN);
+        order.setCreatedAt(LocalDateTime.now());
+        buyOrderRepository.save(order);
+        coinLedger.record(userId, -maxPrice, LedgerEntry.Reason.ORDER_ESCROW, order.getId());
+
+        for (Auction listing : auctionRepository.findMatchingListings(nftName, maxPrice, userId, Limit.of(MATCH_ATTEMPTS))) {
+            User buyer = userRepository.findById(userId).orElseThrow();
+            AuctionSettlementService.Result fill = settlementService.settleEscrowed(listing, buyer, listing.getPrice(), maxPrice);
+            if (fill.outcome() == AuctionSettlementService.Outcome.OK) {
+                order.setStatus(BuyOrder.Status.FILLED);
+                order.setFilledPrice(listing.getPrice());
+                order.setFilledNftId(listing.getNft().getId());
+                order.setClosedAt(LocalDateTime.now());
+                buyOrderRepository.save(order);
+                return new Result(Outcome.OK, order, fill.newBalance());
+            }
+        }
+
+        long newBalance = userRepository.findBalanceById(userId).orElseThrow();
+        BuyOrderBook.Entry entry = new BuyOrderBook.Entry(order.getId(), userId, maxPrice);
+        AfterCommit.run(() -> {
+            leaderboardIndex.updateBalance(userId, newBalance);
+            add(nftName, entry);
+        });
+        return new Result(Outcome.OK, order, newBalance);
+    }
+
+    @Transactional
+    public Result cancelOrder(Long userId, Long orderId) {
+        Optional<BuyOrder> orderOptional = buyOrderRepository.findById(orderId);
+        if (orderOptional.isEmpty() || !userId.equals(orderOptional.get().getBuyerId())) {
+            return Result.of(Outcome.ORDER_NOT_FOUND);
+        }
+        BuyOrder order = orderOptional.get();
+
+        if (buyOrderRepository.markCancelled(orderId, userId) == 0) {
+            return Result.of(Outcome.ORDER_CLOSED);
+        }
+        userRepository.credit(userId, order.getMaxPrice());
+        coinLedger.record(userId, order.getMaxPrice(), LedgerEntry.Reason.ORDER_REFUND, orderId);
+
+        long newBalance = userRepository.findBalanceById(userId).orElseThrow();
+        AfterCommit.run(() -> {
+            leaderboardIndex.updateBalance(userId, newBalance);
+            BuyOrderBook book = books.get(order.getNftName());
+            if (book != null) {
+                synchronized (book) {
+                    book.remove(orderId);
+                }
+            }
+        });
+        return new Result(Outcome.OK, null, newBalance);
+    }
+
+    // Called for a freshly created fixed-price listing inside its transaction. Sells it to the best
+    // resting order at the order's price; returns that price, or empty when nothing matched.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Long> matchListing(Auction listing) {
+        if (listing.isTimed()) {
+            return Optional.empty();
+        }
+        BuyOrderBook book = books.get(listing.getNft().getName());
+        if (book == null) {
+            return Optional.empty();
+        }
+
+        Long sellerId = listing.getSeller().getId();
+        while (true) {
+            BuyOrderBook.Entry entry;
+            synchronized (book) {
+                entry = book.takeBest(listing.getPrice(), sellerId);
+            }
+            if (entry == null) {
+                return Optional.empty();
+            }
+            restoreOnRollback(book, entry);
+
+            // Zero rows: the order was cancelled after it was read into the book, so it is simply dropped
+            if (buyOrderRepository.markFilled(entry.orderId(), entry.maxPrice(), listing.getNft().getId()) == 0) {
+                continue;
+            }
+            User buyer = userRepository.findById(entry.buyerId()).orElseThrow();
+            AuctionSettlementService.Result fill = settlementService.settleEscrowed(listing, buyer, entry.maxPrice(), entry.maxPrice());
+            if (fill.outcome() != AuctionSettlementService.Outcome.OK) {
+                throw new IllegalStateException("Buy order " + entry.orderId() + " could not fill listing " + listing.getId());
+            }
+            return Optional.of(entry.maxPrice());
+        }
+    }
+
+    private void add(String nftName, BuyOrderBook.Entry entry) {
+        BuyOrderBook book = books.computeIfAbsent(nftName, name -> new BuyOrderBook());
+        synchronized (book) {
+            book.add(entry);
+        }
+    }
+
+    private void restoreOnRollback(BuyOrderBook book, BuyOrderBook.Entry entry) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    synchronized (book) {
+                        book.restore(entry);
+                    }
+                }
+            }
+        });
+    }
+}
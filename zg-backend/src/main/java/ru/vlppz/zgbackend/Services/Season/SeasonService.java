@@ -0,0 +1,185 @@
+package ru.vlppz.zgbackend.Services.Season;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Season.Season;
+import ru.vlppz.zgbackend.DB.Season.SeasonRepository;
+import ru.vlppz.zgbackend.DB.Season.SeasonSnapshot;
+import ru.vlppz.zgbackend.DB.Season.SeasonSnapshotRepository;
+
+import javax.sql.DataSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class SeasonService {
+    private static final Logger log = LoggerFactory.getLogger(SeasonService.class);
+    private static final int SNAPSHOT_FETCH_SIZE = 10_000;
+    private static final int DECODED_CACHE_SIZE = 4;
+
+    public record ArchivedSeason(Season season, String checksum, SeasonStandings standings) {}
+
+    private final SeasonRepository seasonRepository;
+    private final SeasonSnapshotRepository seasonSnapshotRepository;
+    private final JdbcTemplate snapshotJdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate writeTransaction;
+
+    // Snapshots are immutable, so decoded standings can be cached without invalidation
+    private final Map<Long, ArchivedSeason> decoded = new LinkedHashMap<>(DECODED_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ArchivedSeason> eldest) {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
+
+    public SeasonService(SeasonRepository seasonRepository,
+                         SeasonSnapshotRepository seasonSnapshotRepository,
+                         DataSource dataSource,
+                         PlatformTransactionManager transactionManager) {
+        this.seasonRepository = seasonRepository;
+        this.seasonSnapshotRepository = seasonSnapshotRepository;
+
+        // fetchSize inside a transaction makes the Postgres driver stream through a server-side cursor
+        this.snapshotJdbcTemplate = new JdbcTemplate(dataSource);
+        this.snapshotJdbcTemplate.setFetchSize(SNAPSHOT_FETCH_SIZE);
+
+        // One consistent MVCC view of users for the whole scan; readers never block writers in Postgres
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureActiveSeason() {
+        if (seasonRepository.findFirstByActiveTrueOrderByStartedAtDesc().isEmpty()) {
+            startSeason(defaultName());
+        }
+    }
+
+    @Scheduled(cron = "${season.rollover-cron:0 0 0 * * MON}")
+    public void scheduledRollover() {
+        try {
+            rollover(null);
+        } catch (Exception e) {
+            log.warn("Season rollover failed: {}", e.getMessage());
+        }
+    }
+
+    public Optional<Season> currentSeason() {
+        return seasonRepository.findFirstByActiveTrueOrderByStartedAtDesc();
+    }
+
+    // Freezes the current season's standings and opens the next one
+    public synchronized Season rollover(String nextSeasonName) {
+        Season current = currentSeason().orElseGet(() -> startSeason(defaultName()));
+
+        SeasonStandings standings = snapshotTransaction.execute(status -> readStandings());
+        byte[] data = standings.encode();
+        String checksum = sha256(data);
+        LocalDateTime now = LocalDateTime.now();
+
+        Season next = writeTransaction.execute(status -> {
+            SeasonSnapshot snapshot = new SeasonSnapshot();
+            snapshot.setSeasonId(current.getId());
+            snapshot.setData(data);
+            snapshot.setChecksum(checksum);
+            snapshot.setTakenAt(now);
+            seasonSnapshotRepository.save(snapshot);
+
+            current.setActive(false);
+            current.setEndedAt(now);
+            current.setEntryCount(standings.size());
+            seasonRepository.save(current);
+
+            return startSeason(nextSeasonName != null && !nextSeasonName.isBlank() ? nextSeasonName : defaultName());
+        });
+
+        log.info("Season {} closed with {} players ({} bytes snapshot)", current.getId(), standings.size(), data.length);
+        return next;
+    }
+
+    public Optional<ArchivedSeason> archivedSeason(Long seasonId) {
+        synchronized (decoded) {
+            ArchivedSeason cached = decoded.get(seasonId);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        Optional<Season> season = seasonRepository.findById(seasonId);
+        Optional<SeasonSnapshot> snapshot = seasonSnapshotRepository.findById(seasonId);
+        if (season.isEmpty() || snapshot.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ArchivedSeason archived = new ArchivedSeason(season.get(), snapshot.get().getChecksum(),
+                SeasonStandings.decode(snapshot.get().getData()));
+        synchronized (decoded) {
+            decoded.put(seasonId, archived);
+        }
+        return Optional.of(archived);
+    }
+
+    private SeasonStandings readStandings() {
+        StandingsCollector collector = new StandingsCollector();
+        snapshotJdbcTemplate.query("SELECT id, balance FROM users ORDER BY balance DESC, id ASC", collector);
+        return SeasonStandings.ofSorted(collector.ids, collector.balances, collector.count);
+    }
+
+    private static final class StandingsCollector implements RowCallbackHandler {
+        long[] ids = new long[1024];
+        long[] balances = new long[1024];
+        int count;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                balances = Arrays.copyOf(balances, count * 2);
+            }
+            ids[count] = rs.getLong(1);
+            balances[count] = rs.getLong(2);
+            count++;
+        }
+    }
+
+    private Season startSeason(String name) {
+        Season season = new Season();
+        season.setName(name);
+        season.setStartedAt(LocalDateTime.now());
+        season.setActive(true);
+        return seasonRepository.save(season);
+    }
+
+    private String defaultName() {
+        return "Сезон " + (seasonRepository.count() + 1);
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
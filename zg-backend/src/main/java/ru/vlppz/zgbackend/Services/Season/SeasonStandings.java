@@ -0,0 +1,128 @@
+package ru.vlppz.zgbackend.Services.Season;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Final standings of a season as three parallel columns ordered by rank.
+// Serialized column by column (all ids, then all balances, then all ranks) and gzipped,
+// so a season with a million players is a few megabytes instead of a million rows.
+public final class SeasonStandings {
+    private static final int MAGIC = 0x5A475353; // "ZGSS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long[] userIds;
+    private final long[] balances;
+    private final int[] ranks;
+    // The ids sorted ascending with each one's position alongside, for lookups by user
+    private final long[] sortedIds;
+    private final int[] sortedPositions;
+
+    private SeasonStandings(long[] userIds, long[] balances, int[] ranks) {
+        this.userIds = userIds;
+        this.balances = balances;
+        this.ranks = ranks;
+
+        Integer[] order = new Integer[userIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(userIds[a], userIds[b]));
+        this.sortedIds = new long[order.length];
+        this.sortedPositions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = userIds[order[i]];
+            sortedPositions[i] = order[i];
+        }
+    }
+
+    // Balances must already be sorted descending; ties share a rank ("1, 2, 2, 4")
+    public static SeasonStandings ofSorted(long[] userIds, long[] balances, int count) {
+        long[] ids = Arrays.copyOf(userIds, count);
+        long[] values = Arrays.copyOf(balances, count);
+        int[] ranks = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranks[i] = i > 0 && values[i] == values[i - 1] ? ranks[i - 1] : i + 1;
+        }
+        return new SeasonStandings(ids, values, ranks);
+    }
+
+    public int size() {
+        return userIds.length;
+    }
+
+    public long userIdAt(int position) {
+        return userIds[position];
+    }
+
+    public long balanceAt(int position) {
+        return balances[position];
+    }
+
+    public int rankAt(int position) {
+        return ranks[position];
+    }
+
+    public int positionOf(long userId) {
+        int found = Arrays.binarySearch(sortedIds, userId);
+        return found >= 0 ? sortedPositions[found] : -1;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(bytes), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(userIds.length);
+            for (long userId : userIds) {
+                out.writeLong(userId);
+            }
+            for (long balance : balances) {
+                out.writeLong(balance);
+            }
+            for (int rank : ranks) {
+                out.writeInt(rank);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static SeasonStandings decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(data)), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Not a season snapshot");
+            }
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported season snapshot version " + version);
+            }
+            int count = in.readInt();
+            long[] userIds = new long[count];
+            long[] balances = new long[count];
+            int[] ranks = new int[count];
+            for (int i = 0; i < count; i++) {
+                userIds[i] = in.readLong();
+            }
+            for (int i = 0; i < count; i++) {
+                balances[i] = in.readLong();
+            }
+            for (int i = 0; i < count; i++) {
+                ranks[i] = in.readInt();
+            }
+            return new SeasonStandings(userIds, balances, ranks);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.vlppz.zgbackend.Services.Shop;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The shop listing, serialized once per change instead of once per request. Writers only bump the
+// version (after their transaction commits); the next reader rebuilds the bytes. The ETag is a hash
+// of the bytes, so it stays valid across restarts and idle clients keep getting 304s.
+@Service
+public class CatalogCache {
+    public record Catalog(long version, byte[] json, String etag) {}
+
+    // Same shape as NFTListResponse
+    private record Listing(List<NFT> nfts, List<NFTEdition> editions) {}
+
+    private final NFTRepository nftRepository;
+    private final NFTEditionRepository nftEditionRepository;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong version = new AtomicLong(1);
+
+    private volatile Catalog current;
+
+    public CatalogCache(NFTRepository nftRepository,
+                        NFTEditionRepository nftEditionRepository,
+                        ObjectMapper objectMapper) {
+        this.nftRepository = nftRepository;
+        this.nftEditionRepository = nftEditionRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public Catalog catalog() throws JsonProcessingException {
+        Catalog catalog = current;
+        if (catalog != null && catalog.version() == version.get()) {
+            return catalog;
+        }
+        synchronized (this) {
+            catalog = current;
+            long wanted = version.get();
+            if (catalog != null && catalog.version() == wanted) {
+                return catalog;
+            }
+            // Tagged with the version read before the queries: a change that lands meanwhile
+            // bumps the version again and forces another rebuild on the next request
+            Listing listing = new Listing(nftRepository.findByOwnerIsNull(),
+                    nftEditionRepository.findByRemainingGreaterThanOrderByIdAsc(0L));
+            byte[] json = objectMapper.writeValueAsBytes(listing);
+            current = new Catalog(wanted, json, etagOf(json));
+            return current;
+        }
+    }
+
+    // Call from inside the writing transaction; takes effect once it commits
+    public void invalidate() {
+        AfterCommit.run(version::incrementAndGet);
+    }
+
+    private static String etagOf(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
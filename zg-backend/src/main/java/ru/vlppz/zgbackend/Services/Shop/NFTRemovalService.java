@@ -0,0 +1,154 @@
+package ru.vlppz.zgbackend.Services.Shop;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Auction.AuctionBidRepository;
+import ru.vlppz.zgbackend.DB.Auction.AuctionRepository;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Auction.AuctionBidService;
+import ru.vlppz.zgbackend.Services.Drop.DropQueueService;
+import ru.vlppz.zgbackend.Services.Engine.EconomyEngine;
+import ru.vlppz.zgbackend.Services.Image.ImageStorage;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Deletes NFTs with everything that references them as a handful of bulk statements per batch
+// (bids, auctions, pins, then the rows) instead of loading each auction entity and deleting it.
+// Admin removals by name walk the copies in id batches, one transaction each.
+@Service
+public class NFTRemovalService {
+    private static final Logger log = LoggerFactory.getLogger(NFTRemovalService.class);
+
+    public record BatchResult(int editionsRetired, long nftsDeleted) {}
+
+    private final NFTRepository nftRepository;
+    private final NFTEditionRepository nftEditionRepository;
+    private final AuctionRepository auctionRepository;
+    private final AuctionBidRepository auctionBidRepository;
+    private final UserRepository userRepository;
+    private final NetWorthService netWorthService;
+    private final LeaderboardIndex leaderboardIndex;
+    private final MarketEventBus marketEventBus;
+    private final DropQueueService dropQueueService;
+    private final CatalogCache catalogCache;
+    private final ImageStorage imageStorage;
+    private final EconomyEngine economyEngine;
+    private final AuctionBidService auctionBidService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${nft.removal.batch-size:1000}")
+    private int batchSize;
+
+    public NFTRemovalService(NFTRepository nftRepository,
+                             NFTEditionRepository nftEditionRepository,
+                             AuctionRepository auctionRepository,
+                             AuctionBidRepository auctionBidRepository,
+                             UserRepository userRepository,
+                             NetWorthService netWorthService,
+                             LeaderboardIndex leaderboardIndex,
+                             MarketEventBus marketEventBus,
+                             DropQueueService dropQueueService,
+                             CatalogCache catalogCache,
+                             ImageStorage imageStorage,
+                             EconomyEngine economyEngine,
+                             AuctionBidService auctionBidService,
+                             PlatformTransactionManager transactionManager) {
+        this.nftRepository = nftRepository;
+        this.nftEditionRepository = nftEditionRepository;
+        this.auctionRepository = auctionRepository;
+        this.auctionBidRepository = auctionBidRepository;
+        this.userRepository = userRepository;
+        this.netWorthService = netWorthService;
+        this.leaderboardIndex = leaderboardIndex;
+        this.marketEventBus = marketEventBus;
+        this.dropQueueService = dropQueueService;
+        this.catalogCache = catalogCache;
+        this.imageStorage = imageStorage;
+        this.economyEngine = economyEngine;
+        this.auctionBidService = auctionBidService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Owners lose the NFTs' value from their net worth, open listings are announced as cancelled
+    @Transactional
+    public int delete(List<Long> nftIds) {
+        for (Object[] row : nftRepository.sumValuationByOwnerForIds(nftIds)) {
+            netWorthService.adjust((Long) row[0], -((Number) row[1]).longValue());
+        }
+        List<Long> activeAuctionIds = new ArrayList<>();
+        for (Object[] row : auctionRepository.findActiveIdsByNftIds(nftIds)) {
+            activeAuctionIds.add((Long) row[0]);
+            marketEventBus.listingCancelled((Long) row[0], (Long) row[1]);
+        }
+
+        auctionBidRepository.deleteByNftIds(nftIds);
+        auctionRepository.deleteByNftIds(nftIds);
+        List<Long> unpinnedUsers = userRepository.unpinNfts(nftIds);
+        AfterCommit.run(() -> leaderboardIndex.clearPinned(unpinnedUsers));
+        int deleted = nftRepository.deleteByIds(nftIds);
+        catalogCache.invalidate();
+        economyEngine.forgetNfts(nftIds);
+        auctionBidService.forgetAuctions(activeAuctionIds);
+        return deleted;
+    }
+
+    // Takes the name out of the game: editions stop selling and every copy, owned or not, is deleted
+    public BatchResult deleteByName(String name) {
+        int retired = retireEditions(name);
+        List<String> imageURLs = nftRepository.findImageURLsByName(name);
+        long deleted = inBatches(() -> nftRepository.findIdsByName(name, 0L, Limit.of(batchSize)));
+
+        // Images are shared by content hash, so each file goes only with its last reference
+        for (String imageURL : imageURLs) {
+            imageStorage.deleteIfUnreferenced(imageURL);
+        }
+        log.info("Deleted {} NFTs named '{}', retired {} editions", deleted, name, retired);
+        return new BatchResult(retired, deleted);
+    }
+
+    // Stops selling the name: editions are retired and unsold shop copies deleted; owned copies stay
+    public BatchResult retireByName(String name) {
+        int retired = retireEditions(name);
+        long deleted = inBatches(() -> nftRepository.findUnownedIdsByName(name, 0L, Limit.of(batchSize)));
+        log.info("Retired {} editions and {} shop NFTs named '{}'", retired, deleted, name);
+        return new BatchResult(retired, deleted);
+    }
+
+    private int retireEditions(String name) {
+        List<Long> editionIds = nftEditionRepository.findIdsByName(name);
+        Integer retired = transactionTemplate.execute(status -> nftEditionRepository.retireByName(name));
+        editionIds.forEach(dropQueueService::forget);
+        editionIds.forEach(economyEngine::forgetEdition);
+        catalogCache.invalidate();
+        return retired != null ? retired : 0;
+    }
+
+    // Null from a batch means nothing was left to delete
+    private long inBatches(Supplier<List<Long>> nextBatch) {
+        long total = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = nextBatch.get();
+                return ids.isEmpty() ? null : delete(ids);
+            });
+            if (deleted == null) {
+                return total;
+            }
+            total += deleted;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.vlppz.zgbackend.Services.Shop;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
+import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTEdition;
+import ru.vlppz.zgbackend.DB.NFT.NFTEditionRepository;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.AfterCommit;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Leaderboard.NetWorthService;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
+import ru.vlppz.zgbackend.Services.Market.MarketEventBus;
+
+import java.util.Optional;
+
+// Shop purchase as two conditional updates in one transaction instead of read-check-save.
+// Concurrent buyers of the same NFT queue on its row lock; once the winner commits, the others'
+// claim matches zero rows and they get ALREADY_OWNED without any lost update.
+@Service
+public class ShopPurchaseService {
+    public enum Outcome {
+        OK,
+        USER_NOT_FOUND,
+        NFT_NOT_FOUND,
+        ALREADY_OWNED,
+        SOLD_OUT,
+        INSUFFICIENT_FUNDS
+    }
+
+    public record Result(Outcome outcome, Long newBalance, Long nftId) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null, null);
+        }
+    }
+
+    private final NFTRepository nftRepository;
+    private final NFTEditionRepository nftEditionRepository;
+    private final UserRepository userRepository;
+    private final NetWorthService netWorthService;
+    private final LeaderboardIndex leaderboardIndex;
+    private final CatalogCache catalogCache;
+    private final MarketEventBus marketEventBus;
+    private final CoinLedger coinLedger;
+
+    public ShopPurchaseService(NFTRepository nftRepository,
+                               NFTEditionRepository nftEditionRepository,
+                               UserRepository userRepository,
+                               NetWorthService netWorthService,
+                               LeaderboardIndex leaderboardIndex,
+                               CatalogCache catalogCache,
+                               MarketEventBus marketEventBus,
+                               CoinLedger coinLedger) {
+        this.nftRepository = nftRepository;
+        this.nftEditionRepository = nftEditionRepository;
+        this.userRepository = userRepository;
+        this.netWorthService = netWorthService;
+        this.leaderboardIndex = leaderboardIndex;
+        this.catalogCache = catalogCache;
+        this.marketEventBus = marketEventBus;
+        this.coinLedger = coinLedger;
+    }
+
+    @Transactional
+    public Result purchase(Long userId, Long nftId) {
+        Optional<NFT> nftOptional = nftRepository.findById(nftId);
+        if (nftOptional.isEmpty()) {
+            return Result.of(Outcome.NFT_NOT_FOUND);
+        }
+        NFT nft = nftOptional.get();
+
+        if (nftRepository.claimIfUnowned(nftId, userId) == 0) {
+            return Result.of(Outcome.ALREADY_OWNED);
+        }
+
+        Optional<Long> newBalance = userRepository.debitIfSufficientReturningBalance(userId, nft.getPrice());
+        if (newBalance.isEmpty()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return Result.of(userRepository.existsById(userId) ? Outcome.INSUFFICIENT_FUNDS : Outcome.USER_NOT_FOUND);
+        }
+
+        coinLedger.record(userId, -nft.getPrice(), LedgerEntry.Reason.SHOP_PURCHASE, nftId);
+        marketEventBus.shopItemSold(nftId, null, nft.getName(), nft.getPrice());
+        return completed(userId, newBalance.get(), nft.valuation(), nftId);
+    }
+
+    // Same shape for editions: the stock decrement is the guarded claim, and the token row is created
+    // only for the buyer who got a copy
+    @Transactional
+    public Result purchaseEdition(Long userId, Long editionId) {
+        Optional<NFTEdition> editionOptional = nftEditionRepository.findById(editionId);
+        if (editionOptional.isEmpty()) {
+            return Result.of(Outcome.NFT_NOT_FOUND);
+        }
+        NFTEdition edition = editionOptional.get();
+
+        if (nftEditionRepository.takeOne(editionId) == 0) {
+            return Result.of(Outcome.SOLD_OUT);
+        }
+
+        Optional<Long> newBalance = userRepository.debitIfSufficientReturningBalance(userId, edition.getPrice());
+        if (newBalance.isEmpty()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return Result.of(userRepository.existsById(userId) ? Outcome.INSUFFICIENT_FUNDS : Outcome.USER_NOT_FOUND);
+        }
+
+        NFT nft = nftRepository.save(edition.mintFor(userRepository.getReferenceById(userId)));
+        coinLedger.record(userId, -edition.getPrice(), LedgerEntry.Reason.SHOP_PURCHASE, nft.getId());
+        marketEventBus.shopItemSold(nft.getId(), editionId, edition.getName(), edition.getPrice());
+        return completed(userId, newBalance.get(), nft.valuation(), nft.getId());
+    }
+
+    private Result completed(Long userId, long newBalance, long valuation, Long nftId) {
+        netWorthService.adjust(userId, valuation);
+        AfterCommit.run(() -> leaderboardIndex.updateBalance(userId, newBalance));
+        catalogCache.invalidate();
+        return new Result(Outcome.OK, newBalance, nftId);
+    }
+}
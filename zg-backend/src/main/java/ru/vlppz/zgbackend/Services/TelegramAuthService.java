@@ -5,8 +5,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.vlppz.zgbackend.DB.Ledger.LedgerEntry;
 import ru.vlppz.zgbackend.DB.User.User;
 import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Leaderboard.LeaderboardIndex;
+import ru.vlppz.zgbackend.Services.Ledger.CoinLedger;
 import ru.vlppz.zgbackend.Services.ReferralTrackingService;
 
 import javax.crypto.Mac;
@@ -25,14 +28,19 @@ public class TelegramAuthService {
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
     private final ReferralTrackingService referralTrackingService;
+    private final CoinLedger coinLedger;
+    private final LeaderboardIndex leaderboardIndex;
 
     @Value("${telegram.bot.token}")
     private String botToken;
 
-    public TelegramAuthService(UserRepository userRepository, ObjectMapper objectMapper, ReferralTrackingService referralTrackingService) {
+    public TelegramAuthService(UserRepository userRepository, ObjectMapper objectMapper, ReferralTrackingService referralTrackingService,
+                               CoinLedger coinLedger, LeaderboardIndex leaderboardIndex) {
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
         this.referralTrackingService = referralTrackingService;
+        this.coinLedger = coinLedger;
+        this.leaderboardIndex = leaderboardIndex;
     }
 
     public User authenticateOrCreate(String rawInitData) {
@@ -114,11 +122,12 @@ public class TelegramAuthService {
                     user.setReferredBy(referrer.get());
                     log.info("Set referredBy for user {} to referrer {}", telegramId, referrer.get().getTelegramId());
                     
-                    // Give referral bonus to referrer
-                    User referrerUser = referrer.get();
-                    referrerUser.setBalance(referrerUser.getBalance() + 300L);
-                    referrerUser.setReferralCount(referrerUser.getReferralCount() + 1);
-                    userRepository.save(referrerUser);
+                    // Give referral bonus to referrer, in place: the loaded copy may already be stale
+                    Long referrerId = referrer.get().getId();
+                    userRepository.creditReferralBonus(referrerId, 300L).ifPresent(balance -> {
+                        coinLedger.record(referrerId, 300L, LedgerEntry.Reason.REFERRAL_BONUS, null);
+                        leaderboardIndex.updateBalance(referrerId, balance);
+                    });
                     
                     log.info("New user {} referred by {}. Referrer got 300 coins.", telegramId, referrerTelegramId);
                 } else {
@@ -0,0 +1,76 @@
+package ru.vlppz.zgbackend.Services.Trade;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vlppz.zgbackend.DB.Trade.CandleResolution;
+
+import java.time.LocalDateTime;
+
+// Nightly housekeeping for the trade history. Every trade is already rolled up into its candles when
+// it is recorded, so raw rows past the retention only move to trades_archive, and the fine-grained
+// candles are thinned out once coarser ones cover the same period. Day candles are kept forever.
+// Works in small batches, each in its own transaction, so settlements are never blocked for long.
+@Service
+public class TradeArchiver {
+    private static final Logger log = LoggerFactory.getLogger(TradeArchiver.class);
+
+    private static final String ARCHIVE_BATCH_SQL =
+            "WITH moved AS (DELETE FROM trades WHERE id IN " +
+            "(SELECT id FROM trades WHERE executed_at < ? ORDER BY id LIMIT ?) " +
+            "RETURNING id, auction_id, nft_id, nft_name, seller_id, buyer_id, price, executed_at) " +
+            "INSERT INTO trades_archive (id, auction_id, nft_id, nft_name, seller_id, buyer_id, price, executed_at) " +
+            "SELECT id, auction_id, nft_id, nft_name, seller_id, buyer_id, price, executed_at FROM moved";
+    private static final String PRUNE_CANDLES_SQL =
+            "DELETE FROM price_candles WHERE id IN " +
+            "(SELECT id FROM price_candles WHERE resolution = ? AND bucket_start < ? LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${trades.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${trades.minute-candles-retention-days:7}")
+    private int minuteCandlesRetentionDays;
+
+    @Value("${trades.hour-candles-retention-days:365}")
+    private int hourCandlesRetentionDays;
+
+    @Value("${trades.archive-batch-size:5000}")
+    private int batchSize;
+
+    public TradeArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${trades.archive-cron:0 30 3 * * *}")
+    public void archive() {
+        LocalDateTime now = LocalDateTime.now();
+        long archived = inBatches(ARCHIVE_BATCH_SQL, now.minusDays(retentionDays));
+        long minutes = inBatches(PRUNE_CANDLES_SQL, CandleResolution.MINUTE.name(), now.minusDays(minuteCandlesRetentionDays));
+        long hours = inBatches(PRUNE_CANDLES_SQL, CandleResolution.HOUR.name(), now.minusDays(hourCandlesRetentionDays));
+        log.info("Archived {} trades, pruned {} minute and {} hour candles", archived, minutes, hours);
+    }
+
+    private long inBatches(String sql, Object... cutoffArgs) {
+        Object[] args = new Object[cutoffArgs.length + 1];
+        System.arraycopy(cutoffArgs, 0, args, 0, cutoffArgs.length);
+        args[cutoffArgs.length] = batchSize;
+
+        long total = 0;
+        while (true) {
+            Integer affected = transactionTemplate.execute(status -> jdbcTemplate.update(sql, args));
+            if (affected == null || affected == 0) {
+                return total;
+            }
+            total += affected;
+        }
+    }
+}
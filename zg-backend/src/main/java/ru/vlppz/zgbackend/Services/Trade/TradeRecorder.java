@@ -0,0 +1,71 @@
+package ru.vlppz.zgbackend.Services.Trade;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.vlppz.zgbackend.DB.Auction.Auction;
+import ru.vlppz.zgbackend.DB.Trade.CandleResolution;
+import ru.vlppz.zgbackend.DB.Trade.Trade;
+import ru.vlppz.zgbackend.DB.Trade.TradeRepository;
+import ru.vlppz.zgbackend.DB.User.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Appends the trade row for a settled listing and folds it into the minute/hour/day candles of its
+// NFT name, all in the settling transaction: a sale and its chart point commit or roll back together.
+@Service
+public class TradeRecorder {
+    // The SET expressions see the row as it was before this upsert
+    private static final String UPSERT_CANDLE_SQL =
+            "INSERT INTO price_candles (nft_name, resolution, bucket_start, open, high, low, close, volume, turnover, open_trade_id, close_trade_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, 1, ?, ?, ?) " +
+            "ON CONFLICT (nft_name, resolution, bucket_start) DO UPDATE SET " +
+            "open = CASE WHEN EXCLUDED.open_trade_id < price_candles.open_trade_id THEN EXCLUDED.open ELSE price_candles.open END, " +
+            "close = CASE WHEN EXCLUDED.close_trade_id > price_candles.close_trade_id THEN EXCLUDED.close ELSE price_candles.close END, " +
+            "high = GREATEST(price_candles.high, EXCLUDED.high), " +
+            "low = LEAST(price_candles.low, EXCLUDED.low), " +
+            "volume = price_candles.volume + 1, " +
+            "turnover = price_candles.turnover + EXCLUDED.turnover, " +
+            "open_trade_id = LEAST(price_candles.open_trade_id, EXCLUDED.open_trade_id), " +
+            "close_trade_id = GREATEST(price_candles.close_trade_id, EXCLUDED.close_trade_id)";
+
+    private final TradeRepository tradeRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public TradeRecorder(TradeRepository tradeRepository, JdbcTemplate jdbcTemplate) {
+        this.tradeRepository = tradeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Trade record(Auction auction, User seller, User buyer, long price) {
+        return record(auction.getId(), auction.getNft().getId(), auction.getNft().getName(),
+                seller.getId(), buyer.getId(), price, LocalDateTime.now());
+    }
+
+    // Same, from plain values (sales applied by the economy engine)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Trade record(Long auctionId, Long nftId, String nftName, Long sellerId, Long buyerId, long price, LocalDateTime executedAt) {
+        Trade trade = new Trade();
+        trade.setAuctionId(auctionId);
+        trade.setNftId(nftId);
+        trade.setNftName(nftName);
+        trade.setSellerId(sellerId);
+        trade.setBuyerId(buyerId);
+        trade.setPrice(price);
+        trade.setExecutedAt(executedAt);
+        tradeRepository.save(trade);
+
+        // Always MINUTE, HOUR, DAY, so two fills of one name lock the candle rows in the same order
+        List<Object[]> rows = new ArrayList<>(CandleResolution.values().length);
+        for (CandleResolution resolution : CandleResolution.values()) {
+            rows.add(new Object[]{trade.getNftName(), resolution.name(), resolution.bucketOf(trade.getExecutedAt()),
+                    price, price, price, price, price, trade.getId(), trade.getId()});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_CANDLE_SQL, rows);
+        return trade;
+    }
+}
@@ -2,8 +2,10 @@ package ru.vlppz.zgbackend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ZgBackendApplication {
 
     public static void main(String[] args) {
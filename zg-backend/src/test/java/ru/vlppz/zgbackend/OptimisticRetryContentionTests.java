@@ -0,0 +1,120 @@
+package ru.vlppz.zgbackend;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.OptimisticRetryExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Several writers add to one versioned user row through OptimisticRetryExecutor. Each first attempt
+// waits until every writer has read the row, so all but one of them must lose the version check and
+// retry from the winner's state. Every increment has to land exactly once.
+@SpringBootTest(properties = "economy.retry.max-attempts=50")
+class OptimisticRetryContentionTests {
+    private static final String OPERATION = "test.contention";
+    // Below the connection pool size: every writer holds a transaction while it waits for the others
+    private static final int WRITERS = 8;
+    private static final long INCREMENT = 10L;
+
+    @Autowired
+    private OptimisticRetryExecutor optimisticRetry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    // Like the purchase test: anything the ledger and net worth jobs wrote for the user goes too
+    @AfterEach
+    void cleanup() {
+        if (userId != null) {
+            jdbcTemplate.update("DELETE FROM coin_ledger WHERE user_id = ?", userId);
+            jdbcTemplate.update("DELETE FROM balance_checkpoints WHERE user_id = ?", userId);
+            jdbcTemplate.update("DELETE FROM user_net_worth WHERE user_id = ?", userId);
+            userRepository.deleteById(userId);
+        }
+    }
+
+    @Test
+    void concurrentWritesToOneRow() throws Exception {
+        User user = new User();
+        user.setTelegramId(ThreadLocalRandom.current().nextLong(1_000_000_000L, 2_000_000_000L));
+        user.setBalance(0L);
+        user.setUsername("contention");
+        userId = userRepository.save(user).getId();
+
+        double conflictsBefore = count("economy.optimistic.conflicts");
+        double attemptsBefore = count("economy.optimistic.attempts");
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch allRead = new CountDownLatch(WRITERS);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            results.add(pool.submit(() -> {
+                boolean[] first = {true};
+                return optimisticRetry.execute(OPERATION, status -> {
+                    User row = userRepository.findById(userId).orElseThrow();
+                    if (first[0]) {
+                        first[0] = false;
+                        allRead.countDown();
+                        awaitQuietly(allRead);
+                    }
+                    row.setBalance(row.getBalance() + INCREMENT);
+                    return userRepository.save(row).getBalance();
+                });
+            }));
+        }
+
+        // get() rethrows if a writer gave up or failed, so every writer committed once it returns
+        for (Future<Long> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        double conflicts = count("economy.optimistic.conflicts") - conflictsBefore;
+        double attempts = count("economy.optimistic.attempts") - attemptsBefore;
+        assertTrue(conflicts >= WRITERS - 1);
+        assertEquals(WRITERS + conflicts, attempts);
+        assertEquals(0.0, count("economy.optimistic.exhausted"));
+
+        User after = userRepository.findById(userId).orElseThrow();
+        assertEquals(WRITERS * INCREMENT, after.getBalance());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).tag("operation", OPERATION).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+}
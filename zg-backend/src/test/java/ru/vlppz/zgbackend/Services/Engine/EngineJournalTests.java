@@ -0,0 +1,81 @@
+package ru.vlppz.zgbackend.Services.Engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Restarts over a journal whose segments leave gaps behind each other: every intact record must be
+// replayed, and appends after the restart must neither overwrite records nor collide with a file name.
+class EngineJournalTests {
+    private static final long SEGMENT_BYTES = 16L * EngineEffect.BYTES;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAndAppendsAcrossGapSegment() throws IOException {
+        try (EngineJournal journal = new EngineJournal(dir, SEGMENT_BYTES)) {
+            assertEquals(0, journal.open(0, effect -> { }));
+            appendRange(journal, 1, 5);
+            // Restarted behind a checkpoint at 9
+            appendRange(journal, 10, 12);
+            journal.force();
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        try (EngineJournal journal = new EngineJournal(dir, SEGMENT_BYTES)) {
+            assertEquals(12, journal.open(3, effect -> replayed.add(effect.sequence())));
+            appendRange(journal, 13, 14);
+            appendRange(journal, 20, 20);
+            journal.force();
+        }
+        assertEquals(List.of(4L, 5L, 10L, 11L, 12L), replayed);
+
+        replayed.clear();
+        try (EngineJournal journal = new EngineJournal(dir, SEGMENT_BYTES)) {
+            assertEquals(20, journal.open(0, effect -> replayed.add(effect.sequence())));
+        }
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 10L, 11L, 12L, 13L, 14L, 20L), replayed);
+    }
+
+    @Test
+    void dropsSegmentThatWasRolledButNeverWritten() throws IOException {
+        try (EngineJournal journal = new EngineJournal(dir, SEGMENT_BYTES)) {
+            journal.open(0, effect -> { });
+            appendRange(journal, 1, 3);
+            journal.force();
+        }
+        Path empty = dir.resolve(String.format("journal-%020d.log", 8));
+        Files.write(empty, new byte[(int) SEGMENT_BYTES]);
+
+        List<Long> replayed = new ArrayList<>();
+        try (EngineJournal journal = new EngineJournal(dir, SEGMENT_BYTES)) {
+            assertEquals(3, journal.open(0, effect -> replayed.add(effect.sequence())));
+            assertFalse(Files.exists(empty));
+            appendRange(journal, 4, 4);
+            appendRange(journal, 8, 8);
+            journal.force();
+        }
+        assertEquals(List.of(1L, 2L, 3L), replayed);
+
+        replayed.clear();
+        try (EngineJournal journal = new EngineJournal(dir, SEGMENT_BYTES)) {
+            assertEquals(8, journal.open(0, effect -> replayed.add(effect.sequence())));
+        }
+        assertEquals(List.of(1L, 2L, 3L, 4L, 8L), replayed);
+    }
+
+    private static void appendRange(EngineJournal journal, long from, long to) throws IOException {
+        for (long sequence = from; sequence <= to; sequence++) {
+            journal.append(new EngineEffect(sequence, EngineEffect.Type.REWARD, 1, 0, 0, 10, 1, 0, sequence));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.vlppz.zgbackend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.vlppz.zgbackend.DB.NFT.NFT;
+import ru.vlppz.zgbackend.DB.NFT.NFTRepository;
+import ru.vlppz.zgbackend.DB.User.User;
+import ru.vlppz.zgbackend.DB.User.UserRepository;
+import ru.vlppz.zgbackend.Services.Shop.ShopPurchaseService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Hammers a single shop NFT from many threads at once: exactly one buyer must win and
+// no balance may be debited for a lost race.
+@SpringBootTest
+class ShopPurchaseConcurrencyTests {
+    private static final int BUYERS = 300;
+    private static final long START_BALANCE = 1_000L;
+    private static final long PRICE = 100L;
+
+    @Autowired
+    private ShopPurchaseService shopPurchaseService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NFTRepository nftRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private Long nftId;
+
+    // The purchase also writes the buyer's net worth and ledger entry (folded into a checkpoint later)
+    @AfterEach
+    void cleanup() {
+        if (nftId != null) {
+            nftRepository.deleteById(nftId);
+        }
+        Long[] ids = userIds.toArray(Long[]::new);
+        jdbcTemplate.update("DELETE FROM coin_ledger WHERE user_id = ANY(?::bigint[])", (Object) ids);
+        jdbcTemplate.update("DELETE FROM balance_checkpoints WHERE user_id = ANY(?::bigint[])", (Object) ids);
+        jdbcTemplate.update("DELETE FROM user_net_worth WHERE user_id = ANY(?::bigint[])", (Object) ids);
+        userRepository.deleteAllById(userIds);
+    }
+
+    @Test
+    void oneNftManyBuyers() throws Exception {
+        long telegramBase = ThreadLocalRandom.current().nextLong(1_000_000_000L, 2_000_000_000L);
+        for (int i = 0; i < BUYERS; i++) {
+            User user = new User();
+            user.setTelegramId(telegramBase + i);
+            user.setBalance(START_BALANCE);
+            user.setUsername("bench" + i);
+            userIds.add(userRepository.save(user).getId());
+        }
+
+        NFT nft = new NFT();
+        nft.setName("bench");
+        nft.setDescription("bench");
+        nft.setPrice(PRICE);
+        nft.setGradientColor1("#000000");
+        nft.setGradientColor2("#ffffff");
+        nft.setImageURL("/uploads/bench.png");
+        nftId = nftRepository.save(nft).getId();
+
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ShopPurchaseService.Result>> results = new ArrayList<>();
+        for (Long userId : userIds) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return shopPurchaseService.purchase(userId, nftId);
+            }));
+        }
+
+        start.countDown();
+        int winners = 0;
+        int alreadyOwned = 0;
+        for (Future<ShopPurchaseService.Result> result : results) {
+            switch (result.get().outcome()) {
+                case OK -> winners++;
+                case ALREADY_OWNED -> alreadyOwned++;
+                default -> { }
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, winners);
+        assertEquals(BUYERS - 1, alreadyOwned);
+
+        long totalBalance = 0;
+        for (User user : userRepository.findAllById(userIds)) {
+            assertTrue(user.getBalance() >= 0);
+            totalBalance += user.getBalance();
+        }
+        assertEquals(BUYERS * START_BALANCE - PRICE, totalBalance);
+
+        NFT bought = nftRepository.findById(nftId).orElseThrow();
+        assertTrue(bought.isOwned());
+    }
+}
@@ -320,7 +320,7 @@ const AdminPanel = () => {
       console.log('Response body:', result);
 
       if (response.ok && result.status === 'ok') {
-        setMessage(`✅ Успешно создано ${result.nfts.length} NFT!`)
+        setMessage(`✅ Успешно создано ${result.edition.supply} NFT!`)
         setNftForm({
           name: '',
           description: '',
@@ -1,8 +1,11 @@
 import { useState, useEffect } from 'react'
 import { FaGavel, FaUser, FaClock, FaTimes } from 'react-icons/fa'
+import { subscribeMarket } from '../marketStream'
 
 const Auction = ({ user, refreshUserData }) => {
     const [auctions, setAuctions] = useState([])
+    const [nextCursor, setNextCursor] = useState(null)
+    const [isLoadingMore, setIsLoadingMore] = useState(false)
     const [myAuctions, setMyAuctions] = useState([])
     const [activeTab, setActiveTab] = useState('all')
     const [isLoading, setIsLoading] = useState(true)
@@ -18,22 +21,64 @@ const Auction = ({ user, refreshUserData }) => {
         }
     }, [user])
 
-    const loadAuctions = async () => {
+    // Live deltas: sold and cancelled listings drop out, new listings and resyncs reload the first page
+    useEffect(() => subscribeMarket((type, event) => {
+        if (type === 'LISTING_SOLD' || type === 'LISTING_CANCELLED') {
+            setAuctions(prev => prev.filter(auction => auction.id !== event.auctionId))
+            setMyAuctions(prev => prev.filter(auction => auction.id !== event.auctionId))
+        } else if (type === 'LISTING_CREATED' || type === 'RESYNC') {
+            loadAuctions(true)
+        }
+    }), [])
+
+    const fetchMarketPage = async (cursor) => {
+        const token = sessionStorage.getItem('authToken')
+        const headers = {}
+        if (token) {
+            headers['Authorization'] = `Bearer ${token}`
+        }
+
+        const params = new URLSearchParams({ sort: 'NEWEST', limit: '50' })
+        if (cursor) {
+            params.set('afterCreatedAt', cursor.afterCreatedAt)
+            params.set('afterId', cursor.afterId)
+        }
+
+        return fetch(`${import.meta.env.VITE_API_URL}/auction/market?${params}`, {
+            headers: headers
+        })
+    }
+
+    const cursorFrom = (data) => data.nextAfterId
+        ? { afterCreatedAt: data.nextAfterCreatedAt, afterId: data.nextAfterId }
+        : null
+
+    const loadMoreAuctions = async () => {
+        if (!nextCursor || isLoadingMore) return
         try {
-            setIsLoading(true)
-            const token = sessionStorage.getItem('authToken')
-            const headers = {}
-            if (token) {
-                headers['Authorization'] = `Bearer ${token}`
+            setIsLoadingMore(true)
+            const response = await fetchMarketPage(nextCursor)
+            if (response.ok) {
+                const data = await response.json()
+                setAuctions(prev => [...prev, ...(data.auctions || [])])
+                setNextCursor(cursorFrom(data))
             }
+        } catch (err) {
+            console.error('Error loading more auctions:', err)
+        } finally {
+            setIsLoadingMore(false)
+        }
+    }
 
-            const response = await fetch(`${import.meta.env.VITE_API_URL}/auction/all`, {
-                headers: headers
-            })
+    const loadAuctions = async (silent) => {
+        try {
+            if (silent !== true) setIsLoading(true)
+            const response = await fetchMarketPage(null)
 
             if (response.ok) {
                 const data = await response.json()
                 setAuctions(data.auctions || [])
+                setNextCursor(cursorFrom(data))
                 setError(null)
             } else {
                 setError('Не удалось загрузить аукционы')
@@ -67,13 +112,20 @@ const Auction = ({ user, refreshUserData }) => {
         }
     }
 
+    // Timed auctions take bids: the next acceptable bid is the start price, then the leading bid plus the step
+    const askingPrice = (auction) => auction.endsAt && auction.highestBidderId
+        ? auction.price + auction.minIncrement
+        : auction.price
+
+    const isLeading = (auction) => user && auction.endsAt && auction.highestBidderId === user.id
+
     const handleBuyFromAuction = async (auction) => {
         if (!user) {
             setMessage('❌ Необходимо войти в систему')
             return
         }
 
-        if (user.balance < auction.price) {
+        if (user.balance < askingPrice(auction)) {
             setMessage('❌ Недостаточно средств')
             return
         }
@@ -83,13 +135,16 @@ const Auction = ({ user, refreshUserData }) => {
             setMessage('')
 
             const token = sessionStorage.getItem('authToken')
-            const response = await fetch(`${import.meta.env.VITE_API_URL}/auction/buy`, {
+            const body = auction.endsAt
+                ? { auctionId: auction.id, amount: askingPrice(auction) }
+                : { auctionId: auction.id }
+            const response = await fetch(`${import.meta.env.VITE_API_URL}/auction/${auction.endsAt ? 'bid' : 'buy'}`, {
                 method: 'POST',
                 headers: {
                     'Authorization': `Bearer ${token}`,
                     'Content-Type': 'application/json',
                 },
-                body: JSON.stringify({ auctionId: auction.id })
+                body: JSON.stringify(body)
             })
 
             const result = await response.json()
@@ -277,7 +332,7 @@ const Auction = ({ user, refreshUserData }) => {
                                     </div>
                                     <div className="auction-date">
                                         <FaClock style={{ marginRight: '4px' }} />
-                                        {formatDate(auction.createdAt)}
+                                        {auction.endsAt ? `до ${formatDate(auction.endsAt)}` : formatDate(auction.createdAt)}
                                     </div>
                                 </div>
 
@@ -288,21 +343,23 @@ const Auction = ({ user, refreshUserData }) => {
                                 <button
                                     className="btn auction-buy-btn"
                                     onClick={() => handleBuyFromAuction(auction)}
-                                    disabled={buyingAuction === auction.id ||
-                                        (user && user.balance < auction.price) ||
+                                    disabled={buyingAuction === auction.id || isLeading(auction) ||
+                                        (user && user.balance < askingPrice(auction)) ||
                                         (user && auction.seller.id === user.id)}
                                     style={{
-                                        opacity: buyingAuction === auction.id ||
-                                            (user && user.balance < auction.price) ||
+                                        opacity: buyingAuction === auction.id || isLeading(auction) ||
+                                            (user && user.balance < askingPrice(auction)) ||
                                             (user && auction.seller.id === user.id) ? 0.6 : 1,
-                                        cursor: buyingAuction === auction.id ||
-                                            (user && user.balance < auction.price) ||
+                                        cursor: buyingAuction === auction.id || isLeading(auction) ||
+                                            (user && user.balance < askingPrice(auction)) ||
                                             (user && auction.seller.id === user.id) ? 'not-allowed' : 'pointer'
                                     }}
                                 >
-                                    {buyingAuction === auction.id ? 'Покупка...' :
+                                    {buyingAuction === auction.id ? (auction.endsAt ? 'Ставка...' : 'Покупка...') :
                                         user && auction.seller.id === user.id ? 'Ваш NFT' :
-                                            user && user.balance < auction.price ? 'Недостаточно средств' : 'Купить'}
+                                            isLeading(auction) ? 'Ваша ставка лидирует' :
+                                                user && user.balance < askingPrice(auction) ? 'Недостаточно средств' :
+                                                    auction.endsAt ? `Ставка ${askingPrice(auction)} 🪙` : 'Купить'}
                                 </button>
                             </div>
                         </div>
@@ -310,6 +367,12 @@ const Auction = ({ user, refreshUserData }) => {
                 </div>
             )}
 
+            {activeTab === 'all' && !isLoading && !error && nextCursor && (
+                <button className="btn" onClick={loadMoreAuctions} disabled={isLoadingMore} style={{ marginTop: '16px' }}>
+                    {isLoadingMore ? 'Загрузка...' : 'Показать ещё'}
+                </button>
+            )}
+
             {/* My Auctions Tab */}
             {activeTab === 'my' && !isLoading && myAuctions.length === 0 && (
                 <div className="card" style={{ textAlign: 'center', padding: '40px 20px' }}>
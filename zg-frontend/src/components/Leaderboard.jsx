@@ -8,6 +8,8 @@ const Leaderboard = ({ user: currentUser }) => {
   const [selectedUser, setSelectedUser] = useState(null)
   const [userDetails, setUserDetails] = useState(null)
   const [isLoadingDetails, setIsLoadingDetails] = useState(false)
+  const [isLoadingMoreNFTs, setIsLoadingMoreNFTs] = useState(false)
+  const [myRank, setMyRank] = useState(null)
 
   const getRankIcon = (rank) => {
     switch (rank) {
@@ -29,6 +31,7 @@ const Leaderboard = ({ user: currentUser }) => {
 
   useEffect(() => {
     loadLeaderboard()
+    loadMyRank()
   }, [])
 
   const loadLeaderboard = async () => {
@@ -59,6 +62,27 @@ const Leaderboard = ({ user: currentUser }) => {
     }
   }
 
+  // The rank comes from the server: the current user may well be outside the first page
+  const loadMyRank = async () => {
+    const token = sessionStorage.getItem('authToken')
+    if (!token) return
+
+    try {
+      const response = await fetch(`${import.meta.env.VITE_API_URL}/leaderboard/rank/me`, {
+        headers: { 'Authorization': `Bearer ${token}` }
+      })
+
+      if (response.ok) {
+        const data = await response.json()
+        if (data.status === 'ok') {
+          setMyRank(data.rank)
+        }
+      }
+    } catch (err) {
+      console.error('Error loading rank:', err)
+    }
+  }
+
   const loadUserDetails = async (userId) => {
     try {
       setIsLoadingDetails(true)
@@ -85,6 +109,38 @@ const Leaderboard = ({ user: currentUser }) => {
     }
   }
 
+  const loadMoreNFTs = async () => {
+    if (!selectedUser || !userDetails?.nextAfterNftId) return
+
+    try {
+      setIsLoadingMoreNFTs(true)
+      const token = sessionStorage.getItem('authToken')
+      const headers = {}
+      if (token) {
+        headers['Authorization'] = `Bearer ${token}`
+      }
+
+      const response = await fetch(`${import.meta.env.VITE_API_URL}/leaderboard/user/${selectedUser.id}?afterNftId=${userDetails.nextAfterNftId}`, {
+        headers: headers
+      })
+
+      if (response.ok) {
+        const data = await response.json()
+        if (data.status === 'ok') {
+          setUserDetails(prev => ({
+            ...prev,
+            nfts: [...prev.nfts, ...(data.nfts || [])],
+            nextAfterNftId: data.nextAfterNftId ?? null
+          }))
+        }
+      }
+    } catch (err) {
+      console.error('Error loading more NFTs:', err)
+    } finally {
+      setIsLoadingMoreNFTs(false)
+    }
+  }
+
   const handleUserClick = (user) => {
     setSelectedUser(user)
     loadUserDetails(user.id)
@@ -109,12 +165,6 @@ const Leaderboard = ({ user: currentUser }) => {
     return `linear-gradient(135deg, ${hex1}, ${hex2})`
   }
 
-  const getCurrentUserRank = () => {
-    if (!currentUser) return null
-    const userIndex = users.findIndex(u => u.id === currentUser.id)
-    return userIndex !== -1 ? userIndex + 1 : null
-  }
-
   return (
     <div className="page">
       <h1 className="page-title">Таблица лидеров</h1>
@@ -140,7 +190,7 @@ const Leaderboard = ({ user: currentUser }) => {
         <div className="card current-user-card">
           <div className="user-item current-user">
             <div className="user-rank">
-              #{getCurrentUserRank() || '?'}
+              #{myRank || '?'}
             </div>
             <div className="user-avatar">
               {currentUser.avatarUrl ? (
@@ -233,7 +283,7 @@ const Leaderboard = ({ user: currentUser }) => {
                   </div>
                   <div className="detail-item">
                     <span>NFT:</span>
-                    <span>{userDetails.nfts?.length || 0}</span>
+                    <span>{userDetails.nftCount ?? userDetails.nfts?.length ?? 0}</span>
                   </div>
                 </div>
 
@@ -265,6 +315,11 @@ const Leaderboard = ({ user: currentUser }) => {
                         </div>
                       ))}
                     </div>
+                    {userDetails.nextAfterNftId && (
+                      <button className="btn" onClick={loadMoreNFTs} disabled={isLoadingMoreNFTs} style={{ margin: '12px 0' }}>
+                        {isLoadingMoreNFTs ? 'Загрузка...' : 'Показать ещё'}
+                      </button>
+                    )}
                   </div>
                 )}
               </div>
@@ -1,4 +1,5 @@
 import { useState, useEffect } from 'react'
+import { subscribeMarket } from '../marketStream'
 
 const NFTShop = ({ user, refreshUserData }) => {
     const [nfts, setNfts] = useState([])
@@ -11,9 +12,18 @@ const NFTShop = ({ user, refreshUserData }) => {
         loadNFTs()
     }, [])
 
-    const loadNFTs = async () => {
+    // One-off NFTs drop out when sold; edition stock and resyncs need a fresh catalog
+    useEffect(() => subscribeMarket((type, event) => {
+        if (type === 'SHOP_ITEM_SOLD' && !event.editionId) {
+            setNfts(prev => prev.filter(nft => nft.editionId || nft.id !== event.nftId))
+        } else if (type === 'SHOP_ITEM_SOLD' || type === 'RESYNC') {
+            loadNFTs(true)
+        }
+    }), [])
+
+    const loadNFTs = async (silent) => {
         try {
-            setIsLoading(true)
+            if (silent !== true) setIsLoading(true)
             const token = sessionStorage.getItem('authToken')
             const headers = {}
             if (token) {
@@ -25,7 +35,9 @@ const NFTShop = ({ user, refreshUserData }) => {
 
             if (response.ok) {
                 const data = await response.json()
-                setNfts(data.nfts || [])
+                const editions = (data.editions || []).map(edition => ({ ...edition, key: `e${edition.id}`, editionId: edition.id }))
+                const singles = (data.nfts || []).map(nft => ({ ...nft, key: `n${nft.id}` }))
+                setNfts([...editions, ...singles])
                 setError(null)
             } else {
                 setError('Не удалось загрузить NFT')
@@ -52,6 +64,35 @@ const NFTShop = ({ user, refreshUserData }) => {
         return `linear-gradient(135deg, ${hex1}, ${hex2})`
     }
 
+    // Limited drops answer with a queue ticket; poll it until the allocator has decided
+    const waitForDropTicket = async (ticketId, token, queuePosition) => {
+        let ahead = queuePosition
+        while (true) {
+            setMessage(`⏳ Вы в очереди, перед вами: ${ahead}`)
+            await new Promise(resolve => setTimeout(resolve, 1000))
+            const response = await fetch(`${import.meta.env.VITE_API_URL}/nft/drop/ticket/${ticketId}`, {
+                headers: { 'Authorization': `Bearer ${token}` }
+            })
+            const data = await response.json()
+            if (!response.ok) {
+                return { status: 'error', error: data.error }
+            }
+            const ticket = data.ticket
+            if (ticket.status === 'QUEUED') {
+                ahead = data.queuePosition
+                continue
+            }
+            if (ticket.status === 'WON') {
+                return { status: 'ok', newBalance: ticket.newBalance, nftId: ticket.nftId }
+            }
+            const errors = {
+                SOLD_OUT: 'NFT распродан',
+                INSUFFICIENT_FUNDS: 'Недостаточно средств'
+            }
+            return { status: 'error', error: errors[ticket.status] || ticket.error }
+        }
+    }
+
     const handleBuyNFT = async (nft) => {
         if (!user) {
             setMessage('❌ Необходимо войти в систему')
@@ -64,7 +105,7 @@ const NFTShop = ({ user, refreshUserData }) => {
         }
 
         try {
-            setBuyingNFT(nft.id)
+            setBuyingNFT(nft.key)
             setMessage('')
 
             const token = sessionStorage.getItem('authToken')
@@ -74,10 +115,14 @@ const NFTShop = ({ user, refreshUserData }) => {
                     'Authorization': `Bearer ${token}`,
                     'Content-Type': 'application/json',
                 },
-                body: JSON.stringify({ nftId: nft.id })
+                body: JSON.stringify(nft.editionId ? { editionId: nft.editionId } : { nftId: nft.id })
             })
 
-            const result = await response.json()
+            let result = await response.json()
+
+            if (response.ok && result.status === 'queued') {
+                result = await waitForDropTicket(result.ticketId, token, result.queuePosition)
+            }
 
             if (response.ok && result.status === 'ok') {
                 setMessage(`✅ ${nft.name} успешно куплен!`)
@@ -140,17 +185,24 @@ const NFTShop = ({ user, refreshUserData }) => {
             {!isLoading && !error && nfts.length > 0 && (
                 <div className="nft-grid">
                     {nfts.map(nft => (
-                        <div key={nft.id} className="nft-card">
+                        <div key={nft.key} className="nft-card">
                             <div
                                 className="nft-image"
                                 style={{ background: createGradient(nft.gradientColor1, nft.gradientColor2) }}
                             >
                                 {nft.imageURL ? (
                                     <img
-                                        src={nft.imageURL}
+                                        src={nft.imageVariants?.card || nft.imageURL}
                                         alt={nft.name}
                                         className="nft-image-img"
-                                        onError={(e) => { e.target.style.display = 'none' }}
+                                        onError={(e) => {
+                                            // Variants are rendered in the background; fall back to the original until then
+                                            if (!e.target.src.endsWith(nft.imageURL)) {
+                                                e.target.src = nft.imageURL
+                                            } else {
+                                                e.target.style.display = 'none'
+                                            }
+                                        }}
                                     />
                                 ) : (
                                     <div className="nft-emoji">🎨</div>
@@ -165,13 +217,13 @@ const NFTShop = ({ user, refreshUserData }) => {
                                 <button
                                     className="btn nft-buy-btn"
                                     onClick={() => handleBuyNFT(nft)}
-                                    disabled={buyingNFT === nft.id || (user && user.balance < nft.price)}
+                                    disabled={buyingNFT === nft.key || (user && user.balance < nft.price)}
                                     style={{
-                                        opacity: buyingNFT === nft.id || (user && user.balance < nft.price) ? 0.6 : 1,
-                                        cursor: buyingNFT === nft.id || (user && user.balance < nft.price) ? 'not-allowed' : 'pointer'
+                                        opacity: buyingNFT === nft.key || (user && user.balance < nft.price) ? 0.6 : 1,
+                                        cursor: buyingNFT === nft.key || (user && user.balance < nft.price) ? 'not-allowed' : 'pointer'
                                     }}
                                 >
-                                    {buyingNFT === nft.id ? 'Покупка...' :
+                                    {buyingNFT === nft.key ? 'Покупка...' :
                                         user && user.balance < nft.price ? 'Недостаточно средств' : 'Купить'}
                                 </button>
                             </div>
@@ -13,6 +13,7 @@ const Profile = ({ user: initialUser, refreshUserData }) => {
     const [actionMessage, setActionMessage] = useState('')
     const [transferUsername, setTransferUsername] = useState('')
     const [auctionPrice, setAuctionPrice] = useState('')
+    const [auctionDuration, setAuctionDuration] = useState('')
     const [userStats, setUserStats] = useState({ tasksCompleted: 0, codesActivated: 0 })
     const [isLoadingStats, setIsLoadingStats] = useState(false)
     const [referralData, setReferralData] = useState({ link: '', count: 0 })
@@ -78,18 +79,23 @@ const Profile = ({ user: initialUser, refreshUserData }) => {
 
         try {
             setIsLoadingNFTs(true)
-            const response = await fetch(`${import.meta.env.VITE_API_URL}/nft/my`, {
-                method: 'GET',
-                headers: {
-                    'Authorization': `Bearer ${token}`,
-                    'Content-Type': 'application/json',
-                }
-            })
+            const owned = []
+            let afterId = 0
+            while (afterId !== null) {
+                const response = await fetch(`${import.meta.env.VITE_API_URL}/nft/my?afterId=${afterId}`, {
+                    method: 'GET',
+                    headers: {
+                        'Authorization': `Bearer ${token}`,
+                        'Content-Type': 'application/json',
+                    }
+                })
+                if (!response.ok) break
 
-            if (response.ok) {
                 const data = await response.json()
-                setOwnedNFTs(data.nfts || [])
+                owned.push(...(data.nfts || []))
+                afterId = data.nextAfterId ?? null
             }
+            setOwnedNFTs(owned)
         } catch (error) {
             console.error('Failed to fetch owned NFTs:', error)
         } finally {
@@ -227,6 +233,9 @@ const Profile = ({ user: initialUser, refreshUserData }) => {
             } else if (action === 'auction/create') {
                 url = `${import.meta.env.VITE_API_URL}/auction/create`
                 body.price = parseInt(extraData.price)
+                if (extraData.durationMinutes) {
+                    body.durationMinutes = parseInt(extraData.durationMinutes)
+                }
             }
 
             const response = await fetch(url, {
@@ -259,6 +268,7 @@ const Profile = ({ user: initialUser, refreshUserData }) => {
                     setSelectedNFT(null)
                     setTransferUsername('')
                     setAuctionPrice('')
+                    setAuctionDuration('')
                 }, 1500)
             } else {
                 setActionMessage(`❌ ${result.error || 'Ошибка'}`)
@@ -282,6 +292,7 @@ const Profile = ({ user: initialUser, refreshUserData }) => {
         setSelectedNFT(null)
         setTransferUsername('')
         setAuctionPrice('')
+        setAuctionDuration('')
         setActionMessage('')
     }
 
@@ -594,9 +605,17 @@ const Profile = ({ user: initialUser, refreshUserData }) => {
                                             className="auction-input"
                                             min="1"
                                         />
+                                        <input
+                                            type="number"
+                                            placeholder="Ставки, минут (необязательно)"
+                                            value={auctionDuration}
+                                            onChange={(e) => setAuctionDuration(e.target.value)}
+                                            className="auction-input"
+                                            min="1"
+                                        />
                                         <button
                                             className="action-btn auction-btn"
-                                            onClick={() => handleNFTAction('auction/create', selectedNFT.id, { price: auctionPrice })}
+                                            onClick={() => handleNFTAction('auction/create', selectedNFT.id, { price: auctionPrice, durationMinutes: auctionDuration })}
                                             disabled={actionLoading || !auctionPrice || parseInt(auctionPrice) <= 0}
                                         >
                                             <FaGavel /> Создать аукцион
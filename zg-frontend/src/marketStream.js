@@ -0,0 +1,60 @@
+// Follows the server-sent market events. EventSource cannot send the Authorization header,
+// so the stream is read with fetch and parsed by hand; dropped connections are retried with backoff.
+export const subscribeMarket = (onEvent) => {
+    let stopped = false
+    let controller = null
+    let retryMs = 1000
+
+    const dispatch = (block) => {
+        let name = 'message'
+        let data = ''
+        for (const line of block.split('\n')) {
+            if (line.startsWith('event:')) name = line.slice(6).trim()
+            else if (line.startsWith('data:')) data += line.slice(5).trim()
+        }
+        if (data) onEvent(name, JSON.parse(data))
+    }
+
+    const connect = async () => {
+        while (!stopped) {
+            try {
+                controller = new AbortController()
+                const token = sessionStorage.getItem('authToken')
+                const response = await fetch(`${import.meta.env.VITE_API_URL}/market/stream`, {
+                    headers: token ? { 'Authorization': `Bearer ${token}` } : {},
+                    signal: controller.signal
+                })
+                if (!response.ok) throw new Error(`stream status ${response.status}`)
+
+                // Anything may have happened while disconnected
+                if (retryMs > 1000) onEvent('RESYNC', {})
+                retryMs = 1000
+
+                const reader = response.body.getReader()
+                const decoder = new TextDecoder()
+                let pending = ''
+                while (true) {
+                    const { done, value } = await reader.read()
+                    if (done) break
+                    pending += decoder.decode(value, { stream: true })
+                    let boundary
+                    while ((boundary = pending.indexOf('\n\n')) >= 0) {
+                        dispatch(pending.slice(0, boundary))
+                        pending = pending.slice(boundary + 2)
+                    }
+                }
+            } catch (err) {
+                if (stopped) return
+                console.error('Market stream interrupted:', err)
+            }
+            await new Promise(resolve => setTimeout(resolve, retryMs))
+            retryMs = Math.min(retryMs * 2, 30000)
+        }
+    }
+
+    connect()
+    return () => {
+        stopped = true
+        if (controller) controller.abort()
+    }
+}